@@ -0,0 +1,545 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates an OrmBinder for every OrmTable class, so that jackknife-mvvm can read and write the
+ * fields of the table without reflection. A class whose mapped fields or constructor are private
+ * is skipped, and the reflective mapping is still used for it at runtime.
+ */
+public class OrmBinderProcessor extends AbstractProcessor {
+
+    private static final String ORM_TABLE = "com.lwh.jackknife.db.OrmTable";
+    private static final String ORM_BINDER = "com.lwh.jackknife.db.table.OrmBinder";
+    private static final String TABLE = "com.lwh.jackknife.db.table.Table";
+    private static final String COLUMN = "com.lwh.jackknife.db.table.Column";
+    private static final String IGNORE = "com.lwh.jackknife.db.table.Ignore";
+    private static final String PRIMARY_KEY = "com.lwh.jackknife.db.constraint.PrimaryKey";
+    private static final String UNIQUE = "com.lwh.jackknife.db.constraint.Unique";
+    private static final String NOT_NULL = "com.lwh.jackknife.db.constraint.NotNull";
+    private static final String DEFAULT = "com.lwh.jackknife.db.constraint.Default";
+    private static final String CHECK = "com.lwh.jackknife.db.constraint.Check";
+    private static final String AUTO_INCREMENT = "AUTO_INCREMENT";
+    private static final String SUFFIX = "_OrmBinder";
+
+    private Elements mElements;
+    private Types mTypes;
+    private Filer mFiler;
+    private Messager mMessager;
+
+    private enum Kind {
+        STRING, BOOLEAN, BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, CHAR, CLASS, BLOB
+    }
+
+    private static class ColumnModel {
+        String fieldName;
+        String columnName;
+        Kind kind;
+        boolean primitive;
+        boolean insertable;
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        mElements = processingEnv.getElementUtils();
+        mTypes = processingEnv.getTypeUtils();
+        mFiler = processingEnv.getFiler();
+        mMessager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new LinkedHashSet<>(Arrays.asList(TABLE, COLUMN, IGNORE, PRIMARY_KEY, UNIQUE,
+                NOT_NULL, DEFAULT, CHECK));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement ormTable = mElements.getTypeElement(ORM_TABLE);
+        if (ormTable == null) {
+            return false;
+        }
+        Set<TypeElement> tables = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    tables.add((TypeElement) element);
+                } else if (element.getKind() == ElementKind.FIELD) {
+                    tables.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement table : tables) {
+            if (mTypes.isAssignable(mTypes.erasure(table.asType()),
+                    mTypes.erasure(ormTable.asType()))) {
+                generateBinder(table);
+            }
+        }
+        return false;
+    }
+
+    private void generateBinder(TypeElement table) {
+        if (!isAccessible(table)) {
+            note(table, "is not accessible from its package");
+            return;
+        }
+        if (!hasAccessibleConstructor(table)) {
+            note(table, "has no non-private constructor without parameters");
+            return;
+        }
+        List<ColumnModel> columns = new ArrayList<>();
+        boolean hasPrimaryKey = false;
+        for (Element element : table.getEnclosedElements()) {
+            if (element.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || getAnnotation(element, IGNORE) != null) {
+                continue;
+            }
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                note(table, "has a private or final field " + element.getSimpleName());
+                return;
+            }
+            ColumnModel column = new ColumnModel();
+            column.fieldName = element.getSimpleName().toString();
+            column.columnName = getColumnName((VariableElement) element);
+            TypeMirror type = element.asType();
+            column.primitive = type.getKind().isPrimitive();
+            column.kind = getKind(type);
+            if (column.kind == null) {
+                note(table, "has a field " + element.getSimpleName() + " of unsupported type");
+                return;
+            }
+            AnnotationMirror primaryKey = getAnnotation(element, PRIMARY_KEY);
+            column.insertable = true;
+            if (primaryKey != null) {
+                hasPrimaryKey = true;
+                if (AUTO_INCREMENT.equals(getAnnotationValue(primaryKey))) {
+                    if (column.kind != Kind.INT && column.kind != Kind.LONG
+                            && column.kind != Kind.SHORT && column.kind != Kind.BYTE) {
+                        error(element, "AUTO_INCREMENT primary key must be an integer.");
+                        return;
+                    }
+                    column.insertable = false;
+                }
+            }
+            columns.add(column);
+        }
+        if (!hasPrimaryKey) {
+            error(table, "Lack valid primary key.");
+            return;
+        }
+        try {
+            writeBinder(table, columns);
+        } catch (IOException e) {
+            error(table, "Unable to write binder: " + e.getMessage());
+        }
+    }
+
+    private boolean isAccessible(TypeElement table) {
+        Element element = table;
+        while (element.getKind().isClass() || element.getKind().isInterface()) {
+            TypeElement type = (TypeElement) element;
+            if (type.getModifiers().contains(Modifier.PRIVATE)
+                    || type.getModifiers().contains(Modifier.ABSTRACT) && type == table) {
+                return false;
+            }
+            if (type.getNestingKind() == NestingKind.MEMBER
+                    && !type.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+            if (type.getNestingKind() == NestingKind.LOCAL
+                    || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private boolean hasAccessibleConstructor(TypeElement table) {
+        for (Element element : table.getEnclosedElements()) {
+            if (element.getKind() == ElementKind.CONSTRUCTOR
+                    && ((ExecutableElement) element).getParameters().isEmpty()
+                    && !element.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private String getAnnotationValue(AnnotationMirror mirror) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                Object value = entry.getValue().getValue();
+                if (value instanceof VariableElement) {
+                    return ((VariableElement) value).getSimpleName().toString();
+                }
+                return String.valueOf(value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Same as TableManager#getColumnName.
+     */
+    private String getColumnName(VariableElement field) {
+        AnnotationMirror column = getAnnotation(field, COLUMN);
+        if (column != null) {
+            return getAnnotationValue(column);
+        }
+        String fieldName = field.getSimpleName().toString();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fieldName.length(); i++) {
+            if (fieldName.charAt(i) >= 'A' && fieldName.charAt(i) <= 'Z' && i != 0) {
+                sb.append("_");
+            }
+            sb.append(String.valueOf(fieldName.charAt(i)).toLowerCase(Locale.ENGLISH));
+        }
+        return sb.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    private Kind getKind(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case BYTE:
+                return Kind.BYTE;
+            case SHORT:
+                return Kind.SHORT;
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case FLOAT:
+                return Kind.FLOAT;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case CHAR:
+                return Kind.CHAR;
+            case ARRAY:
+                TypeMirror component = ((ArrayType) type).getComponentType();
+                return component.getKind() == TypeKind.BYTE ? Kind.BLOB : null;
+            case DECLARED:
+                String name = mTypes.erasure(type).toString();
+                if (String.class.getName().equals(name)
+                        || CharSequence.class.getName().equals(name)) {
+                    return Kind.STRING;
+                } else if (Boolean.class.getName().equals(name)) {
+                    return Kind.BOOLEAN;
+                } else if (Byte.class.getName().equals(name)) {
+                    return Kind.BYTE;
+                } else if (Short.class.getName().equals(name)) {
+                    return Kind.SHORT;
+                } else if (Integer.class.getName().equals(name)) {
+                    return Kind.INT;
+                } else if (Long.class.getName().equals(name)) {
+                    return Kind.LONG;
+                } else if (Float.class.getName().equals(name)) {
+                    return Kind.FLOAT;
+                } else if (Double.class.getName().equals(name)) {
+                    return Kind.DOUBLE;
+                } else if (Character.class.getName().equals(name)) {
+                    return Kind.CHAR;
+                } else if (Class.class.getName().equals(name)) {
+                    return Kind.CLASS;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private void writeBinder(TypeElement table, List<ColumnModel> columns) throws IOException {
+        PackageElement pkg = mElements.getPackageOf(table);
+        String packageName = pkg.getQualifiedName().toString();
+        String binaryName = mElements.getBinaryName(table).toString();
+        String binderName = (packageName.isEmpty() ? binaryName
+                : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String tableType = table.getQualifiedName().toString();
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated code from jackknife-compiler. Do not modify!\n");
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("import android.content.ContentValues;\n")
+                .append("import android.database.Cursor;\n")
+                .append("import android.database.sqlite.SQLiteProgram;\n\n")
+                .append("import ").append(ORM_BINDER).append(";\n\n");
+        sb.append("@SuppressWarnings(\"unchecked\")\n");
+        sb.append("public final class ").append(binderName).append(" implements OrmBinder<")
+                .append(tableType).append("> {\n\n");
+        sb.append("    private static final String[] COLUMN_NAMES = {");
+        appendNames(sb, columns, false);
+        sb.append("};\n\n");
+        sb.append("    private static final String[] INSERTABLE_COLUMN_NAMES = {");
+        appendNames(sb, columns, true);
+        sb.append("};\n\n");
+        sb.append("    @Override\n    public String[] getColumnNames() {\n")
+                .append("        return COLUMN_NAMES;\n    }\n\n");
+        sb.append("    @Override\n    public String[] getInsertableColumnNames() {\n")
+                .append("        return INSERTABLE_COLUMN_NAMES;\n    }\n\n");
+        sb.append("    @Override\n    public ").append(tableType).append(" newInstance() {\n")
+                .append("        return new ").append(tableType).append("();\n    }\n\n");
+        sb.append("    @Override\n    public void put(ContentValues values, ").append(tableType)
+                .append(" bean) {\n");
+        for (ColumnModel column : columns) {
+            if (column.insertable) {
+                appendPut(sb, column);
+            }
+        }
+        sb.append("    }\n\n");
+        sb.append("    @Override\n    public void bind(SQLiteProgram program, ").append(tableType)
+                .append(" bean) {\n");
+        int index = 1;
+        for (ColumnModel column : columns) {
+            if (column.insertable) {
+                appendBind(sb, column, index++);
+            }
+        }
+        sb.append("    }\n\n");
+        sb.append("    @Override\n    public void read(Cursor cursor, int[] columnIndexes, ")
+                .append(tableType).append(" bean) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            appendRead(sb, columns.get(i), i);
+        }
+        sb.append("    }\n}\n");
+        String sourceName = packageName.isEmpty() ? binderName : packageName + "." + binderName;
+        JavaFileObject file = mFiler.createSourceFile(sourceName, table);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void appendNames(StringBuilder sb, List<ColumnModel> columns, boolean insertable) {
+        boolean first = true;
+        for (ColumnModel column : columns) {
+            if (insertable && !column.insertable) {
+                continue;
+            }
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append('"').append(column.columnName).append('"');
+            first = false;
+        }
+    }
+
+    private void appendPut(StringBuilder sb, ColumnModel column) {
+        String field = "bean." + column.fieldName;
+        String name = "\"" + column.columnName + "\"";
+        switch (column.kind) {
+            case STRING:
+                sb.append("        values.put(").append(name).append(", ").append(field)
+                        .append(" != null ? ").append(field).append(".toString() : null);\n");
+                break;
+            case CHAR:
+                if (column.primitive) {
+                    sb.append("        values.put(").append(name).append(", String.valueOf(")
+                            .append(field).append("));\n");
+                } else {
+                    sb.append("        values.put(").append(name).append(", ").append(field)
+                            .append(" != null ? String.valueOf(").append(field)
+                            .append(") : null);\n");
+                }
+                break;
+            case CLASS:
+                sb.append("        values.put(").append(name).append(", ").append(field)
+                        .append(" != null ? ").append(field).append(".getName() : null);\n");
+                break;
+            default:
+                sb.append("        values.put(").append(name).append(", ").append(field)
+                        .append(");\n");
+                break;
+        }
+    }
+
+    private void appendBind(StringBuilder sb, ColumnModel column, int index) {
+        String field = "bean." + column.fieldName;
+        String value;
+        String method;
+        switch (column.kind) {
+            case STRING:
+                method = "bindString";
+                value = field + ".toString()";
+                break;
+            case BOOLEAN:
+                method = "bindLong";
+                value = field + " ? 1 : 0";
+                break;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                method = "bindLong";
+                value = field;
+                break;
+            case FLOAT:
+            case DOUBLE:
+                method = "bindDouble";
+                value = field;
+                break;
+            case CHAR:
+                method = "bindString";
+                value = "String.valueOf(" + field + ")";
+                break;
+            case CLASS:
+                method = "bindString";
+                value = field + ".getName()";
+                break;
+            default:
+                method = "bindBlob";
+                value = field;
+                break;
+        }
+        if (column.primitive) {
+            sb.append("        program.").append(method).append("(").append(index).append(", ")
+                    .append(value).append(");\n");
+        } else {
+            sb.append("        if (").append(field).append(" != null) {\n")
+                    .append("            program.").append(method).append("(").append(index)
+                    .append(", ").append(value).append(");\n")
+                    .append("        } else {\n")
+                    .append("            program.bindNull(").append(index).append(");\n")
+                    .append("        }\n");
+        }
+    }
+
+    private void appendRead(StringBuilder sb, ColumnModel column, int position) {
+        String field = "bean." + column.fieldName;
+        String index = "columnIndexes[" + position + "]";
+        String value;
+        switch (column.kind) {
+            case STRING:
+                value = "cursor.getString(" + index + ")";
+                break;
+            case BOOLEAN:
+                value = "cursor.getInt(" + index + ") == 1";
+                break;
+            case BYTE:
+                value = "(byte) cursor.getShort(" + index + ")";
+                break;
+            case SHORT:
+                value = "cursor.getShort(" + index + ")";
+                break;
+            case INT:
+                value = "cursor.getInt(" + index + ")";
+                break;
+            case LONG:
+                value = "cursor.getLong(" + index + ")";
+                break;
+            case FLOAT:
+                value = "cursor.getFloat(" + index + ")";
+                break;
+            case DOUBLE:
+                value = "cursor.getDouble(" + index + ")";
+                break;
+            case BLOB:
+                value = "cursor.getBlob(" + index + ")";
+                break;
+            default:
+                value = null;
+                break;
+        }
+        sb.append("        if (").append(index).append(" != -1) {\n");
+        if (column.kind == Kind.CHAR) {
+            sb.append("            String value = cursor.getString(").append(index).append(");\n")
+                    .append("            ").append(field)
+                    .append(" = value != null && value.length() > 0 ? value.charAt(0) : ")
+                    .append(column.primitive ? "'\\u0000'" : "null").append(";\n");
+        } else if (column.kind == Kind.CLASS) {
+            sb.append("            String value = cursor.getString(").append(index).append(");\n")
+                    .append("            try {\n")
+                    .append("                ").append(field)
+                    .append(" = value != null ? (Class) Class.forName(value) : null;\n")
+                    .append("            } catch (ClassNotFoundException e) {\n")
+                    .append("                e.printStackTrace();\n")
+                    .append("            }\n");
+        } else if (column.primitive || column.kind == Kind.STRING || column.kind == Kind.BLOB) {
+            sb.append("            ").append(field).append(" = ").append(value).append(";\n");
+        } else {
+            sb.append("            ").append(field).append(" = cursor.isNull(").append(index)
+                    .append(") ? null : ").append(value).append(";\n");
+        }
+        sb.append("        }\n");
+    }
+
+    private void note(Element element, String reason) {
+        mMessager.printMessage(Diagnostic.Kind.NOTE, element + " " + reason
+                + ", fall back to reflection.", element);
+    }
+
+    private void error(Element element, String message) {
+        mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the binary format written by BinaryLogEncoder of jackknife-mvvm. It depends on the JDK
+ * only, so the logs pulled from a device or uploaded by users can be decoded on a PC.
+ * 读取 jackknife-mvvm 的 BinaryLogEncoder 写入的二进制格式，只依赖 JDK，可以在电脑上解码从设备导出或
+ * 用户上传的日志。
+ * <pre>
+ * java -jar jackknife-logdecoder.jar [--json] file...
+ * </pre>
+ */
+public class BinaryLogDecoder implements BinaryLogFormat {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final InputStream mInputStream;
+    private final List<String> mDictionary = new ArrayList<>();
+    private final SimpleDateFormat mTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS",
+            Locale.ENGLISH);
+    private long mLastTime;
+
+    /**
+     * A decoded log or crash.
+     * 解码后的日志或崩溃信息。
+     */
+    public abstract static class Record {
+
+        public long time;
+        public String thread;
+
+        public abstract String toText(SimpleDateFormat timeFormat);
+
+        public abstract String toJson();
+    }
+
+    public static class LogRecord extends Record {
+
+        public String tag;
+        public String format;
+        public Object[] args;
+
+        public String getMessage() {
+            if (format == null) {
+                return Arrays.toString(args);
+            }
+            try {
+                return String.format(Locale.ENGLISH, format, args);
+            } catch (IllegalFormatException e) {
+                return format + " " + Arrays.toString(args);
+            }
+        }
+
+        @Override
+        public String toText(SimpleDateFormat timeFormat) {
+            return timeFormat.format(new Date(time)) + " [" + thread + "] " + tag + ": "
+                    + getMessage();
+        }
+
+        @Override
+        public String toJson() {
+            StringBuilder sb = new StringBuilder("{\"type\":\"log\",\"time\":").append(time);
+            appendJson(sb.append(",\"thread\":"), thread);
+            appendJson(sb.append(",\"tag\":"), tag);
+            appendJson(sb.append(",\"format\":"), format);
+            sb.append(",\"args\":[");
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendJson(sb, args[i]);
+            }
+            appendJson(sb.append("],\"message\":"), getMessage());
+            return sb.append('}').toString();
+        }
+    }
+
+    public static class CrashRecord extends Record {
+
+        public String versionName;
+        public int versionCode;
+        public int sdkVersion;
+        public String release;
+        public String model;
+        public String brand;
+
+        /**
+         * The throwable and its causes, each one is the class name, the message and the frames.
+         * 异常及其 cause，每一项为类名、消息和调用栈。
+         */
+        public List<String[]> throwables = new ArrayList<>();
+        public List<StackTraceElement[]> stackTraces = new ArrayList<>();
+
+        @Override
+        public String toText(SimpleDateFormat timeFormat) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(timeFormat.format(new Date(time))).append(" [").append(thread)
+                    .append("] crash ").append(brand).append(' ').append(model)
+                    .append(" Android ").append(release).append(" (").append(sdkVersion)
+                    .append(") ").append(versionName).append('(').append(versionCode).append(')');
+            for (int i = 0; i < throwables.size(); i++) {
+                String[] throwable = throwables.get(i);
+                sb.append('\n').append(i == 0 ? "" : "Caused by: ").append(throwable[0]);
+                if (throwable[1] != null) {
+                    sb.append(": ").append(throwable[1]);
+                }
+                for (StackTraceElement element : stackTraces.get(i)) {
+                    sb.append("\n\tat ").append(element);
+                }
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String toJson() {
+            StringBuilder sb = new StringBuilder("{\"type\":\"crash\",\"time\":").append(time);
+            appendJson(sb.append(",\"thread\":"), thread);
+            appendJson(sb.append(",\"versionName\":"), versionName);
+            sb.append(",\"versionCode\":").append(versionCode);
+            sb.append(",\"sdkVersion\":").append(sdkVersion);
+            appendJson(sb.append(",\"release\":"), release);
+            appendJson(sb.append(",\"model\":"), model);
+            appendJson(sb.append(",\"brand\":"), brand);
+            sb.append(",\"throwables\":[");
+            for (int i = 0; i < throwables.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendJson(sb.append("{\"class\":"), throwables.get(i)[0]);
+                appendJson(sb.append(",\"message\":"), throwables.get(i)[1]);
+                sb.append(",\"frames\":[");
+                StackTraceElement[] elements = stackTraces.get(i);
+                for (int j = 0; j < elements.length; j++) {
+                    if (j > 0) {
+                        sb.append(',');
+                    }
+                    appendJson(sb, elements[j].toString());
+                }
+                sb.append("]}");
+            }
+            return sb.append("]}").toString();
+        }
+    }
+
+    public BinaryLogDecoder(InputStream inputStream) {
+        this.mInputStream = inputStream;
+    }
+
+    /**
+     * @return The next record, or null at the end of the stream. A record cut off at the end,
+     * which is left when the process is killed while writing, is ignored.
+     * 下一条记录，到达末尾时返回 null，进程在写入时被杀死留下的不完整记录会被忽略。
+     */
+    public Record next() throws IOException {
+        try {
+            while (true) {
+                int type = mInputStream.read();
+                if (type == -1) {
+                    return null;
+                }
+                switch (type) {
+                    case ENTRY_STRING:
+                        int id = (int) readVarint();
+                        String s = readString();
+                        if (id != mDictionary.size()) {
+                            throw new IOException("Unexpected string id " + id);
+                        }
+                        mDictionary.add(s);
+                        break;
+                    case ENTRY_LOG:
+                        return readLog();
+                    case ENTRY_CRASH:
+                        return readCrash();
+                    default:
+                        if (type == MAGIC[0]) {
+                            readHeader();
+                            break;
+                        }
+                        throw new IOException("Unknown entry type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A new stream starts, which happens when a rolled file is appended again.
+     * 开始新的数据流，滚动的日志文件被再次追加时会出现。
+     */
+    private void readHeader() throws IOException {
+        for (int i = 1; i < MAGIC.length; i++) {
+            if (readByte() != MAGIC[i]) {
+                throw new IOException("Not a binary log");
+            }
+        }
+        int version = readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+        mDictionary.clear();
+        mLastTime = 0;
+    }
+
+    private LogRecord readLog() throws IOException {
+        LogRecord record = new LogRecord();
+        record.time = readTime();
+        record.tag = readRef();
+        record.thread = readRef();
+        record.format = readRef();
+        int count = (int) readVarint();
+        record.args = new Object[count];
+        for (int i = 0; i < count; i++) {
+            record.args[i] = readArg();
+        }
+        return record;
+    }
+
+    private CrashRecord readCrash() throws IOException {
+        CrashRecord record = new CrashRecord();
+        record.time = readTime();
+        record.thread = readRef();
+        record.versionName = readRef();
+        record.versionCode = (int) unzigzag(readVarint());
+        record.sdkVersion = (int) readVarint();
+        record.release = readRef();
+        record.model = readRef();
+        record.brand = readRef();
+        int count = (int) readVarint();
+        for (int i = 0; i < count; i++) {
+            record.throwables.add(new String[]{readRef(), readRef()});
+            StackTraceElement[] elements = new StackTraceElement[(int) readVarint()];
+            for (int j = 0; j < elements.length; j++) {
+                String className = readRef();
+                String methodName = readRef();
+                String fileName = readRef();
+                elements[j] = new StackTraceElement(className, methodName, fileName,
+                        (int) unzigzag(readVarint()));
+            }
+            record.stackTraces.add(elements);
+        }
+        return record;
+    }
+
+    private Object readArg() throws IOException {
+        int type = readByte();
+        switch (type) {
+            case ARG_NULL:
+                return null;
+            case ARG_INT:
+                return (int) unzigzag(readVarint());
+            case ARG_LONG:
+                return unzigzag(readVarint());
+            case ARG_FLOAT:
+                return Float.intBitsToFloat((int) readFixed(4));
+            case ARG_DOUBLE:
+                return Double.longBitsToDouble(readFixed(8));
+            case ARG_TRUE:
+                return true;
+            case ARG_FALSE:
+                return false;
+            case ARG_STRING:
+                return readString();
+            case ARG_CHAR:
+                return (char) readVarint();
+            case ARG_STRING_REF:
+                return readRef();
+            default:
+                throw new IOException("Unknown argument type " + type);
+        }
+    }
+
+    private long readTime() throws IOException {
+        mLastTime += unzigzag(readVarint());
+        return mLastTime;
+    }
+
+    private String readRef() throws IOException {
+        int ref = (int) readVarint();
+        if (ref == REF_NULL) {
+            return null;
+        } else if (ref == REF_INLINE) {
+            return readString();
+        }
+        int id = ref - REF_ID;
+        if (id >= mDictionary.size()) {
+            throw new IOException("Undefined string id " + id);
+        }
+        return mDictionary.get(id);
+    }
+
+    private String readString() throws IOException {
+        int length = (int) readVarint();
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int count = mInputStream.read(bytes, offset, length - offset);
+            if (count == -1) {
+                throw new EOFException();
+            }
+            offset += count;
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    private int readByte() throws IOException {
+        int b = mInputStream.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private long readFixed(int length) throws IOException {
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits = (bits << 8) | readByte();
+        }
+        return bits;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void appendJson(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+            return;
+        }
+        String s = value.toString();
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.ENGLISH, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Renders every record of the stream to a line of text or JSON.
+     * 把数据流中的每条记录输出为一行文本或 JSON。
+     */
+    public void render(PrintStream out, boolean json) throws IOException {
+        Record record;
+        while ((record = next()) != null) {
+            out.println(json ? record.toJson() : record.toText(mTimeFormat));
+        }
+    }
+
+    public static void main(String[] args) {
+        boolean json = false;
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--json")) {
+                json = true;
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: BinaryLogDecoder [--json] file...");
+            System.exit(1);
+        }
+        PrintStream out;
+        try {
+            out = new PrintStream(System.out, false, "UTF-8");
+        } catch (IOException e) {
+            out = System.out;
+        }
+        for (String file : files) {
+            InputStream in = null;
+            try {
+                in = new BufferedInputStream(new FileInputStream(file));
+                new BinaryLogDecoder(in).render(out, json);
+            } catch (IOException e) {
+                System.err.println(file + ": " + e.getMessage());
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+/**
+ * Constants of the binary log format shared by BinaryLogEncoder of jackknife-mvvm and
+ * {@link BinaryLogDecoder}.
+ * 二进制日志格式的常量，由 jackknife-mvvm 的 BinaryLogEncoder 和 {@link BinaryLogDecoder} 共用。
+ * <p>
+ * A stream starts with {@link #MAGIC} and {@link #VERSION}, and is followed by entries that start
+ * with one of the ENTRY bytes. Integers are unsigned LEB128 varints, signed ones are zigzag
+ * encoded first, times are deltas from the previous entry. Strings are written as a ref: 0 for
+ * null, 1 followed by an inline string, or 2 + the id of a {@link #ENTRY_STRING} defined before,
+ * so tags, thread names and format strings are written once per stream.
+ * 数据流以魔数和版本开头，之后每个条目以一个类型字节开头。整数使用变长编码，有符号数先做 zigzag 编码，
+ * 时间记录与上一条目的差值。字符串写为引用：0 表示 null，1 表示后面跟着字符串本身，否则为字典中的
+ * id + 2，所以 tag、线程名和格式字符串在每个数据流中只写入一次。
+ */
+public interface BinaryLogFormat {
+
+    byte[] MAGIC = {'D', 'L', 'O', 'G'};
+    int VERSION = 1;
+
+    /**
+     * id, length, UTF-8 bytes.
+     */
+    int ENTRY_STRING = 1;
+
+    /**
+     * time, tag ref, thread ref, format ref, argument count, typed arguments.
+     */
+    int ENTRY_LOG = 2;
+
+    /**
+     * time, thread ref, version name ref, version code, sdk version, release ref, model ref,
+     * brand ref, throwable count, then class ref, message ref, frame count and frames (class ref,
+     * method ref, file ref, line) of each throwable in the cause chain.
+     */
+    int ENTRY_CRASH = 3;
+
+    int REF_NULL = 0;
+    int REF_INLINE = 1;
+    int REF_ID = 2;
+
+    int ARG_NULL = 0;
+    int ARG_INT = 1;
+    int ARG_LONG = 2;
+    int ARG_FLOAT = 3;
+    int ARG_DOUBLE = 4;
+    int ARG_TRUE = 5;
+    int ARG_FALSE = 6;
+    int ARG_STRING = 7;
+    int ARG_CHAR = 8;
+
+    /**
+     * A short string argument written as a ref, repeated values such as ids and states are
+     * written once.
+     * 较短的字符串参数写为引用，重复的 id、状态等只写入一次。
+     */
+    int ARG_STRING_REF = 9;
+}
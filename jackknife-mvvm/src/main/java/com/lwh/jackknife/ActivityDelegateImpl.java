@@ -20,6 +20,7 @@ import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
 
+import com.lwh.jackknife.log.LogSupplier;
 import com.lwh.jackknife.log.Logger;
 
 public class ActivityDelegateImpl implements ActivityDelegate {
@@ -32,37 +33,50 @@ public class ActivityDelegateImpl implements ActivityDelegate {
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
-        Logger.info("%s - onCreate", mActivity.getClass().getSimpleName());
+        log("onCreate");
     }
 
     @Override
     public void onStart() {
-        Logger.info("%s - onStart", mActivity.getClass().getSimpleName());
+        log("onStart");
     }
 
     @Override
     public void onResume() {
-        Logger.info("%s - onResume", mActivity.getClass().getSimpleName());
+        log("onResume");
     }
 
     @Override
     public void onPause() {
-        Logger.info("%s - onPause", mActivity.getClass().getSimpleName());
+        log("onPause");
     }
 
     @Override
     public void onStop() {
-        Logger.info("%s - onStop", mActivity.getClass().getSimpleName());
+        log("onStop");
     }
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
-        Logger.info("%s - onSaveInstanceState", mActivity.getClass().getSimpleName());
+        log("onSaveInstanceState");
     }
 
     @Override
     public void onDestroy() {
-        Logger.info("%s - onDestroy", mActivity.getClass().getSimpleName());
+        log("onDestroy");
         this.mActivity = null;
     }
+
+    /**
+     * 只在日志开启时才获取 Activity 的类名
+     */
+    private void log(final String event) {
+        final Activity activity = mActivity;
+        Logger.i(new LogSupplier() {
+            @Override
+            public String get() {
+                return activity.getClass().getSimpleName() + " - " + event;
+            }
+        });
+    }
 }
@@ -26,6 +26,7 @@ import android.content.res.Configuration;
 
 import androidx.fragment.app.Fragment;
 
+import com.lwh.jackknife.cache.CacheRegistry;
 import com.lwh.jackknife.util.AppProcessUtils;
 
 import java.util.ArrayList;
@@ -147,6 +148,7 @@ public class AppDelegate implements ApplicationLifecycleCallbacks {
             //系统正运行于低内存的状态并且你的进程正处于 LRU 列表中最容易被杀掉的位置, 你应该释放任何不影响你的 App 恢复状态的资源
             //低于 API 14 的 App 可以使用 onLowMemory 回调
 //                case TRIM_MEMORY_COMPLETE:
+            CacheRegistry.getInstance().onTrimMemory(level);
         }
 
         @Override
@@ -163,6 +165,7 @@ public class AppDelegate implements ApplicationLifecycleCallbacks {
         @Override
         public void onLowMemory() {
             //系统正运行于低内存的状态并且你的进程正处于 LRU 列表中最容易被杀掉的位置, 你应该释放任何不影响你的 App 恢复状态的资源
+            CacheRegistry.getInstance().onLowMemory();
             AppProcessUtils.killAllProcesses(mApp);
         }
     }
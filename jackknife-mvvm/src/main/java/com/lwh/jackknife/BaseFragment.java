@@ -31,6 +31,7 @@ import androidx.databinding.ViewDataBinding;
 import androidx.fragment.app.Fragment;
 
 import com.lwh.jackknife.cache.Cache;
+import com.lwh.jackknife.cache.CacheRegistry;
 import com.lwh.jackknife.cache.CacheType;
 import com.lwh.jackknife.cache.LruCache;
 
@@ -79,6 +80,7 @@ public abstract class BaseFragment<T extends ViewDataBinding> extends Fragment i
     public synchronized Cache<String, Object> loadCache() {
         if (mCache == null) {
             mCache = cacheFactory().build(CacheType.FRAGMENT_CACHE, getContext());
+            CacheRegistry.getInstance().register(mCache, CacheType.FRAGMENT_CACHE);
         }
         return mCache;
     }
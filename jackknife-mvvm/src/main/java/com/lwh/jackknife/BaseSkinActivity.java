@@ -27,6 +27,7 @@ import androidx.databinding.DataBindingUtil;
 import androidx.databinding.ViewDataBinding;
 
 import com.lwh.jackknife.cache.Cache;
+import com.lwh.jackknife.cache.CacheRegistry;
 import com.lwh.jackknife.cache.CacheType;
 import com.lwh.jackknife.cache.LruCache;
 import com.lwh.jackknife.log.Logger;
@@ -151,6 +152,7 @@ public abstract class BaseSkinActivity<T extends ViewDataBinding> extends SkinAc
     public synchronized Cache<String, Object> loadCache() {
         if (mCache == null) {
             mCache = cacheFactory().build(CacheType.ACTIVITY_CACHE, this);
+            CacheRegistry.getInstance().register(mCache, CacheType.ACTIVITY_CACHE);
         }
         return mCache;
     }
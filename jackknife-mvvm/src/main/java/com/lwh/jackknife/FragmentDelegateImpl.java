@@ -34,12 +34,12 @@ public class FragmentDelegateImpl implements FragmentDelegate {
 
     @Override
     public void onAttach(Context context) {
-        Logger.info("%s - onAttach", mFragment.toString());
+        Logger.i("%s - onAttach", mFragment);
     }
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
-        Logger.info("%s - onCreate", mFragment.toString());
+        Logger.i("%s - onCreate", mFragment);
         // 在配置变化的时候将这个 Fragment 保存下来,在 Activity 由于配置变化重建时重复利用已经创建的 Fragment。
         // https://developer.android.com/reference/android/app/Fragment.html?hl=zh-cn#setRetainInstance(boolean)
         // 如果在 XML 中使用 <Fragment/> 标签,的方式创建 Fragment 请务必在标签中加上 android:id 或者 android:tag 属性,否则 setRetainInstance(true) 无效
@@ -49,53 +49,53 @@ public class FragmentDelegateImpl implements FragmentDelegate {
 
     @Override
     public void onCreateView(View view, Bundle savedInstanceState) {
-        Logger.info("%s - onCreateView", mFragment.toString());
+        Logger.i("%s - onCreateView", mFragment);
     }
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
-        Logger.info("%s - onActivityCreate", mFragment.toString());
+        Logger.i("%s - onActivityCreate", mFragment);
     }
 
     @Override
     public void onStart() {
-        Logger.info("%s - onStart", mFragment.toString());
+        Logger.i("%s - onStart", mFragment);
     }
 
     @Override
     public void onResume() {
-        Logger.info("%s - onResume", mFragment.toString());
+        Logger.i("%s - onResume", mFragment);
     }
 
     @Override
     public void onPause() {
-        Logger.info("%s - onPause", mFragment.toString());
+        Logger.i("%s - onPause", mFragment);
     }
 
     @Override
     public void onStop() {
-        Logger.info("%s - onStop", mFragment.toString());
+        Logger.i("%s - onStop", mFragment);
     }
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
-        Logger.info("%s - onSaveInstanceState", mFragment.toString());
+        Logger.i("%s - onSaveInstanceState", mFragment);
     }
 
     @Override
     public void onDestroyView() {
-        Logger.info("%s - onDestroyView", mFragment.toString());
+        Logger.i("%s - onDestroyView", mFragment);
     }
 
     @Override
     public void onDestroy() {
-        Logger.info("%s - onDestroy", mFragment.toString());
+        Logger.i("%s - onDestroy", mFragment);
         this.mFragment = null;
     }
 
     @Override
     public void onDetach() {
-        Logger.info("%s - onDetach", mFragment.toString());
+        Logger.i("%s - onDetach", mFragment);
     }
 
     /**
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+/**
+ * Uploads the crash information through a {@link ReportUploader}, which spools it to disk and
+ * sends it in gzipped batches with retries, instead of posting every crash inline.
+ * 通过 {@link ReportUploader} 上传崩溃信息，先暂存到磁盘，再按批次压缩上传并在失败时重试，
+ * 而不是每次崩溃都直接发送。
+ */
+public class BatchWebPolicy extends WebPolicyBase {
+
+    private ReportUploader mUploader;
+
+    public BatchWebPolicy(ReportUploader uploader) {
+        super(null);
+        this.mUploader = uploader;
+    }
+
+    public BatchWebPolicy(ReportUploader uploader, CrashReportPolicy policy) {
+        super(null, policy);
+        this.mUploader = uploader;
+    }
+
+    public BatchWebPolicy(ReportUploader uploader, Group group) {
+        super(null, group);
+        this.mUploader = uploader;
+    }
+
+    public BatchWebPolicy(ReportUploader uploader, Group group, CrashReportPolicy policy) {
+        super(null, group, policy);
+        this.mUploader = uploader;
+    }
+
+    public ReportUploader getUploader() {
+        return mUploader;
+    }
+
+    @Override
+    public void sendCrashInfoToWeb(String url, CrashInfo info, Group group) {
+        if (group.counts()) {
+            mUploader.enqueue(info);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes logs and crashes in the compact binary format of {@link BinaryLogFormat}, which can be
+ * rendered back to text or JSON by {@link BinaryLogDecoder}. Not thread safe.
+ * 以紧凑的二进制格式写入日志和崩溃信息，可以通过 {@link BinaryLogDecoder} 还原为文本或 JSON，
+ * 非线程安全。
+ */
+public class BinaryLogEncoder implements BinaryLogFormat {
+
+    /**
+     * Strings beyond the limit are written inline, so a stream of unique tags can not grow the
+     * dictionary without bound.
+     * 超过上限的字符串直接内联写入，避免字典无限增长。
+     */
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+
+    /**
+     * String arguments not longer than this are interned in the dictionary.
+     * 不超过此长度的字符串参数会放入字典。
+     */
+    private static final int MAX_INTERNED_ARG_LENGTH = 32;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final OutputStream mOutputStream;
+    private final Map<String, Integer> mDictionary = new HashMap<>();
+    private boolean mHeaderWritten;
+    private long mLastTime;
+
+    public BinaryLogEncoder(OutputStream outputStream) {
+        this.mOutputStream = outputStream;
+    }
+
+    /**
+     * Starts a new stream, the header and the dictionary are written again, should be called when
+     * the encoder is moved to a new file.
+     * 开始新的数据流，文件头和字典会重新写入，切换到新文件时应该调用。
+     */
+    public void reset() {
+        mDictionary.clear();
+        mHeaderWritten = false;
+        mLastTime = 0;
+    }
+
+    /**
+     * @param format A {@link String#format(String, Object...)} pattern, it is written once per
+     *               stream and the arguments are written with their types.
+     */
+    public void writeLog(long time, String tag, String thread, String format, Object... args)
+            throws IOException {
+        writeHeader();
+        int tagId = define(tag);
+        int threadId = define(thread);
+        int formatId = define(format);
+        int count = args != null ? args.length : 0;
+        int[] argIds = null;
+        for (int i = 0; i < count; i++) {
+            if (args[i] instanceof String
+                    && ((String) args[i]).length() <= MAX_INTERNED_ARG_LENGTH) {
+                if (argIds == null) {
+                    argIds = new int[count];
+                    Arrays.fill(argIds, -1);
+                }
+                argIds[i] = define((String) args[i]);
+            }
+        }
+        // 字典条目必须写在引用它们的条目之前
+        mOutputStream.write(ENTRY_LOG);
+        writeTime(time);
+        writeRef(tag, tagId);
+        writeRef(thread, threadId);
+        writeRef(format, formatId);
+        writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            if (argIds != null && argIds[i] >= 0) {
+                mOutputStream.write(ARG_STRING_REF);
+                writeVarint(REF_ID + argIds[i]);
+            } else {
+                writeArg(args[i]);
+            }
+        }
+    }
+
+    public void writeLog(long time, LogInfo info) throws IOException {
+        writeLog(time, info.getTag(), Thread.currentThread().getName(), "%s", info.getContent());
+    }
+
+    public void writeCrash(long time, CrashInfo info) throws IOException {
+        writeHeader();
+        Thread thread = info.getThread();
+        String threadName = thread != null ? thread.getName() : null;
+        String[] strings = {threadName, info.getVersionName(), info.getRelease(),
+                info.getModel(), info.getBrand()};
+        int[] ids = new int[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            ids[i] = define(strings[i]);
+        }
+        for (Throwable t = info.getThrowable(); t != null; t = t.getCause()) {
+            define(t.getClass().getName());
+            for (StackTraceElement element : t.getStackTrace()) {
+                define(element.getClassName());
+                define(element.getMethodName());
+                define(element.getFileName());
+            }
+        }
+        mOutputStream.write(ENTRY_CRASH);
+        writeTime(time);
+        writeRef(strings[0], ids[0]);
+        writeRef(strings[1], ids[1]);
+        writeVarint(zigzag(info.getVersionCode()));
+        writeVarint(info.getSdkVersion());
+        for (int i = 2; i < strings.length; i++) {
+            writeRef(strings[i], ids[i]);
+        }
+        int count = 0;
+        for (Throwable t = info.getThrowable(); t != null; t = t.getCause()) {
+            count++;
+        }
+        writeVarint(count);
+        for (Throwable t = info.getThrowable(); t != null; t = t.getCause()) {
+            writeRef(t.getClass().getName());
+            writeRef(t.getMessage(), -1);
+            StackTraceElement[] elements = t.getStackTrace();
+            writeVarint(elements.length);
+            for (StackTraceElement element : elements) {
+                writeRef(element.getClassName());
+                writeRef(element.getMethodName());
+                writeRef(element.getFileName());
+                writeVarint(zigzag(element.getLineNumber()));
+            }
+        }
+    }
+
+    public void flush() throws IOException {
+        mOutputStream.flush();
+    }
+
+    private void writeHeader() throws IOException {
+        if (!mHeaderWritten) {
+            mOutputStream.write(MAGIC);
+            mOutputStream.write(VERSION);
+            mHeaderWritten = true;
+        }
+    }
+
+    /**
+     * Writes the definition of the string if it is new.
+     * 如果是新的字符串则写入字典。
+     *
+     * @return The id of the string, -1 if it is written inline.
+     */
+    private int define(String s) throws IOException {
+        if (s == null) {
+            return -1;
+        }
+        Integer id = mDictionary.get(s);
+        if (id != null) {
+            return id;
+        }
+        if (mDictionary.size() >= MAX_DICTIONARY_SIZE) {
+            return -1;
+        }
+        int newId = mDictionary.size();
+        mDictionary.put(s, newId);
+        mOutputStream.write(ENTRY_STRING);
+        writeVarint(newId);
+        writeString(s);
+        return newId;
+    }
+
+    private void writeRef(String s) throws IOException {
+        Integer id = s != null ? mDictionary.get(s) : null;
+        writeRef(s, id != null ? id : -1);
+    }
+
+    private void writeRef(String s, int id) throws IOException {
+        if (s == null) {
+            writeVarint(REF_NULL);
+        } else if (id < 0) {
+            writeVarint(REF_INLINE);
+            writeString(s);
+        } else {
+            writeVarint(REF_ID + id);
+        }
+    }
+
+    private void writeArg(Object arg) throws IOException {
+        if (arg == null) {
+            mOutputStream.write(ARG_NULL);
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            mOutputStream.write(ARG_INT);
+            writeVarint(zigzag(((Number) arg).intValue()));
+        } else if (arg instanceof Long) {
+            mOutputStream.write(ARG_LONG);
+            writeVarint(zigzag((Long) arg));
+        } else if (arg instanceof Float) {
+            mOutputStream.write(ARG_FLOAT);
+            writeFixed(Float.floatToIntBits((Float) arg), 4);
+        } else if (arg instanceof Double) {
+            mOutputStream.write(ARG_DOUBLE);
+            writeFixed(Double.doubleToLongBits((Double) arg), 8);
+        } else if (arg instanceof Boolean) {
+            mOutputStream.write((Boolean) arg ? ARG_TRUE : ARG_FALSE);
+        } else if (arg instanceof Character) {
+            mOutputStream.write(ARG_CHAR);
+            writeVarint((Character) arg);
+        } else {
+            mOutputStream.write(ARG_STRING);
+            writeString(String.valueOf(arg));
+        }
+    }
+
+    private void writeTime(long time) throws IOException {
+        writeVarint(zigzag(time - mLastTime));
+        mLastTime = time;
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        writeVarint(bytes.length);
+        mOutputStream.write(bytes);
+    }
+
+    private void writeFixed(long bits, int length) throws IOException {
+        for (int i = length - 1; i >= 0; i--) {
+            mOutputStream.write((int) (bits >>> (i * 8)));
+        }
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            mOutputStream.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        mOutputStream.write((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -60,6 +60,9 @@ class DoraUncaughtExceptionHandler implements Thread.UncaughtExceptionHandler {
 
     @Override
     public void uncaughtException(Thread t, Throwable e) {
+        // Writes the logs still in the buffer before the process exits
+        // 进程退出前写入缓冲区中剩余的日志
+        LogAppender.flushAll();
         if (mConfig.enabled) {
             boolean filterResult = mConfig.filter.filterCrashInfo(mConfig.info);
             if (filterResult) {
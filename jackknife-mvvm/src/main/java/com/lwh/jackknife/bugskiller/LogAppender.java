@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes logs to a {@link RollingLogFile} on a single writer thread, the calling thread only puts
+ * the log into a bounded lock-free ring buffer.
+ * 在单独的写线程中把日志写入滚动的日志文件，调用线程只把日志放入有界的无锁环形缓冲区。
+ */
+public class LogAppender {
+
+    /**
+     * What to do when the ring buffer is full.
+     * 环形缓冲区满了之后的处理方式。
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Discards the log, the number of discarded logs is written to the file later.
+         * 丢弃这条日志，稍后在文件中记录丢弃的条数。
+         */
+        DROP,
+
+        /**
+         * Waits until the writer thread frees a slot.
+         * 等待写线程腾出空间。
+         */
+        BLOCK,
+
+        /**
+         * Waits for one of every {@link Builder#sampleRate(int)} logs and discards the others.
+         * 每 sampleRate 条日志中等待保留一条，丢弃其余的。
+         */
+        SAMPLE
+    }
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FLUSH_TIMEOUT_MILLIS = 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final List<LogAppender> sAppenders = new CopyOnWriteArrayList<>();
+
+    private final AtomicReferenceArray<Record> mSlots;
+    private final int mMask;
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mOverflows = new AtomicLong();
+    private final OverflowPolicy mOverflowPolicy;
+    private final int mSampleRate;
+    private final RollingLogFile mFile;
+    private final BinaryLogEncoder mEncoder;
+    private final ByteArrayOutputStream mEncoded;
+    private final SimpleDateFormat mTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.",
+            Locale.ENGLISH);
+    private final StringBuilder mLine = new StringBuilder(256);
+    private long mLastSecond = -1;
+    private String mSecondPrefix;
+    private final Thread mWriter;
+    private volatile boolean mWaiting;
+    private volatile long mFlushed;
+
+    private static final class Record {
+
+        final long time;
+        final String thread;
+        final String tag;
+
+        /**
+         * The content, or the format of the arguments if they are not null.
+         * 日志内容，参数不为 null 时为参数的格式。
+         */
+        final String content;
+        final Object[] args;
+
+        Record(long time, String thread, String tag, String content, Object[] args) {
+            this.time = time;
+            this.thread = thread;
+            this.tag = tag;
+            this.content = content;
+            this.args = args;
+        }
+    }
+
+    private LogAppender(Builder builder) {
+        int capacity = Integer.highestOneBit(Math.max(2, builder.capacity - 1)) << 1;
+        this.mSlots = new AtomicReferenceArray<>(capacity);
+        this.mMask = capacity - 1;
+        this.mOverflowPolicy = builder.overflowPolicy;
+        this.mSampleRate = Math.max(1, builder.sampleRate);
+        this.mFile = new RollingLogFile(builder.folder, builder.binary ? ".dlog" : ".txt",
+                builder.maxFileSize, builder.rollInterval, builder.maxFiles);
+        this.mEncoded = builder.binary ? new ByteArrayOutputStream(256) : null;
+        this.mEncoder = builder.binary ? new BinaryLogEncoder(mEncoded) : null;
+        this.mWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "jackknife-log");
+        mWriter.setDaemon(true);
+        mWriter.start();
+        sAppenders.add(this);
+    }
+
+    /**
+     * Puts a log into the ring buffer, never does I/O on the calling thread.
+     * 把日志放入环形缓冲区，不会在调用线程中读写文件。
+     *
+     * @return False if the log was discarded by the {@link OverflowPolicy}.
+     */
+    public boolean append(String tag, String content) {
+        return enqueue(new Record(System.currentTimeMillis(), Thread.currentThread().getName(),
+                tag, content, null));
+    }
+
+    /**
+     * Puts a log into the ring buffer, it is formatted on the writer thread, or written as the
+     * format and the typed arguments in the binary format. The arguments should not be changed
+     * after the call.
+     * 把日志放入环形缓冲区，在写线程中格式化，二进制格式下直接写入格式字符串和带类型的参数。调用后不应该
+     * 再修改参数。
+     *
+     * @param format A {@link String#format(String, Object...)} pattern.
+     */
+    public boolean appendFormat(String tag, String format, Object... args) {
+        return enqueue(new Record(System.currentTimeMillis(), Thread.currentThread().getName(),
+                tag, format, args));
+    }
+
+    private boolean enqueue(Record record) {
+        if (offer(record)) {
+            return true;
+        }
+        boolean wait;
+        switch (mOverflowPolicy) {
+            case BLOCK:
+                wait = true;
+                break;
+            case SAMPLE:
+                wait = mOverflows.getAndIncrement() % mSampleRate == 0;
+                break;
+            default:
+                wait = false;
+                break;
+        }
+        if (!wait || Thread.currentThread() == mWriter) {
+            mDropped.incrementAndGet();
+            return false;
+        }
+        while (!offer(record)) {
+            Thread.yield();
+        }
+        return true;
+    }
+
+    private boolean offer(Record record) {
+        while (true) {
+            long tail = mTail.get();
+            if (tail - mHead.get() > mMask) {
+                LockSupport.unpark(mWriter);
+                return false;
+            }
+            if (mTail.compareAndSet(tail, tail + 1)) {
+                // 占到位置后才发布，写线程读到 null 时会等待发布完成；发布和读取 mWaiting 都是
+                // volatile 操作，不会和写线程的检查交错而漏掉唤醒
+                mSlots.set((int) tail & mMask, record);
+                if (mWaiting) {
+                    LockSupport.unpark(mWriter);
+                }
+                return true;
+            }
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            long head = mHead.get();
+            Record record = mSlots.get((int) head & mMask);
+            if (record == null) {
+                flushFile(head);
+                mWaiting = true;
+                if (mSlots.get((int) head & mMask) == null) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                mWaiting = false;
+                continue;
+            }
+            mSlots.lazySet((int) head & mMask, null);
+            mHead.lazySet(head + 1);
+            write(record);
+        }
+    }
+
+    private void write(Record record) {
+        try {
+            long dropped = mDropped.getAndSet(0);
+            if (dropped > 0) {
+                writeRecord(new Record(record.time, mWriter.getName(), "dora", "%d logs dropped",
+                        new Object[]{dropped}));
+            }
+            writeRecord(record);
+        } catch (IOException e) {
+            Log.e("dora", "日志信息存储失败", e);
+        }
+    }
+
+    private void writeRecord(Record record) throws IOException {
+        if (mEncoder == null) {
+            byte[] bytes = format(record);
+            mFile.prepare(record.time, bytes.length);
+            mFile.write(bytes);
+            return;
+        }
+        // 每个文件都是独立的数据流，滚动后重新写入文件头和字典
+        if (mFile.prepare(record.time, 0)) {
+            mEncoder.reset();
+        }
+        if (record.args != null) {
+            mEncoder.writeLog(record.time, record.tag, record.thread, record.content, record.args);
+        } else {
+            mEncoder.writeLog(record.time, record.tag, record.thread, "%s", record.content);
+        }
+        mFile.write(mEncoded.toByteArray());
+        mEncoded.reset();
+    }
+
+    private byte[] format(Record record) {
+        // 同一秒内的日志复用格式化好的时间，只拼接毫秒
+        long second = record.time / 1000;
+        if (second != mLastSecond) {
+            mSecondPrefix = mTimeFormat.format(new Date(second * 1000));
+            mLastSecond = second;
+        }
+        int millis = (int) (record.time % 1000);
+        StringBuilder line = mLine;
+        line.setLength(0);
+        line.append(mSecondPrefix);
+        if (millis < 100) {
+            line.append('0');
+        }
+        if (millis < 10) {
+            line.append('0');
+        }
+        line.append(millis).append(' ').append(record.tag).append(": ");
+        if (record.args != null) {
+            try {
+                line.append(String.format(record.content, record.args));
+            } catch (IllegalFormatException e) {
+                line.append(record.content).append(' ').append(Arrays.toString(record.args));
+            }
+        } else {
+            line.append(record.content);
+        }
+        line.append('\n');
+        return line.toString().getBytes(UTF_8);
+    }
+
+    private void flushFile(long head) {
+        if (mFlushed == head) {
+            return;
+        }
+        try {
+            mFile.flush();
+        } catch (IOException e) {
+            Log.e("dora", "日志信息存储失败", e);
+        }
+        mFlushed = head;
+    }
+
+    /**
+     * Waits until the logs appended before are written to the file, at most {@code timeoutMillis}.
+     * 等待之前放入的日志写入文件，最多等待 timeoutMillis 毫秒。
+     *
+     * @return True if all the logs were written.
+     */
+    public boolean flush(long timeoutMillis) {
+        if (Thread.currentThread() == mWriter) {
+            return false;
+        }
+        long target = mTail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (mFlushed < target) {
+            if (System.nanoTime() - deadline >= 0 || !mWriter.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(mWriter);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    /**
+     * Flushes all appenders, called before the process is killed by a crash.
+     * 刷新所有的日志，在崩溃导致进程退出前调用。
+     */
+    public static void flushAll() {
+        for (LogAppender appender : sAppenders) {
+            appender.flush(FLUSH_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * @return The number of logs discarded by the {@link OverflowPolicy}.
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    public static class Builder {
+
+        File folder;
+        int capacity = 1024;
+        OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+        int sampleRate = 10;
+        long maxFileSize = 2 * 1024 * 1024;
+        long rollInterval = TimeUnit.DAYS.toMillis(1);
+        int maxFiles = 10;
+        boolean binary;
+
+        public Builder(File folder) {
+            this.folder = folder;
+        }
+
+        /**
+         * The size of the ring buffer, rounded up to a power of two.
+         * 环形缓冲区的大小，向上取整为 2 的幂。
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder overflowPolicy(OverflowPolicy policy) {
+            this.overflowPolicy = policy;
+            return this;
+        }
+
+        public Builder sampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        public Builder maxFileSize(long maxFileSize) {
+            this.maxFileSize = maxFileSize;
+            return this;
+        }
+
+        /**
+         * Rolls over to a new file after the interval, 0 to roll by size only.
+         * 间隔多久滚动到新文件，0 表示只按大小滚动。
+         */
+        public Builder rollInterval(long interval, TimeUnit unit) {
+            this.rollInterval = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * The number of files to keep, 0 to keep all.
+         * 保留的文件个数，0 表示全部保留。
+         */
+        public Builder maxFiles(int maxFiles) {
+            this.maxFiles = maxFiles;
+            return this;
+        }
+
+        /**
+         * Writes the logs in the format of {@link BinaryLogEncoder} to .dlog files, which can be
+         * read by {@link BinaryLogDecoder}.
+         * 以 {@link BinaryLogEncoder} 的格式写入 .dlog 文件，可以通过 {@link BinaryLogDecoder} 读取。
+         */
+        public Builder binary(boolean binary) {
+            this.binary = binary;
+            return this;
+        }
+
+        public LogAppender build() {
+            return new LogAppender(this);
+        }
+    }
+}
@@ -20,10 +20,6 @@ import android.os.Environment;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 
 /**
  * Write log information to the SD card of the mobile.
@@ -32,6 +28,7 @@ import java.util.Date;
 public class LogFilePolicy extends LogReportPolicy {
 
     private String mFolderName = "android-dora"; //手机系统根目录保存日志文件夹的名称
+    private volatile LogAppender mAppender;   //在写线程中写入滚动的日志文件
 
     public LogFilePolicy() {
         this(new DefaultGroup());
@@ -67,31 +64,37 @@ public class LogFilePolicy extends LogReportPolicy {
         this.mFolderName = folderName;
     }
 
+    public LogFilePolicy(LogAppender appender) {
+        this(appender, new DefaultGroup(), null);
+    }
+
+    public LogFilePolicy(LogAppender appender, Group group, LogReportPolicy policy) {
+        super(group, policy);
+        this.mAppender = appender;
+    }
+
+    private LogAppender getAppender() {
+        if (mAppender == null) {
+            synchronized (this) {
+                if (mAppender == null) {
+                    String path = Environment.getExternalStorageDirectory().getAbsolutePath();
+                    mAppender = new LogAppender.Builder(new File(path, mFolderName)).build();
+                }
+            }
+        }
+        return mAppender;
+    }
+
     @Override
     public void report(LogInfo info, Group group) {
         super.report(info, group);
-        try {
-            if (group.counts()) {
-                if (info.getContent() == null || info.getContent().equals("")) {
-                    return;
-                }
-                String path = Environment.getExternalStorageDirectory().getAbsolutePath();
-                SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss");
-                String time = simpleDateFormat.format(new Date());
-                File folder = new File(path, mFolderName);
-                folder.mkdirs();
-                File file = new File(folder.getAbsolutePath(), "log" + time + ".txt");
-                if (!file.exists()) {
-                    file.createNewFile();
-                }
-                byte[] buffer = info.getContent().trim().getBytes();
-                FileOutputStream fileOutputStream = new FileOutputStream(file);
-                fileOutputStream.write(buffer, 0, buffer.length);
-                fileOutputStream.flush();
-                fileOutputStream.close();
+        if (group.counts()) {
+            if (info.getContent() == null || info.getContent().equals("")) {
+                return;
+            }
+            if (!getAppender().append(info.getTag(), info.getContent().trim())) {
+                Log.w("dora", "日志缓冲区已满，丢弃日志");
             }
-        } catch (IOException e) {
-            Log.e("dora", "日志信息存储失败");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A circular log buffer in a memory-mapped file. Appending a log only copies bytes into the
+ * mapped memory, the kernel keeps the data even if the process is killed, so the last logs before
+ * an ANR or a native crash can be read on next launch.
+ * 内存映射文件中的环形日志缓冲区。写入日志只是把字节复制到映射的内存中，进程被杀死后数据仍然由内核
+ * 保留，下次启动时可以读出 ANR 或 native 崩溃前的最后一段日志。
+ * <p>
+ * The header holds the positions of the oldest record and of the tail. Before a record overwrites
+ * old data, the oldest position is moved past the records it overwrites, and the tail is moved
+ * only after the record is written, so the records between the two positions are always complete.
+ * 文件头中保存最旧记录和末尾的位置。新记录覆盖旧数据前先把最旧记录的位置移过被覆盖的记录，写完记录后
+ * 才移动末尾的位置，所以两个位置之间的记录始终是完整的。
+ */
+public class MmapLogBuffer {
+
+    private static final int MAGIC = 0x444f5241;
+    private static final int OFFSET_CAPACITY = 4;
+    private static final int OFFSET_OLDEST = 8;
+    private static final int OFFSET_TAIL = 16;
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * Length, time and length of the tag.
+     * 记录长度、时间和 tag 长度。
+     */
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final MappedByteBuffer mBuffer;
+    private final int mCapacity;
+    private long mOldest;
+    private long mTail;
+
+    private MmapLogBuffer(MappedByteBuffer buffer, int capacity) {
+        this.mBuffer = buffer;
+        this.mCapacity = capacity;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(OFFSET_CAPACITY) != capacity) {
+            reset();
+            return;
+        }
+        mOldest = buffer.getLong(OFFSET_OLDEST);
+        mTail = buffer.getLong(OFFSET_TAIL);
+        if (mOldest < 0 || mTail < mOldest || mTail - mOldest > capacity) {
+            Log.w("dora", "Invalid log buffer header, discarding all logs");
+            reset();
+        }
+    }
+
+    /**
+     * Opens the buffer in the file, the logs written before are kept unless the capacity
+     * changed.
+     * 打开文件中的缓冲区，除非容量改变，否则之前写入的日志会被保留。
+     *
+     * @param capacity The number of bytes of logs to keep.
+     */
+    public static MmapLogBuffer open(File file, int capacity) throws IOException {
+        if (capacity < RECORD_HEADER_SIZE * 4) {
+            throw new IllegalArgumentException("Capacity is too small: " + capacity);
+        }
+        File folder = file.getParentFile();
+        if (folder != null && !folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Unable to create " + folder);
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long size = HEADER_SIZE + capacity;
+            if (raf.length() != size) {
+                raf.setLength(size);
+            }
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    size);
+            return new MmapLogBuffer(buffer, capacity);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void reset() {
+        mOldest = 0;
+        mTail = 0;
+        mBuffer.putLong(OFFSET_OLDEST, 0);
+        mBuffer.putLong(OFFSET_TAIL, 0);
+        mBuffer.putInt(OFFSET_CAPACITY, mCapacity);
+        mBuffer.putInt(0, MAGIC);
+    }
+
+    public synchronized void append(long time, String tag, String content) {
+        byte[] tagBytes = tag.getBytes(UTF_8);
+        byte[] contentBytes = content.getBytes(UTF_8);
+        // 一条记录最多占用一半的容量，超出的内容被截断
+        int maxLength = mCapacity / 2;
+        int tagLength = Math.min(tagBytes.length, maxLength / 2);
+        int contentLength = Math.min(contentBytes.length,
+                maxLength - RECORD_HEADER_SIZE - tagLength);
+        int length = RECORD_HEADER_SIZE + tagLength + contentLength;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length);
+        record.putLong(time);
+        record.putInt(tagLength);
+        record.put(tagBytes, 0, tagLength);
+        record.put(contentBytes, 0, contentLength);
+        long tail = mTail + length;
+        if (tail - mOldest > mCapacity) {
+            while (tail - mOldest > mCapacity) {
+                mOldest += readRecordLength(mOldest);
+            }
+            mBuffer.putLong(OFFSET_OLDEST, mOldest);
+        }
+        write(mTail, record.array());
+        mTail = tail;
+        mBuffer.putLong(OFFSET_TAIL, tail);
+    }
+
+    private int readRecordLength(long position) {
+        return ByteBuffer.wrap(read(position, 4)).getInt();
+    }
+
+    private void write(long position, byte[] bytes) {
+        int offset = (int) (position % mCapacity);
+        int first = Math.min(bytes.length, mCapacity - offset);
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(HEADER_SIZE + offset);
+        buffer.put(bytes, 0, first);
+        if (first < bytes.length) {
+            buffer.position(HEADER_SIZE);
+            buffer.put(bytes, first, bytes.length - first);
+        }
+    }
+
+    private byte[] read(long position, int length) {
+        byte[] bytes = new byte[length];
+        int offset = (int) (position % mCapacity);
+        int first = Math.min(length, mCapacity - offset);
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(HEADER_SIZE + offset);
+        buffer.get(bytes, 0, first);
+        if (first < length) {
+            buffer.position(HEADER_SIZE);
+            buffer.get(bytes, first, length - first);
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads all the logs kept in the buffer, from the oldest to the newest. The content of each
+     * {@link LogInfo} starts with the time the log was appended.
+     * 按从旧到新的顺序读出缓冲区中保存的所有日志，每条日志的内容以写入时间开头。
+     */
+    public synchronized List<LogInfo> readAll() {
+        List<LogInfo> logs = new ArrayList<>();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.ENGLISH);
+        long position = mOldest;
+        while (position + RECORD_HEADER_SIZE <= mTail) {
+            ByteBuffer header = ByteBuffer.wrap(read(position, RECORD_HEADER_SIZE));
+            int length = header.getInt();
+            long time = header.getLong();
+            int tagLength = header.getInt();
+            if (length < RECORD_HEADER_SIZE || tagLength < 0
+                    || tagLength > length - RECORD_HEADER_SIZE || position + length > mTail) {
+                Log.w("dora", "Corrupted log record at " + position);
+                break;
+            }
+            byte[] body = read(position + RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE);
+            String tag = new String(body, 0, tagLength, UTF_8);
+            String content = new String(body, tagLength, body.length - tagLength, UTF_8);
+            logs.add(new LogInfo(tag, format.format(new Date(time)) + " " + content));
+            position += length;
+        }
+        return logs;
+    }
+
+    /**
+     * Reads the logs left by the last run and clears the buffer.
+     * 读出上次运行留下的日志并清空缓冲区。
+     */
+    public synchronized List<LogInfo> recover() {
+        List<LogInfo> logs = readAll();
+        clear();
+        return logs;
+    }
+
+    public synchronized void clear() {
+        mOldest = mTail;
+        mBuffer.putLong(OFFSET_OLDEST, mOldest);
+    }
+
+    /**
+     * Writes the mapped memory to the disk, only needed to keep the logs over a power loss.
+     * 把映射的内存写入磁盘，只有在需要防止掉电丢失时才需要调用。
+     */
+    public void sync() {
+        mBuffer.force();
+    }
+}
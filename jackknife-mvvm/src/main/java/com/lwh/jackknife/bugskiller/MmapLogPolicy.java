@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+import java.util.List;
+
+/**
+ * Keeps the latest logs in a {@link MmapLogBuffer} on the calling thread, without any system call.
+ * The logs left by the last run can be reported by {@link #recover(LogReportPolicy)} on launch.
+ * 在调用线程中把最新的日志保存到 {@link MmapLogBuffer}，不产生系统调用。启动时可以通过
+ * {@link #recover(LogReportPolicy)} 上报上次运行留下的日志。
+ */
+public class MmapLogPolicy extends LogReportPolicy {
+
+    public static final String TAG_RECOVERED = "dora-recovered";
+
+    private final MmapLogBuffer mBuffer;
+
+    public MmapLogPolicy(MmapLogBuffer buffer) {
+        this(buffer, new DefaultGroup(), null);
+    }
+
+    public MmapLogPolicy(MmapLogBuffer buffer, LogReportPolicy policy) {
+        this(buffer, new DefaultGroup(), policy);
+    }
+
+    public MmapLogPolicy(MmapLogBuffer buffer, Group group, LogReportPolicy policy) {
+        super(group, policy);
+        this.mBuffer = buffer;
+    }
+
+    @Override
+    public void report(LogInfo info, Group group) {
+        super.report(info, group);
+        if (group.counts()) {
+            if (info.getContent() == null || info.getContent().equals("")) {
+                return;
+            }
+            mBuffer.append(System.currentTimeMillis(), info.getTag(), info.getContent());
+        }
+    }
+
+    /**
+     * Reports the logs left by the last run as one log tagged {@link #TAG_RECOVERED}, and clears
+     * the buffer. Should be called on launch before any log is printed.
+     * 把上次运行留下的日志合并为一条 tag 为 {@link #TAG_RECOVERED} 的日志上报，并清空缓冲区，
+     * 应该在启动后打印日志之前调用。
+     *
+     * @return False if there is no log left.
+     */
+    public boolean recover(LogReportPolicy policy) {
+        List<LogInfo> logs = mBuffer.recover();
+        if (logs.isEmpty()) {
+            return false;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (LogInfo log : logs) {
+            sb.append(log.getTag()).append(": ").append(log.getContent()).append('\n');
+        }
+        policy.report(new LogInfo(TAG_RECOVERED, sb.toString()), policy.getGroup());
+        return true;
+    }
+
+    public MmapLogBuffer getBuffer() {
+        return mBuffer;
+    }
+}
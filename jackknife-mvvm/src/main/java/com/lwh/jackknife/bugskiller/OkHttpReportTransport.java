@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+import java.io.IOException;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Posts the batches of {@link ReportUploader} with OkHttp.
+ * 使用 OkHttp 发送 {@link ReportUploader} 的批次。
+ */
+public class OkHttpReportTransport implements ReportUploader.Transport {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final OkHttpClient mClient;
+
+    public OkHttpReportTransport() {
+        this(new OkHttpClient());
+    }
+
+    public OkHttpReportTransport(OkHttpClient client) {
+        this.mClient = client;
+    }
+
+    @Override
+    public int post(String url, byte[] body, Map<String, String> headers) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(JSON, body));
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        // 在上传线程中同步执行，失败由 ReportUploader 退避重试
+        Response response = mClient.newCall(builder.build()).execute();
+        try {
+            return response.code();
+        } finally {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,712 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.lwh.jackknife.net.NetworkChangeObserver;
+import com.lwh.jackknife.net.NetworkStateReceiver;
+import com.lwh.jackknife.util.NetworkUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Spools reports to disk and uploads them in gzipped batches on a background thread.
+ * 把报告暂存到磁盘，在后台线程中按批次 gzip 压缩后上传。
+ * <p>
+ * A batch is sent when the spool holds {@link Builder#maxBatchCount(int)} reports, or
+ * {@link Builder#maxBatchBytes(int)} bytes, or its oldest report is older than
+ * {@link Builder#maxDelay(long, TimeUnit)}. Reports with the same fingerprint, such as a crash
+ * storm of one stack trace, are spooled as empty markers after the first one and are sent once
+ * with a count. A failed batch is retried with exponential backoff, and with
+ * {@link Builder#networkAware(Context)} no batch is sent while the network is unavailable.
+ * 暂存的报告数量、字节数或最旧报告的时间达到阈值时发送一批。指纹相同的报告（比如同一个调用栈的崩溃风暴）
+ * 在第一份之后只暂存空的标记文件，发送时只发送一次并附带次数。发送失败按指数退避重试，
+ * 设置 {@link Builder#networkAware(Context)} 后网络不可用时不发送。
+ */
+public class ReportUploader {
+
+    /**
+     * Sends a batch to the server.
+     * 把一批报告发送到服务器。
+     */
+    public interface Transport {
+
+        /**
+         * @param body The gzipped JSON of the batch.
+         * @return The HTTP status code.
+         */
+        int post(String url, byte[] body, Map<String, String> headers) throws IOException;
+    }
+
+    private static final String TAG = "dora";
+    private static final String SUFFIX = ".json";
+
+    /**
+     * A report is written under this suffix and then renamed, so the upload thread never lists a
+     * file that is still being written.
+     * 报告先以这个后缀写入再重命名，上传线程不会读到还没写完的文件。
+     */
+    private static final String TEMP_SUFFIX = SUFFIX + ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final AtomicInteger sSequence = new AtomicInteger();
+
+    private final String mUrl;
+    private final File mSpoolDir;
+    private final int mMaxBatchCount;
+    private final int mMaxBatchBytes;
+    private final long mMaxDelay;
+    private final long mInitialBackoff;
+    private final long mMaxBackoff;
+    private final int mMaxSpoolFiles;
+    private final Context mContext;
+    private final Transport mTransport;
+    private final ScheduledThreadPoolExecutor mExecutor;
+    private final Random mRandom = new Random();
+
+    /**
+     * The fingerprints of the reports in the spool, loaded from the file names on first use.
+     * 暂存区中报告的指纹，第一次使用时从文件名中读取。
+     */
+    private Set<String> mFingerprints;
+    private int mSpoolCount;
+    private ScheduledFuture<?> mScheduled;
+    private long mScheduledTime;
+    private int mAttempts;
+    private long mNextRetryTime;
+    private volatile boolean mForce;
+
+    private final NetworkChangeObserver mNetworkObserver = new NetworkChangeObserver() {
+        @Override
+        public void onNetworkConnect(NetworkUtils.ApnType type) {
+            schedule(0);
+        }
+
+        @Override
+        public void onNetworkDisconnect() {
+        }
+    };
+
+    private final Runnable mCheckTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (ReportUploader.this) {
+                mScheduled = null;
+            }
+            check();
+        }
+    };
+
+    /**
+     * A group of spooled reports with the same fingerprint.
+     * 暂存区中指纹相同的一组报告。
+     */
+    private static final class Group {
+
+        final String fingerprint;
+        final List<File> files = new ArrayList<>();
+        File body;
+        long firstTime = Long.MAX_VALUE;
+        long lastTime;
+        long bytes;
+
+        Group(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private ReportUploader(Builder builder) {
+        this.mUrl = builder.url;
+        this.mSpoolDir = builder.spoolDir;
+        this.mMaxBatchCount = builder.maxBatchCount;
+        this.mMaxBatchBytes = builder.maxBatchBytes;
+        this.mMaxDelay = builder.maxDelay;
+        this.mInitialBackoff = builder.initialBackoff;
+        this.mMaxBackoff = builder.maxBackoff;
+        this.mMaxSpoolFiles = builder.maxSpoolFiles;
+        this.mContext = builder.context;
+        this.mTransport = builder.transport != null ? builder.transport
+                : new OkHttpReportTransport();
+        this.mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "jackknife-upload");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (mContext != null) {
+            NetworkStateReceiver.registerObserver(mNetworkObserver);
+        }
+        // 上传上次运行中暂存的报告
+        schedule(0);
+    }
+
+    /**
+     * Computes the fingerprint of a throwable from the classes and the frames of its cause chain,
+     * the messages are left out as they often contain ids.
+     * 根据异常链中的类名和调用栈计算指纹，消息中经常包含 id，所以不参与计算。
+     */
+    public static String fingerprint(Throwable throwable) {
+        StringBuilder sb = new StringBuilder();
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            sb.append(t.getClass().getName()).append('\n');
+            for (StackTraceElement element : t.getStackTrace()) {
+                sb.append(element.getClassName()).append('.').append(element.getMethodName())
+                        .append(':').append(element.getLineNumber()).append('\n');
+            }
+        }
+        return sha1(sb.toString());
+    }
+
+    private static String sha1(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(s.getBytes(UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Spools a crash on the calling thread, it is safe to call from the uncaught exception
+     * handler as only a small file is written.
+     * 在调用线程中暂存崩溃信息，只写入一个小文件，可以在未捕获异常处理器中调用。
+     */
+    public void enqueue(CrashInfo info) {
+        Throwable throwable = info.getThrowable();
+        Thread thread = info.getThread();
+        StringBuilder sb = new StringBuilder("{");
+        appendField(sb, "versionName", info.getVersionName()).append(',');
+        sb.append("\"versionCode\":").append(info.getVersionCode()).append(',');
+        sb.append("\"sdkVersion\":").append(info.getSdkVersion()).append(',');
+        appendField(sb, "androidVersion", info.getRelease()).append(',');
+        appendField(sb, "model", info.getModel()).append(',');
+        appendField(sb, "brand", info.getBrand()).append(',');
+        appendField(sb, "thread", thread != null ? thread.getName() : null).append(',');
+        appendField(sb, "androidException", throwable != null
+                ? throwable.getMessage() + info.getException() : null);
+        sb.append('}');
+        enqueue(throwable != null ? fingerprint(throwable) : sha1(sb.toString()), sb.toString());
+    }
+
+    /**
+     * Spools a report on the calling thread.
+     * 在调用线程中暂存一份报告。
+     *
+     * @param fingerprint Reports with the same fingerprint are sent once with a count.
+     * @param json        The JSON object of the report.
+     * @return False if the spool is full or can not be written.
+     */
+    public boolean enqueue(String fingerprint, String json) {
+        boolean duplicate;
+        synchronized (this) {
+            loadSpool();
+            if (mSpoolCount >= mMaxSpoolFiles) {
+                Log.w(TAG, "Report spool is full, dropping " + fingerprint);
+                return false;
+            }
+            duplicate = !mFingerprints.add(fingerprint);
+            mSpoolCount++;
+        }
+        String name = fingerprint + "_" + System.currentTimeMillis() + "_"
+                + sSequence.getAndIncrement();
+        File temp = new File(mSpoolDir, name + TEMP_SUFFIX);
+        OutputStream os = null;
+        boolean written = false;
+        try {
+            os = new FileOutputStream(temp);
+            if (!duplicate) {
+                os.write(json.getBytes(UTF_8));
+            }
+            written = true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to spool report", e);
+        } finally {
+            close(os);
+        }
+        if (!written || !temp.renameTo(new File(mSpoolDir, name + SUFFIX))) {
+            if (written) {
+                Log.e(TAG, "Unable to rename " + temp);
+            }
+            temp.delete();
+            synchronized (this) {
+                mSpoolCount--;
+            }
+            return false;
+        }
+        schedule(0);
+        return true;
+    }
+
+    /**
+     * Sends the spooled reports as soon as possible, without waiting for the batch thresholds.
+     * 不等待批次阈值，尽快发送暂存的报告。
+     */
+    public void flush() {
+        mForce = true;
+        synchronized (this) {
+            mNextRetryTime = 0;
+        }
+        schedule(0);
+    }
+
+    public void shutdown() {
+        if (mContext != null) {
+            NetworkStateReceiver.unregisterObserver(mNetworkObserver);
+        }
+        mExecutor.shutdownNow();
+    }
+
+    private boolean isNetworkAvailable() {
+        // 没有注册 NetworkStateReceiver 时它一直报告网络不可用，所以再直接查询一次
+        return NetworkStateReceiver.isNetworkAvailable() || NetworkUtils.checkNetwork(mContext);
+    }
+
+    private synchronized void loadSpool() {
+        if (mFingerprints != null) {
+            return;
+        }
+        mFingerprints = new HashSet<>();
+        if (!mSpoolDir.exists() && !mSpoolDir.mkdirs()) {
+            Log.e(TAG, "Unable to create " + mSpoolDir);
+        }
+        File[] files = mSpoolDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(TEMP_SUFFIX)) {
+                    // 上次进程退出时没有写完的报告
+                    file.delete();
+                    continue;
+                }
+                String fingerprint = parseFingerprint(file);
+                if (fingerprint != null) {
+                    mFingerprints.add(fingerprint);
+                    mSpoolCount++;
+                }
+            }
+        }
+    }
+
+    private static String parseFingerprint(File file) {
+        String name = file.getName();
+        int index = name.indexOf('_');
+        return name.endsWith(SUFFIX) && index > 0 ? name.substring(0, index) : null;
+    }
+
+    private static long parseTime(File file) {
+        String[] parts = file.getName().split("_");
+        try {
+            return parts.length == 3 ? Long.parseLong(parts[1]) : file.lastModified();
+        } catch (NumberFormatException e) {
+            return file.lastModified();
+        }
+    }
+
+    /**
+     * Runs a check after the delay, unless one is already scheduled earlier.
+     * 在延迟之后检查一次，已经安排了更早的检查时不做处理。
+     */
+    private synchronized void schedule(long delay) {
+        if (mExecutor.isShutdown()) {
+            return;
+        }
+        long time = System.currentTimeMillis() + delay;
+        if (mScheduled != null) {
+            if (mScheduledTime <= time) {
+                return;
+            }
+            mScheduled.cancel(false);
+        }
+        mScheduledTime = time;
+        mScheduled = mExecutor.schedule(mCheckTask, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void check() {
+        if (mContext != null && !isNetworkAvailable()) {
+            // 网络恢复时由 NetworkChangeObserver 或者下一次暂存重新触发
+            Log.i(TAG, "Waiting for the network to upload reports");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (now < mNextRetryTime) {
+                schedule(mNextRetryTime - now);
+                return;
+            }
+        }
+        loadSpool();
+        List<Group> groups = listGroups();
+        if (groups.isEmpty()) {
+            mForce = false;
+            return;
+        }
+        int count = 0;
+        long bytes = 0;
+        long oldest = Long.MAX_VALUE;
+        for (Group group : groups) {
+            count += group.files.size();
+            bytes += group.bytes;
+            oldest = Math.min(oldest, group.firstTime);
+        }
+        boolean due = mForce || groups.size() >= mMaxBatchCount || bytes >= mMaxBatchBytes
+                || now - oldest >= mMaxDelay;
+        if (!due) {
+            schedule(oldest + mMaxDelay - now);
+            return;
+        }
+        List<Group> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (Group group : groups) {
+            if (!batch.isEmpty() && (batch.size() >= mMaxBatchCount
+                    || batchBytes + group.bytes > mMaxBatchBytes)) {
+                break;
+            }
+            batch.add(group);
+            batchBytes += group.bytes;
+        }
+        Log.i(TAG, "Uploading " + batch.size() + " of " + groups.size() + " reports (" + count
+                + " occurrences)");
+        upload(batch, batch.size() < groups.size());
+    }
+
+    /**
+     * Groups the spooled files by fingerprint, the oldest group first.
+     * 按指纹对暂存的文件分组，最旧的组在前。
+     */
+    private List<Group> listGroups() {
+        Map<String, Group> groups = new LinkedHashMap<>();
+        File[] files = mSpoolDir.listFiles();
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        for (File file : files) {
+            String fingerprint = parseFingerprint(file);
+            if (fingerprint == null) {
+                continue;
+            }
+            Group group = groups.get(fingerprint);
+            if (group == null) {
+                group = new Group(fingerprint);
+                groups.put(fingerprint, group);
+            }
+            long time = parseTime(file);
+            group.files.add(file);
+            group.firstTime = Math.min(group.firstTime, time);
+            group.lastTime = Math.max(group.lastTime, time);
+            long length = file.length();
+            if (length > 0 && group.body == null) {
+                group.body = file;
+                group.bytes = length;
+            }
+        }
+        List<Group> list = new ArrayList<>(groups.values());
+        Collections.sort(list, new Comparator<Group>() {
+            @Override
+            public int compare(Group lhs, Group rhs) {
+                return lhs.firstTime < rhs.firstTime ? -1
+                        : (lhs.firstTime == rhs.firstTime ? 0 : 1);
+            }
+        });
+        return list;
+    }
+
+    private void upload(List<Group> batch, boolean hasMore) {
+        int status;
+        try {
+            byte[] body = gzip(buildPayload(batch));
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", "application/json; charset=utf-8");
+            headers.put("Content-Encoding", "gzip");
+            status = mTransport.post(mUrl, body, headers);
+        } catch (IOException e) {
+            Log.w(TAG, "Report upload failed: " + e);
+            retry();
+            return;
+        }
+        if (status >= 200 && status < 300) {
+            delete(batch);
+            synchronized (this) {
+                mAttempts = 0;
+            }
+            if (!hasMore) {
+                mForce = false;
+            }
+            // 继续发送剩余的报告，以及上传期间新暂存的报告
+            schedule(0);
+        } else if (status >= 400 && status < 500 && status != 408 && status != 429) {
+            // 服务器拒绝的批次重试也不会成功，丢弃以免阻塞之后的报告
+            Log.e(TAG, "Report upload rejected with " + status + ", dropping the batch");
+            delete(batch);
+            schedule(0);
+        } else {
+            Log.w(TAG, "Report upload failed with " + status);
+            retry();
+        }
+    }
+
+    private void retry() {
+        long backoff;
+        synchronized (this) {
+            int shift = Math.min(mAttempts, 20);
+            mAttempts++;
+            backoff = Math.min(mMaxBackoff, mInitialBackoff << shift);
+            // 随机抖动避免大量设备同时重试
+            backoff += (long) (mRandom.nextDouble() * backoff / 2);
+            mNextRetryTime = System.currentTimeMillis() + backoff;
+        }
+        schedule(backoff);
+    }
+
+    private void delete(List<Group> batch) {
+        synchronized (this) {
+            for (Group group : batch) {
+                for (File file : group.files) {
+                    if (file.delete()) {
+                        mSpoolCount--;
+                    }
+                }
+                // 上传期间写入的标记文件仍然保留这个指纹
+                File[] rest = mSpoolDir.listFiles();
+                boolean left = false;
+                if (rest != null) {
+                    for (File file : rest) {
+                        if (group.fingerprint.equals(parseFingerprint(file))) {
+                            left = true;
+                            break;
+                        }
+                    }
+                }
+                if (!left) {
+                    mFingerprints.remove(group.fingerprint);
+                }
+            }
+        }
+    }
+
+    private byte[] buildPayload(List<Group> batch) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"reports\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            Group group = batch.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('{');
+            appendField(sb, "fingerprint", group.fingerprint).append(',');
+            sb.append("\"count\":").append(group.files.size()).append(',');
+            sb.append("\"firstTime\":").append(group.firstTime).append(',');
+            sb.append("\"lastTime\":").append(group.lastTime).append(',');
+            // 报告正文可能已经在之前的批次中发送，这时只发送次数
+            sb.append("\"report\":");
+            sb.append(group.body != null ? new String(readFile(group.body), UTF_8) : "null");
+            sb.append('}');
+        }
+        sb.append("]}");
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        GZIPOutputStream gzip = new GZIPOutputStream(baos);
+        try {
+            gzip.write(bytes);
+        } finally {
+            gzip.close();
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                baos.write(buffer, 0, count);
+            }
+            return baos.toByteArray();
+        } finally {
+            close(is);
+        }
+    }
+
+    private static void close(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to close", e);
+            }
+        }
+    }
+
+    private static StringBuilder appendField(StringBuilder sb, String name, String value) {
+        sb.append('"').append(name).append("\":");
+        if (value == null) {
+            return sb.append("null");
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        return sb.append('"');
+    }
+
+    public static class Builder {
+
+        String url;
+        File spoolDir;
+        int maxBatchCount = 20;
+        int maxBatchBytes = 256 * 1024;
+        long maxDelay = TimeUnit.MINUTES.toMillis(1);
+        long initialBackoff = TimeUnit.SECONDS.toMillis(5);
+        long maxBackoff = TimeUnit.MINUTES.toMillis(30);
+        int maxSpoolFiles = 1000;
+        Context context;
+        Transport transport;
+
+        public Builder(String url, File spoolDir) {
+            this.url = url;
+            this.spoolDir = spoolDir;
+        }
+
+        /**
+         * The maximum number of distinct reports in a batch.
+         * 一批中不同报告的最大数量。
+         */
+        public Builder maxBatchCount(int count) {
+            this.maxBatchCount = count;
+            return this;
+        }
+
+        /**
+         * The maximum size of a batch before it is compressed.
+         * 一批报告压缩前的最大字节数。
+         */
+        public Builder maxBatchBytes(int bytes) {
+            this.maxBatchBytes = bytes;
+            return this;
+        }
+
+        /**
+         * How long a report waits for a batch to fill up.
+         * 一份报告最多等待多久凑成一批。
+         */
+        public Builder maxDelay(long delay, TimeUnit unit) {
+            this.maxDelay = unit.toMillis(delay);
+            return this;
+        }
+
+        public Builder backoff(long initial, long max, TimeUnit unit) {
+            this.initialBackoff = unit.toMillis(initial);
+            this.maxBackoff = unit.toMillis(max);
+            return this;
+        }
+
+        /**
+         * The maximum number of files in the spool, including the markers of duplicates.
+         * 暂存区中的最大文件数，包括重复报告的标记文件。
+         */
+        public Builder maxSpoolFiles(int count) {
+            this.maxSpoolFiles = count;
+            return this;
+        }
+
+        /**
+         * Sends no batch while the network is unavailable. The state comes from
+         * {@link NetworkStateReceiver}, or from {@link NetworkUtils#checkNetwork(Context)} if the
+         * receiver is not registered, and a registered receiver also resumes the upload when the
+         * network connects.
+         * 网络不可用时不发送。网络状态来自 {@link NetworkStateReceiver}，没有注册该广播接收者时使用
+         * {@link NetworkUtils#checkNetwork(Context)}，注册后网络连接时还会恢复上传。
+         */
+        public Builder networkAware(Context context) {
+            this.context = context != null ? context.getApplicationContext() : null;
+            return this;
+        }
+
+        /**
+         * Sends the batches by the transport instead of OkHttp, such as a local stand-in server
+         * in tests.
+         * 通过指定的方式发送，而不是 OkHttp，比如测试中的本地服务器。
+         */
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        public ReportUploader build() {
+            return new ReportUploader(this);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.bugskiller;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * A log file that is kept open and rolled over to a new file by size or by time, only the newest
+ * files are kept. Not thread safe, it is written by the writer thread of {@link LogAppender}.
+ * 一直保持打开的日志文件，按大小或时间滚动到新文件，只保留最新的若干个文件。
+ */
+class RollingLogFile {
+
+    private static final String PREFIX = "log";
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final File mFolder;
+    private final String mSuffix;
+    private final long mMaxFileSize;
+    private final long mRollInterval;
+    private final int mMaxFiles;
+    private final SimpleDateFormat mNameFormat = new SimpleDateFormat("yyyy_MM_dd_HH_mm_ss",
+            Locale.ENGLISH);
+    private OutputStream mOutputStream;
+    private long mFileSize;
+    private long mOpenTime;
+
+    RollingLogFile(File folder, String suffix, long maxFileSize, long rollInterval,
+                   int maxFiles) {
+        this.mFolder = folder;
+        this.mSuffix = suffix;
+        this.mMaxFileSize = maxFileSize;
+        this.mRollInterval = rollInterval;
+        this.mMaxFiles = maxFiles;
+    }
+
+    /**
+     * Rolls over to a new file if the bytes to write do not fit in the current one.
+     * 如果当前文件写不下将要写入的字节，滚动到新文件。
+     *
+     * @return True if a new file is opened.
+     */
+    boolean prepare(long time, int length) throws IOException {
+        if (mOutputStream == null || mFileSize + length > mMaxFileSize
+                || (mRollInterval > 0 && time - mOpenTime >= mRollInterval)) {
+            roll(time, length);
+            return true;
+        }
+        return false;
+    }
+
+    void write(byte[] bytes) throws IOException {
+        mOutputStream.write(bytes);
+        mFileSize += bytes.length;
+    }
+
+    void flush() throws IOException {
+        if (mOutputStream != null) {
+            mOutputStream.flush();
+        }
+    }
+
+    void close() {
+        if (mOutputStream != null) {
+            try {
+                mOutputStream.close();
+            } catch (IOException e) {
+                Log.e("dora", "日志文件关闭失败", e);
+            }
+            mOutputStream = null;
+        }
+    }
+
+    private void roll(long time, int length) throws IOException {
+        close();
+        if (!mFolder.exists() && !mFolder.mkdirs()) {
+            throw new IOException("Unable to create " + mFolder);
+        }
+        // 文件名只精确到秒，同一秒内按大小滚动时递增序号，否则会重新打开已经写满的文件
+        String name = PREFIX + mNameFormat.format(new Date(time));
+        File file;
+        int sequence = 0;
+        do {
+            file = new File(mFolder, name + String.format(Locale.ENGLISH, "_%03d", sequence++)
+                    + mSuffix);
+        } while (file.length() > 0 && file.length() + length > mMaxFileSize);
+        mFileSize = file.length();
+        mOutputStream = new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE);
+        mOpenTime = time;
+        deleteOldFiles();
+    }
+
+    private void deleteOldFiles() {
+        if (mMaxFiles <= 0) {
+            return;
+        }
+        File[] files = mFolder.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(PREFIX) && name.endsWith(mSuffix);
+            }
+        });
+        if (files == null || files.length <= mMaxFiles) {
+            return;
+        }
+        // 文件名中的时间格式保证了按名称排序就是按时间排序
+        Arrays.sort(files);
+        for (int i = 0; i < files.length - mMaxFiles; i++) {
+            if (!files[i].delete()) {
+                Log.w("dora", "Unable to delete " + files[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * ================================================
+ * 记录通过 {@link DefaultCacheFactory} 或 {@link #registering(Cache.Factory)} 包装的工厂构建的缓存,
+ * 在系统内存紧张时按级别缩小它们
+ * <p>
+ * 前台运行时的内存紧张通过 {@link Trimmable#setSizeMultiplier(float)} 降低最大 size,避免缓存被
+ * 立即重新填满,连续 {@link #RESTORE_DELAY_MILLIS} 毫秒没有再收到这类回调后恢复原来的大小;
+ * 进入后台后只按比例移除条目。只持有缓存的弱引用,不会影响 {@link android.app.Activity} 和 {@link androidx.fragment.app.Fragment}
+ * 中缓存的回收;由 {@link com.lwh.jackknife.AppDelegate} 转发 {@code onTrimMemory} 和 {@code onLowMemory}
+ */
+public final class CacheRegistry {
+
+    /**
+     * 最后一次前台内存紧张的回调之后,等待多久恢复缓存的最大 size
+     */
+    public static final long RESTORE_DELAY_MILLIS = 30 * 1000;
+
+    private static volatile CacheRegistry sInstance;
+
+    private final Map<Cache, CacheType> mCaches = new WeakHashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mRestoreRunnable = new Runnable() {
+        @Override
+        public void run() {
+            restoreSize();
+        }
+    };
+    private float mSizeMultiplier = 1f;
+
+    /**
+     * 一个缓存在某一时刻占用的 size 和最大 size,单位由缓存自身决定
+     */
+    public static final class CacheInfo {
+
+        private final String mName;
+        private final CacheType mType;
+        private final int mSize;
+        private final int mMaxSize;
+
+        CacheInfo(String name, CacheType type, int size, int maxSize) {
+            this.mName = name;
+            this.mType = type;
+            this.mSize = size;
+            this.mMaxSize = maxSize;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public CacheType getType() {
+            return mType;
+        }
+
+        public int getSize() {
+            return mSize;
+        }
+
+        public int getMaxSize() {
+            return mMaxSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "%s(type=%d) %d/%d", mName,
+                    mType != null ? mType.getCacheTypeId() : -1, mSize, mMaxSize);
+        }
+    }
+
+    private CacheRegistry() {
+    }
+
+    public static CacheRegistry getInstance() {
+        if (sInstance == null) {
+            synchronized (CacheRegistry.class) {
+                if (sInstance == null) {
+                    sInstance = new CacheRegistry();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 包装一个缓存工厂,由它构建的缓存都会注册到 {@link CacheRegistry}
+     */
+    public static Cache.Factory registering(final Cache.Factory factory) {
+        return new Cache.Factory() {
+            @Override
+            public Cache build(CacheType type, Context context) {
+                Cache cache = factory.build(type, context);
+                getInstance().register(cache, type);
+                return cache;
+            }
+        };
+    }
+
+    /**
+     * 注册一个缓存,重复注册同一个缓存没有影响;当前处于前台内存紧张时立即按当前系数缩小它
+     */
+    public void register(Cache cache, CacheType type) {
+        float multiplier;
+        synchronized (this) {
+            mCaches.put(cache, type);
+            multiplier = mSizeMultiplier;
+        }
+        if (multiplier < 1f) {
+            applySizeMultiplier(cache, multiplier);
+        }
+    }
+
+    public synchronized void unregister(Cache cache) {
+        mCaches.remove(cache);
+    }
+
+    /**
+     * 返回每个仍然存活的缓存的占用情况
+     */
+    public synchronized List<CacheInfo> getCacheInfos() {
+        List<CacheInfo> infos = new ArrayList<>(mCaches.size());
+        for (Map.Entry<Cache, CacheType> entry : mCaches.entrySet()) {
+            Cache cache = entry.getKey();
+            infos.add(new CacheInfo(cache.getClass().getSimpleName() + "@"
+                    + Integer.toHexString(System.identityHashCode(cache)), entry.getValue(),
+                    cache.size(), cache.getMaxSize()));
+        }
+        return infos;
+    }
+
+    /**
+     * 按内存级别决定缓存保留的比例,前台运行时温和地缩小,进入后台后越接近被杀死缩得越多
+     *
+     * @param level {@link ComponentCallbacks2} 中的 TRIM_MEMORY 常量
+     * @return 0 到 1 之间的比例,1 表示不处理
+     */
+    /* package */ static float getRetainRatio(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            return 0f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return 0.25f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 0.75f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.75f;
+        }
+        return 1f;
+    }
+
+    public void onTrimMemory(int level) {
+        float ratio = getRetainRatio(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE
+                && level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            setSizeMultiplier(ratio);
+            mHandler.removeCallbacks(mRestoreRunnable);
+            mHandler.postDelayed(mRestoreRunnable, RESTORE_DELAY_MILLIS);
+        } else {
+            trim(ratio);
+        }
+    }
+
+    public void onLowMemory() {
+        trim(0f);
+    }
+
+    /**
+     * 恢复所有缓存构造时的最大 size
+     */
+    public void restoreSize() {
+        mHandler.removeCallbacks(mRestoreRunnable);
+        setSizeMultiplier(1f);
+    }
+
+    /**
+     * 把所有缓存的最大 size 调整为构造时的 {@code multiplier} 倍,之后注册的缓存也使用这个系数,
+     * 不支持 {@link Trimmable} 的缓存在 {@code multiplier} 小于 0.5 时被清空
+     */
+    public void setSizeMultiplier(float multiplier) {
+        List<Cache> caches;
+        synchronized (this) {
+            mSizeMultiplier = multiplier;
+            caches = new ArrayList<>(mCaches.keySet());
+        }
+        for (Cache cache : caches) {
+            applySizeMultiplier(cache, multiplier);
+        }
+    }
+
+    private static void applySizeMultiplier(Cache cache, float multiplier) {
+        if (cache instanceof Trimmable) {
+            ((Trimmable) cache).setSizeMultiplier(multiplier);
+        } else if (multiplier < 0.5f) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 把所有缓存缩小到最大 size 的 {@code ratio} 倍,不支持 {@link Trimmable} 的缓存在
+     * {@code ratio} 小于 0.5 时被清空
+     */
+    public void trim(float ratio) {
+        if (ratio >= 1f) {
+            return;
+        }
+        List<Cache> caches;
+        synchronized (this) {
+            caches = new ArrayList<>(mCaches.keySet());
+        }
+        for (Cache cache : caches) {
+            if (cache instanceof Trimmable) {
+                ((Trimmable) cache).trim(ratio);
+            } else if (ratio < 0.5f) {
+                cache.clear();
+            }
+        }
+    }
+}
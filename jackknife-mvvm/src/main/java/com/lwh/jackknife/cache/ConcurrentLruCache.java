@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ================================================
+ * 支持多线程并发读取的 {@link Cache},读操作不加锁,只把访问记录放入缓冲区,
+ * 在写操作或缓冲区满时批量更新 LRU 顺序;写操作由一把锁串行化
+ * <p>
+ * 支持按 {@link Weigher} 计算 size、写入后或访问后过期、{@link RemovalListener} 和命中率统计,
+ * 通过 {@link Builder} 构建
+ */
+public class ConcurrentLruCache<K, V> implements Cache<K, V>, Trimmable {
+
+    /**
+     * 缓冲区中的访问记录达到这个数量时开始整理 LRU 顺序
+     */
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+    /**
+     * 缓冲区的容量,超过后丢弃新的访问记录,只影响 LRU 顺序的精确度
+     */
+    private static final int READ_BUFFER_MAX_SIZE = 1024;
+
+    private final ConcurrentHashMap<K, Node<K, V>> mMap;
+    private final ConcurrentLinkedQueue<Node<K, V>> mReadBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mReadBufferSize = new AtomicInteger();
+    private final ReentrantLock mEvictionLock = new ReentrantLock();
+    private final Node<K, V> mHead = new Node<>(null, null, 0, 0);
+    private final int mInitialMaxSize;
+    private volatile int mMaxSize;
+    private final Weigher<K, V> mWeigher;
+    private final long mExpireAfterWriteNanos;
+    private final long mExpireAfterAccessNanos;
+    private final RemovalListener<K, V> mRemovalListener;
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mEvictionCount = new AtomicLong();
+    private volatile int mCurrentSize;
+
+    private ConcurrentLruCache(Builder<K, V> builder) {
+        this.mInitialMaxSize = builder.mMaxSize;
+        this.mMaxSize = builder.mMaxSize;
+        this.mWeigher = builder.mWeigher;
+        this.mExpireAfterWriteNanos = builder.mExpireAfterWriteNanos;
+        this.mExpireAfterAccessNanos = builder.mExpireAfterAccessNanos;
+        this.mRemovalListener = builder.mRemovalListener;
+        this.mMap = new ConcurrentHashMap<>(16, 0.75f, builder.mConcurrencyLevel);
+        mHead.mPrev = mHead;
+        mHead.mNext = mHead;
+    }
+
+    @Override
+    public int size() {
+        return mCurrentSize;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * 返回这个 {@code key} 在缓存中对应的 {@code value},不会阻塞其他线程的读操作
+     *
+     * @param key {@code key}
+     * @return {@code value}
+     */
+    @Override
+    @Nullable
+    public V get(K key) {
+        Node<K, V> node = mMap.get(key);
+        if (node == null) {
+            mMissCount.incrementAndGet();
+            return null;
+        }
+        long now = System.nanoTime();
+        if (isExpired(node, now)) {
+            mMissCount.incrementAndGet();
+            removeNode(key, node, RemovalListener.RemovalCause.EXPIRED);
+            return null;
+        }
+        node.mAccessTime = now;
+        mHitCount.incrementAndGet();
+        recordRead(node);
+        return node.mValue;
+    }
+
+    @Override
+    @Nullable
+    public V put(K key, V value) {
+        int weight = weigh(key, value);
+        long now = System.nanoTime();
+        Node<K, V> node = new Node<>(key, value, weight, now);
+        List<Node<K, V>> removed = new ArrayList<>();
+        Node<K, V> old;
+        mEvictionLock.lock();
+        try {
+            drainReadBuffer();
+            old = mMap.put(key, node);
+            if (old != null) {
+                unlink(old);
+                old.mCause = RemovalListener.RemovalCause.REPLACED;
+                removed.add(old);
+            }
+            if (weight > mMaxSize) {
+                mMap.remove(key, node);
+                node.mCause = RemovalListener.RemovalCause.SIZE;
+                removed.add(node);
+                mEvictionCount.incrementAndGet();
+            } else {
+                linkLast(node);
+                evict(now, removed);
+            }
+        } finally {
+            mEvictionLock.unlock();
+        }
+        notifyRemoval(removed);
+        return old != null ? old.mValue : null;
+    }
+
+    @Override
+    @Nullable
+    public V remove(K key) {
+        Node<K, V> node = mMap.get(key);
+        if (node == null) {
+            return null;
+        }
+        return removeNode(key, node, RemovalListener.RemovalCause.EXPLICIT) ? node.mValue : null;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        Node<K, V> node = mMap.get(key);
+        return node != null && !isExpired(node, System.nanoTime());
+    }
+
+    /**
+     * 返回当前缓存中所有 {@code key} 的快照,修改它不会影响缓存
+     *
+     * @return {@code keySet}
+     */
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(new HashSet<>(mMap.keySet()));
+    }
+
+    @Override
+    public void clear() {
+        List<Node<K, V>> removed = new ArrayList<>();
+        mEvictionLock.lock();
+        try {
+            mReadBuffer.clear();
+            mReadBufferSize.set(0);
+            for (Map.Entry<K, Node<K, V>> entry : mMap.entrySet()) {
+                Node<K, V> node = entry.getValue();
+                if (mMap.remove(entry.getKey(), node)) {
+                    unlink(node);
+                    node.mCause = RemovalListener.RemovalCause.EXPLICIT;
+                    removed.add(node);
+                }
+            }
+        } finally {
+            mEvictionLock.unlock();
+        }
+        notifyRemoval(removed);
+    }
+
+    @Override
+    public void trim(float ratio) {
+        trimToSize(ratio);
+    }
+
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        if (multiplier < 0) {
+            throw new IllegalArgumentException("Multiplier must be >= 0");
+        }
+        List<Node<K, V>> removed = new ArrayList<>();
+        mEvictionLock.lock();
+        try {
+            mMaxSize = (int) Math.min(Integer.MAX_VALUE,
+                    Math.round((double) mInitialMaxSize * multiplier));
+            drainReadBuffer();
+            evictTo(mMaxSize, removed);
+        } finally {
+            mEvictionLock.unlock();
+        }
+        notifyRemoval(removed);
+    }
+
+    /**
+     * 按系数缩小缓存,移除最近最少使用的条目直到已占用的 size 不超过 {@code maxSize * multiplier}
+     *
+     * @param multiplier 系数,0 表示清空缓存
+     */
+    public void trimToSize(float multiplier) {
+        int size = Math.round(mMaxSize * multiplier);
+        List<Node<K, V>> removed = new ArrayList<>();
+        mEvictionLock.lock();
+        try {
+            drainReadBuffer();
+            evictTo(size, removed);
+        } finally {
+            mEvictionLock.unlock();
+        }
+        notifyRemoval(removed);
+    }
+
+    /**
+     * 移除所有已过期的条目,过期的条目平时只在被访问或写入时才会被移除
+     */
+    public void cleanUp() {
+        List<Node<K, V>> removed = new ArrayList<>();
+        long now = System.nanoTime();
+        mEvictionLock.lock();
+        try {
+            drainReadBuffer();
+            for (Node<K, V> node = mHead.mNext; node != mHead; ) {
+                Node<K, V> next = node.mNext;
+                if (isExpired(node, now) && mMap.remove(node.mKey, node)) {
+                    unlink(node);
+                    node.mCause = RemovalListener.RemovalCause.EXPIRED;
+                    removed.add(node);
+                }
+                node = next;
+            }
+        } finally {
+            mEvictionLock.unlock();
+        }
+        notifyRemoval(removed);
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    /**
+     * 返回命中率,没有请求时为 1
+     */
+    public double hitRate() {
+        long hit = mHitCount.get();
+        long total = hit + mMissCount.get();
+        return total == 0 ? 1.0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentLruCache[size=" + mCurrentSize + ",maxSize=" + mMaxSize
+                + ",hits=" + mHitCount.get() + ",misses=" + mMissCount.get()
+                + ",evictions=" + mEvictionCount.get() + "]";
+    }
+
+    private int weigh(K key, V value) {
+        if (mWeigher == null) {
+            return 1;
+        }
+        int weight = mWeigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be >= 0");
+        }
+        return weight;
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return (mExpireAfterWriteNanos > 0 && now - node.mWriteTime >= mExpireAfterWriteNanos)
+                || (mExpireAfterAccessNanos > 0
+                && now - node.mAccessTime >= mExpireAfterAccessNanos);
+    }
+
+    /**
+     * 记录一次访问,缓冲区满时丢弃,达到阈值时尝试整理 LRU 顺序,拿不到锁时交给下一次操作
+     */
+    private void recordRead(Node<K, V> node) {
+        int size = mReadBufferSize.incrementAndGet();
+        if (size > READ_BUFFER_MAX_SIZE) {
+            mReadBufferSize.decrementAndGet();
+        } else {
+            mReadBuffer.offer(node);
+        }
+        if (size >= READ_BUFFER_DRAIN_THRESHOLD && mEvictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                mEvictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        Node<K, V> node;
+        while ((node = mReadBuffer.poll()) != null) {
+            mReadBufferSize.decrementAndGet();
+            if (node.mPrev != null) {
+                unlink(node);
+                linkLast(node);
+            }
+        }
+    }
+
+    private boolean removeNode(K key, Node<K, V> node, RemovalListener.RemovalCause cause) {
+        boolean isRemoved;
+        mEvictionLock.lock();
+        try {
+            isRemoved = mMap.remove(key, node);
+            if (isRemoved) {
+                unlink(node);
+            }
+        } finally {
+            mEvictionLock.unlock();
+        }
+        if (isRemoved && mRemovalListener != null) {
+            mRemovalListener.onRemoval(key, node.mValue, cause);
+        }
+        return isRemoved;
+    }
+
+    private void evict(long now, List<Node<K, V>> removed) {
+        while (mHead.mNext != mHead && isExpired(mHead.mNext, now)) {
+            Node<K, V> node = mHead.mNext;
+            mMap.remove(node.mKey, node);
+            unlink(node);
+            node.mCause = RemovalListener.RemovalCause.EXPIRED;
+            removed.add(node);
+        }
+        evictTo(mMaxSize, removed);
+    }
+
+    private void evictTo(int size, List<Node<K, V>> removed) {
+        while (mCurrentSize > size && mHead.mNext != mHead) {
+            Node<K, V> node = mHead.mNext;
+            mMap.remove(node.mKey, node);
+            unlink(node);
+            node.mCause = RemovalListener.RemovalCause.SIZE;
+            removed.add(node);
+            mEvictionCount.incrementAndGet();
+        }
+    }
+
+    private void linkLast(Node<K, V> node) {
+        node.mPrev = mHead.mPrev;
+        node.mNext = mHead;
+        mHead.mPrev.mNext = node;
+        mHead.mPrev = node;
+        mCurrentSize += node.mWeight;
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (node.mPrev == null) {
+            return;
+        }
+        node.mPrev.mNext = node.mNext;
+        node.mNext.mPrev = node.mPrev;
+        node.mPrev = null;
+        node.mNext = null;
+        mCurrentSize -= node.mWeight;
+    }
+
+    private void notifyRemoval(List<Node<K, V>> removed) {
+        if (mRemovalListener == null) {
+            return;
+        }
+        for (Node<K, V> node : removed) {
+            mRemovalListener.onRemoval(node.mKey, node.mValue, node.mCause);
+        }
+    }
+
+    private static final class Node<K, V> {
+
+        final K mKey;
+        final V mValue;
+        final int mWeight;
+        final long mWriteTime;
+        volatile long mAccessTime;
+        Node<K, V> mPrev;
+        Node<K, V> mNext;
+        RemovalListener.RemovalCause mCause;
+
+        Node(K key, V value, int weight, long now) {
+            this.mKey = key;
+            this.mValue = value;
+            this.mWeight = weight;
+            this.mWriteTime = now;
+            this.mAccessTime = now;
+        }
+    }
+
+    public static class Builder<K, V> {
+
+        private int mMaxSize = Integer.MAX_VALUE;
+        private Weigher<K, V> mWeigher;
+        private long mExpireAfterWriteNanos;
+        private long mExpireAfterAccessNanos;
+        private RemovalListener<K, V> mRemovalListener;
+        private int mConcurrencyLevel = 4;
+
+        /**
+         * 设置缓存的最大 size,单位和 {@link #weigher(Weigher)} 一致,默认每个条目为 1
+         */
+        public Builder<K, V> maxSize(int maxSize) {
+            mMaxSize = maxSize;
+            return this;
+        }
+
+        public Builder<K, V> weigher(Weigher<K, V> weigher) {
+            mWeigher = weigher;
+            return this;
+        }
+
+        /**
+         * 条目在写入后经过这段时间过期
+         */
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            mExpireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * 条目在最后一次访问后经过这段时间过期
+         */
+        public Builder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+            mExpireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public Builder<K, V> removalListener(RemovalListener<K, V> listener) {
+            mRemovalListener = listener;
+            return this;
+        }
+
+        /**
+         * 预计同时写入的线程数
+         */
+        public Builder<K, V> concurrencyLevel(int level) {
+            mConcurrencyLevel = level;
+            return this;
+        }
+
+        public ConcurrentLruCache<K, V> build() {
+            if (mMaxSize < 0) {
+                throw new IllegalArgumentException("MaxSize must be >= 0");
+            }
+            return new ConcurrentLruCache<>(this);
+        }
+    }
+}
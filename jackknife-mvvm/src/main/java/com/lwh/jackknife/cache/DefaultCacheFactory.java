@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+import android.content.Context;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * ================================================
+ * 按 {@link CacheType} 选择缓存的实现,注册为并发的类型使用 {@link ConcurrentLruCache},
+ * 其他类型使用 {@link LruCache};构建的缓存都会注册到 {@link CacheRegistry}
+ */
+public class DefaultCacheFactory implements Cache.Factory {
+
+    private final Set<Integer> mConcurrentCacheTypeIds = new HashSet<>();
+
+    /**
+     * @param concurrentCacheTypeIds 会被多个线程同时读取的缓存类型的 {@link CacheType#getCacheTypeId()}
+     */
+    public DefaultCacheFactory(int... concurrentCacheTypeIds) {
+        for (int id : concurrentCacheTypeIds) {
+            mConcurrentCacheTypeIds.add(id);
+        }
+    }
+
+    @Override
+    public Cache build(CacheType type, Context context) {
+        int size = type.calculateCacheSize(context);
+        Cache cache;
+        if (mConcurrentCacheTypeIds.contains(type.getCacheTypeId())) {
+            cache = new ConcurrentLruCache.Builder<>().maxSize(size).build();
+        } else {
+            cache = new LruCache(size);
+        }
+        CacheRegistry.getInstance().register(cache, type);
+        return cache;
+    }
+}
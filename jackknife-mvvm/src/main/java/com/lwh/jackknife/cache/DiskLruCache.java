@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ================================================
+ * 以文件保存 {@code value} 的 {@link Cache},每个条目一个文件,超过最大 size(字节)时
+ * 删除最近最少使用的条目
+ * <p>
+ * 所有操作都追加到日志文件 {@link #JOURNAL_FILE} 中,打开时回放日志恢复条目和 LRU 顺序;
+ * 条目先写入临时文件,同步到磁盘后再重命名,所以进程在任何时刻被杀死都不会留下写了一半的条目,
+ * 日志最后一行不完整或文件长度不符的条目会在打开时被丢弃
+ */
+public class DiskLruCache implements Cache<String, byte[]>, Closeable {
+
+    /* package */ static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_FILE_TEMP = "journal.tmp";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String PUT = "PUT";
+    private static final String DELETE = "DEL";
+    private static final String READ = "READ";
+
+    /**
+     * 冗余的日志行超过这个数量并且多于条目数时重写日志
+     */
+    private static final int REBUILD_THRESHOLD = 2000;
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private Writer mJournalWriter;
+    private long mCurrentSize;
+    private int mRedundantOpCount;
+
+    private static final class Entry {
+
+        final String mKey;
+        final String mFileName;
+        final long mLength;
+
+        Entry(String key, String fileName, long length) {
+            this.mKey = key;
+            this.mFileName = fileName;
+            this.mLength = length;
+        }
+    }
+
+    /**
+     * 打开目录中的缓存,目录不存在时创建
+     *
+     * @param maxSize 所有条目的最大总字节数
+     */
+    public static DiskLruCache open(File directory, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("MaxSize must be > 0");
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        DiskLruCache cache = new DiskLruCache(directory, maxSize);
+        cache.readJournal();
+        cache.removeInvalidFiles();
+        cache.rebuildJournal();
+        cache.trimToSize(maxSize);
+        return cache;
+    }
+
+    private DiskLruCache(File directory, long maxSize) {
+        this.mDirectory = directory;
+        this.mMaxSize = maxSize;
+    }
+
+    private void readJournal() throws IOException {
+        File journal = new File(mDirectory, JOURNAL_FILE);
+        if (!journal.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(journal), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                readJournalLine(line);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 回放一行日志,格式不对的行(比如写到一半时进程被杀死)被忽略
+     */
+    private void readJournalLine(String line) {
+        String[] parts = line.split(" ");
+        try {
+            if (PUT.equals(parts[0]) && parts.length == 4) {
+                String key = URLDecoder.decode(parts[3], "UTF-8");
+                Entry entry = new Entry(key, parts[1], Long.parseLong(parts[2]));
+                Entry old = mEntries.put(key, entry);
+                if (old != null) {
+                    mCurrentSize -= old.mLength;
+                }
+                mCurrentSize += entry.mLength;
+            } else if (DELETE.equals(parts[0]) && parts.length == 2) {
+                Entry old = mEntries.remove(URLDecoder.decode(parts[1], "UTF-8"));
+                if (old != null) {
+                    mCurrentSize -= old.mLength;
+                }
+            } else if (READ.equals(parts[0]) && parts.length == 2) {
+                mEntries.get(URLDecoder.decode(parts[1], "UTF-8"));
+            }
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            // An incomplete line written when the process was killed.
+        }
+    }
+
+    /**
+     * 丢弃文件缺失或长度不符的条目,删除临时文件和不属于任何条目的文件
+     */
+    private void removeInvalidFiles() {
+        Set<String> fileNames = new HashSet<>();
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            File file = new File(mDirectory, entry.mFileName);
+            if (!file.exists() || file.length() != entry.mLength) {
+                iterator.remove();
+                mCurrentSize -= entry.mLength;
+            } else {
+                fileNames.add(entry.mFileName);
+            }
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!JOURNAL_FILE.equals(name) && !fileNames.contains(name)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * 只写入当前的条目重建日志,先写临时文件再重命名
+     */
+    private void rebuildJournal() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+        }
+        File temp = new File(mDirectory, JOURNAL_FILE_TEMP);
+        FileOutputStream out = new FileOutputStream(temp);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        try {
+            for (Entry entry : mEntries.values()) {
+                writer.write(PUT + " " + entry.mFileName + " " + entry.mLength + " "
+                        + URLEncoder.encode(entry.mKey, "UTF-8") + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            writer.close();
+        }
+        File journal = new File(mDirectory, JOURNAL_FILE);
+        if (!temp.renameTo(journal)) {
+            throw new IOException("Unable to rename " + temp);
+        }
+        mJournalWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(journal, true), "UTF-8"));
+        mRedundantOpCount = 0;
+    }
+
+    private void appendJournal(String line) throws IOException {
+        mJournalWriter.write(line);
+        mJournalWriter.write('\n');
+        mJournalWriter.flush();
+        if (mRedundantOpCount >= REBUILD_THRESHOLD && mRedundantOpCount >= mEntries.size()) {
+            rebuildJournal();
+        }
+    }
+
+    private static String toFileName(String key) {
+        try {
+            byte[] bytes = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    /**
+     * 返回当前缓存已占用的总字节数,超过 {@link Integer#MAX_VALUE} 时返回 {@link Integer#MAX_VALUE}
+     */
+    @Override
+    public synchronized int size() {
+        return (int) Math.min(mCurrentSize, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int getMaxSize() {
+        return (int) Math.min(mMaxSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 读取这个 {@code key} 对应的文件内容,文件读取失败时移除这个条目
+     */
+    @Override
+    @Nullable
+    public synchronized byte[] get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        File file = new File(mDirectory, entry.mFileName);
+        byte[] data = new byte[(int) entry.mLength];
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            int offset = 0;
+            while (offset < data.length) {
+                int count = in.read(data, offset, data.length - offset);
+                if (count < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                offset += count;
+            }
+            mRedundantOpCount++;
+            appendJournal(READ + " " + URLEncoder.encode(key, "UTF-8"));
+            return data;
+        } catch (IOException e) {
+            e.printStackTrace();
+            remove(key);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * 把 {@code value} 写入临时文件,同步到磁盘后重命名为条目文件
+     *
+     * @return 被替换的旧 {@code value} 不会被读取,总是返回 {@code null}
+     */
+    @Override
+    @Nullable
+    public synchronized byte[] put(String key, byte[] value) {
+        if (value.length > mMaxSize) {
+            remove(key);
+            return null;
+        }
+        String fileName = toFileName(key);
+        File temp = new File(mDirectory, fileName + TEMP_SUFFIX);
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            out.write(value);
+            out.flush();
+            out.getFD().sync();
+            out.close();
+            out = null;
+            File file = new File(mDirectory, fileName);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp);
+            }
+            Entry entry = new Entry(key, fileName, value.length);
+            Entry old = mEntries.put(key, entry);
+            if (old != null) {
+                mCurrentSize -= old.mLength;
+                mRedundantOpCount++;
+            }
+            mCurrentSize += entry.mLength;
+            appendJournal(PUT + " " + fileName + " " + entry.mLength + " "
+                    + URLEncoder.encode(key, "UTF-8"));
+            trimToSize(mMaxSize);
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+        return null;
+    }
+
+    @Override
+    @Nullable
+    public synchronized byte[] remove(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        mCurrentSize -= entry.mLength;
+        new File(mDirectory, entry.mFileName).delete();
+        mRedundantOpCount += 2;
+        try {
+            appendJournal(DELETE + " " + URLEncoder.encode(key, "UTF-8"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean containsKey(String key) {
+        return mEntries.containsKey(key);
+    }
+
+    @Override
+    public synchronized Set<String> keySet() {
+        return new HashSet<>(mEntries.keySet());
+    }
+
+    @Override
+    public synchronized void clear() {
+        // 不能用 trimToSize(0)，长度为 0 的条目不占字节，会被留下
+        for (String key : new ArrayList<>(mEntries.keySet())) {
+            remove(key);
+        }
+    }
+
+    /**
+     * 删除最近最少使用的条目,直到总字节数不超过 {@code size}
+     */
+    public synchronized void trimToSize(long size) {
+        while (mCurrentSize > size && !mEntries.isEmpty()) {
+            Map.Entry<String, Entry> eldest = mEntries.entrySet().iterator().next();
+            remove(eldest.getKey());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+            mJournalWriter = null;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -18,11 +18,12 @@ package com.lwh.jackknife.cache;
 
 import androidx.annotation.Nullable;
 
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
-public class LruCache<K, V> implements Cache<K, V> {
+public class LruCache<K, V> implements Cache<K, V>, Trimmable {
     private final LinkedHashMap<K, V> cache = new LinkedHashMap<>(100, 0.75f, true);
     private final int initialMaxSize;
     private int maxSize;
@@ -44,6 +45,7 @@ public class LruCache<K, V> implements Cache<K, V> {
      *
      * @param multiplier 系数
      */
+    @Override
     public synchronized void setSizeMultiplier(float multiplier) {
         if (multiplier < 0) {
             throw new IllegalArgumentException("Multiplier must be >= 0");
@@ -105,13 +107,13 @@ public class LruCache<K, V> implements Cache<K, V> {
     }
 
     /**
-     * 返回当前缓存中含有的所有 {@code key}
+     * 返回当前缓存中含有的所有 {@code key} 的快照,修改它不会影响缓存
      *
      * @return {@code keySet}
      */
     @Override
     public synchronized Set<K> keySet() {
-        return cache.keySet();
+        return new HashSet<>(cache.keySet());
     }
 
     /**
@@ -183,6 +185,16 @@ public class LruCache<K, V> implements Cache<K, V> {
         trimToSize(0);
     }
 
+    /**
+     * 移除最近最少使用的条目,直到已占用的 size 不超过 {@code maxSize * ratio}
+     *
+     * @param ratio 系数
+     */
+    @Override
+    public synchronized void trim(float ratio) {
+        trimToSize(Math.round(maxSize * ratio));
+    }
+
     /**
      * 当指定的 size 小于当前缓存已占用的总 size 时,会开始清除缓存中最近最少使用的条目
      *
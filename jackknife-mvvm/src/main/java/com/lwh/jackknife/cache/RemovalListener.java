@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+/**
+ * 缓存条目被移除时的回调,在移除条目的线程中调用,不能在这里阻塞
+ */
+public interface RemovalListener<K, V> {
+
+    enum RemovalCause {
+
+        /**
+         * 调用了 {@link Cache#remove(Object)} 或 {@link Cache#clear()}
+         */
+        EXPLICIT,
+
+        /**
+         * 被同一个 {@code key} 的新 {@code value} 替换
+         */
+        REPLACED,
+
+        /**
+         * 超出了缓存的最大 size
+         */
+        SIZE,
+
+        /**
+         * 超出了有效期
+         */
+        EXPIRED
+    }
+
+    void onRemoval(K key, V value, RemovalCause cause);
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+import androidx.annotation.Nullable;
+
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ================================================
+ * 使用 W-TinyLFU 淘汰策略的 {@link Cache},新条目先进入占 1% 容量的窗口 LRU,
+ * 被挤出窗口后由 {@link FrequencySketch} 比较它和主区最近最少使用条目的访问频率,
+ * 频率更高的留下;主区分为试用区和占 80% 的保护区,在试用区被再次访问的条目升入保护区
+ * <p>
+ * 和 {@link LruCache} 相比,一次性的顺序访问(比如滑动很长的列表)不会把热点条目挤出缓存,
+ * 按条目数计算 size
+ */
+public class TinyLfuCache<K, V> implements Cache<K, V>, Trimmable {
+
+    private final LinkedHashMap<K, V> mWindow = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> mProbation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> mProtected = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch<K> mSketch;
+    private final int mInitialMaxSize;
+    private int mMaxSize;
+    private int mMaxWindowSize;
+    private int mMaxMainSize;
+    private int mMaxProtectedSize;
+
+    /**
+     * @param size 这个缓存最多容纳的条目数
+     */
+    public TinyLfuCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be > 0");
+        }
+        mInitialMaxSize = size;
+        resize(size);
+        mSketch = new FrequencySketch<>(size);
+    }
+
+    /**
+     * 按新的最大 size 重新划分窗口区、主区和保护区
+     */
+    private void resize(int size) {
+        mMaxSize = size;
+        mMaxWindowSize = Math.max(1, size / 100);
+        mMaxMainSize = Math.max(0, size - mMaxWindowSize);
+        mMaxProtectedSize = mMaxMainSize * 4 / 5;
+    }
+
+    /**
+     * 当缓存中有被驱逐的条目时,会回调此方法,默认空实现,子类可以重写这个方法
+     *
+     * @param key   被驱逐条目的 {@code key}
+     * @param value 被驱逐条目的 {@code value}
+     */
+    protected void onItemEvicted(K key, V value) {
+        // optional override
+    }
+
+    @Override
+    public synchronized int size() {
+        return mWindow.size() + mProbation.size() + mProtected.size();
+    }
+
+    @Override
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    @Nullable
+    public synchronized V get(K key) {
+        mSketch.increment(key);
+        V value = mWindow.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = mProtected.get(key);
+        if (value != null) {
+            return value;
+        }
+        if (mProbation.containsKey(key)) {
+            value = mProbation.remove(key);
+            promote(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    @Nullable
+    public synchronized V put(K key, V value) {
+        mSketch.increment(key);
+        if (mWindow.containsKey(key)) {
+            return mWindow.put(key, value);
+        }
+        if (mProtected.containsKey(key)) {
+            return mProtected.put(key, value);
+        }
+        if (mProbation.containsKey(key)) {
+            V old = mProbation.remove(key);
+            promote(key, value);
+            return old;
+        }
+        mWindow.put(key, value);
+        if (mWindow.size() > mMaxWindowSize) {
+            Map.Entry<K, V> candidate = removeEldest(mWindow);
+            admit(candidate.getKey(), candidate.getValue());
+        }
+        return null;
+    }
+
+    /**
+     * 把试用区中再次被访问的条目升入保护区,保护区满时把其中最近最少使用的条目降回试用区
+     */
+    private void promote(K key, V value) {
+        mProtected.put(key, value);
+        if (mProtected.size() > mMaxProtectedSize) {
+            Map.Entry<K, V> demoted = removeEldest(mProtected);
+            mProbation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    /**
+     * 决定被挤出窗口的条目能否进入主区,主区已满时和试用区的淘汰候选比较访问频率
+     */
+    private void admit(K key, V value) {
+        if (mProbation.size() + mProtected.size() < mMaxMainSize) {
+            mProbation.put(key, value);
+            return;
+        }
+        LinkedHashMap<K, V> victims = mProbation.isEmpty() ? mProtected : mProbation;
+        if (victims.isEmpty()) {
+            onItemEvicted(key, value);
+            return;
+        }
+        K victimKey = victims.keySet().iterator().next();
+        if (mSketch.frequency(key) > mSketch.frequency(victimKey)) {
+            V victimValue = victims.remove(victimKey);
+            mProbation.put(key, value);
+            onItemEvicted(victimKey, victimValue);
+        } else {
+            onItemEvicted(key, value);
+        }
+    }
+
+    private Map.Entry<K, V> removeEldest(LinkedHashMap<K, V> segment) {
+        Iterator<Map.Entry<K, V>> iterator = segment.entrySet().iterator();
+        Map.Entry<K, V> eldest = iterator.next();
+        Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>(eldest);
+        iterator.remove();
+        return entry;
+    }
+
+    @Override
+    @Nullable
+    public synchronized V remove(K key) {
+        if (mWindow.containsKey(key)) {
+            return mWindow.remove(key);
+        }
+        if (mProbation.containsKey(key)) {
+            return mProbation.remove(key);
+        }
+        return mProtected.remove(key);
+    }
+
+    @Override
+    public synchronized boolean containsKey(K key) {
+        return mWindow.containsKey(key) || mProbation.containsKey(key)
+                || mProtected.containsKey(key);
+    }
+
+    /**
+     * 返回当前缓存中含有的所有 {@code key} 的快照
+     *
+     * @return {@code keySet}
+     */
+    @Override
+    public synchronized Set<K> keySet() {
+        Set<K> keys = new HashSet<>(mWindow.keySet());
+        keys.addAll(mProbation.keySet());
+        keys.addAll(mProtected.keySet());
+        return keys;
+    }
+
+    /**
+     * 依次从窗口区、试用区和保护区中移除最近最少使用的条目
+     */
+    @Override
+    public synchronized void trim(float ratio) {
+        trimToSize(Math.round(mMaxSize * ratio));
+    }
+
+    /**
+     * 最大 size 至少保留 1 个条目,保护区和窗口区超出新的大小时先把多出的条目降级,主区再移除试用区中最久未访问的条目
+     */
+    @Override
+    public synchronized void setSizeMultiplier(float multiplier) {
+        if (multiplier < 0) {
+            throw new IllegalArgumentException("Multiplier must be >= 0");
+        }
+        resize(Math.max(1, Math.round(mInitialMaxSize * multiplier)));
+        while (mProtected.size() > mMaxProtectedSize) {
+            Map.Entry<K, V> demoted = removeEldest(mProtected);
+            mProbation.put(demoted.getKey(), demoted.getValue());
+        }
+        while (mWindow.size() > mMaxWindowSize) {
+            Map.Entry<K, V> candidate = removeEldest(mWindow);
+            admit(candidate.getKey(), candidate.getValue());
+        }
+        while (mProbation.size() + mProtected.size() > mMaxMainSize) {
+            Map.Entry<K, V> eldest = removeEldest(!mProbation.isEmpty() ? mProbation : mProtected);
+            onItemEvicted(eldest.getKey(), eldest.getValue());
+        }
+        trimToSize(mMaxSize);
+    }
+
+    private void trimToSize(int size) {
+        while (size() > size) {
+            LinkedHashMap<K, V> segment = !mWindow.isEmpty() ? mWindow
+                    : !mProbation.isEmpty() ? mProbation : mProtected;
+            Map.Entry<K, V> eldest = removeEldest(segment);
+            onItemEvicted(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        mWindow.clear();
+        mProbation.clear();
+        mProtected.clear();
+    }
+}
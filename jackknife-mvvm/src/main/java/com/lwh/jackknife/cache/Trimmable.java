@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+/**
+ * 可以在内存紧张时按比例缩小的缓存,由 {@link CacheRegistry} 在 {@code onTrimMemory} 时调用
+ */
+public interface Trimmable {
+
+    /**
+     * 移除最近最少使用的条目,直到已占用的 size 不超过最大 size 的 {@code ratio} 倍,
+     * 最大 size 本身不变
+     *
+     * @param ratio 0 到 1 之间,0 表示清空
+     */
+    void trim(float ratio);
+
+    /**
+     * 按系数调整最大 size,系数相对于构造时的最大 size,1 表示恢复;缩小时立即移除超出的条目,
+     * 之后放入的条目也不会再超过新的最大 size
+     *
+     * @param multiplier 不小于 0 的系数
+     */
+    void setSizeMultiplier(float multiplier);
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+import androidx.annotation.Nullable;
+
+import java.util.Set;
+
+/**
+ * ================================================
+ * 内存和磁盘两级的 {@link Cache},内存中的 {@link Cache}(通常是 {@link LruCache})作为一级缓存,
+ * {@link DiskLruCache} 作为二级缓存,进程被杀死后仍然可以从磁盘读取
+ * <p>
+ * 写入时同时写入两级,读取时一级未命中则从磁盘读取并放回一级缓存
+ */
+public class TwoLevelCache<V> implements Cache<String, V>, Trimmable {
+
+    private final Cache<String, V> mMemoryCache;
+    private final DiskLruCache mDiskCache;
+    private final Serializer<V> mSerializer;
+
+    /**
+     * 在 {@code value} 和磁盘上的字节之间转换
+     */
+    public interface Serializer<V> {
+
+        byte[] serialize(V value);
+
+        /**
+         * @return {@code null} 表示无法解析,这个条目会从磁盘上删除
+         */
+        V deserialize(byte[] data);
+    }
+
+    public TwoLevelCache(Cache<String, V> memoryCache, DiskLruCache diskCache,
+                         Serializer<V> serializer) {
+        this.mMemoryCache = memoryCache;
+        this.mDiskCache = diskCache;
+        this.mSerializer = serializer;
+    }
+
+    public Cache<String, V> getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    public DiskLruCache getDiskCache() {
+        return mDiskCache;
+    }
+
+    /**
+     * 返回一级缓存已占用的 size
+     */
+    @Override
+    public int size() {
+        return mMemoryCache.size();
+    }
+
+    /**
+     * 返回一级缓存的最大 size
+     */
+    @Override
+    public int getMaxSize() {
+        return mMemoryCache.getMaxSize();
+    }
+
+    @Override
+    @Nullable
+    public V get(String key) {
+        V value = mMemoryCache.get(key);
+        if (value != null) {
+            return value;
+        }
+        byte[] data = mDiskCache.get(key);
+        if (data == null) {
+            return null;
+        }
+        value = mSerializer.deserialize(data);
+        if (value == null) {
+            mDiskCache.remove(key);
+            return null;
+        }
+        mMemoryCache.put(key, value);
+        return value;
+    }
+
+    @Override
+    @Nullable
+    public V put(String key, V value) {
+        V old = mMemoryCache.put(key, value);
+        byte[] data = mSerializer.serialize(value);
+        if (data != null) {
+            mDiskCache.put(key, data);
+        } else {
+            // 无法序列化的值只保存在一级缓存中，删除磁盘中的旧值，以免进程重启后读到它
+            mDiskCache.remove(key);
+        }
+        return old;
+    }
+
+    @Override
+    @Nullable
+    public V remove(String key) {
+        mDiskCache.remove(key);
+        return mMemoryCache.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return mMemoryCache.containsKey(key) || mDiskCache.containsKey(key);
+    }
+
+    /**
+     * 返回磁盘缓存中所有 {@code key} 的快照,无法序列化的值只在一级缓存中,不包含它们的 {@code key}
+     */
+    @Override
+    public Set<String> keySet() {
+        return mDiskCache.keySet();
+    }
+
+    /**
+     * 只缩小一级缓存,磁盘上的条目不受影响
+     */
+    @Override
+    public void trim(float ratio) {
+        if (mMemoryCache instanceof Trimmable) {
+            ((Trimmable) mMemoryCache).trim(ratio);
+        } else if (ratio < 0.5f) {
+            mMemoryCache.clear();
+        }
+    }
+
+    /**
+     * 只调整一级缓存的最大 size
+     */
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        if (mMemoryCache instanceof Trimmable) {
+            ((Trimmable) mMemoryCache).setSizeMultiplier(multiplier);
+        } else if (multiplier < 0.5f) {
+            mMemoryCache.clear();
+        }
+    }
+
+    @Override
+    public void clear() {
+        mMemoryCache.clear();
+        mDiskCache.clear();
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the database work off the main thread with bounded queues. The writes run one at a time on
+ * one thread, so that the shared {@link SQLiteDatabase} is never written by two tasks at once.
+ * The writes of one statement that are queued one after another are grouped into one transaction,
+ * see {@link #submitGroupedWrite}. The reads run on their own threads
+ * and do not wait behind the writes, with write-ahead logging they use the connections of the
+ * {@link ReaderPool}. A task submitted while its queue is full is failed with a
+ * {@link RejectedExecutionException} instead of running on the caller. The results are delivered
+ * to the main looper.
+ */
+public final class DatabaseExecutor {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /**
+     * The maximum number of writes committed by one transaction.
+     */
+    public static final int MAX_GROUPED_WRITES = 64;
+
+    /**
+     * The number of threads running the reads.
+     */
+    public static final int READER_THREADS = 2;
+
+    private static volatile DatabaseExecutor sInstance;
+
+    private final ThreadPoolExecutor mWriteExecutor;
+    private final ThreadPoolExecutor mReadExecutor;
+    private final Handler mMainHandler;
+
+    public interface Callback<R> {
+
+        void onSuccess(R result);
+
+        void onFailure(Throwable e);
+    }
+
+    private DatabaseExecutor(int queueCapacity) {
+        RejectedExecutionHandler rejectedHandler = new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                RejectedExecutionException e = new RejectedExecutionException(
+                        "The database queue is full.");
+                if (r instanceof DatabaseTask) {
+                    ((DatabaseTask<?>) r).reject(e);
+                } else {
+                    throw e;
+                }
+            }
+        };
+        mWriteExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), newThreadFactory("jackknife-db"),
+                rejectedHandler);
+        mReadExecutor = new ThreadPoolExecutor(READER_THREADS, READER_THREADS, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(queueCapacity),
+                newThreadFactory("jackknife-db-read"), rejectedHandler);
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    private static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public static DatabaseExecutor getInstance() {
+        if (sInstance == null) {
+            synchronized (DatabaseExecutor.class) {
+                if (sInstance == null) {
+                    sInstance = new DatabaseExecutor(DEFAULT_QUEUE_CAPACITY);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Runs a query on a reading thread.
+     *
+     * @param callback Called on the main thread unless the future was cancelled, can be null.
+     */
+    public <R> Future<R> submitRead(Callable<R> task, Callback<R> callback) {
+        DatabaseTask<R> future = new DatabaseTask<>(task, callback, false);
+        mReadExecutor.execute(future);
+        return future;
+    }
+
+    /**
+     * Queues a write on the writing thread, it runs on its own and is never grouped with other
+     * writes. Use it for the tasks that run several statements or their own transaction.
+     *
+     * @param callback Called on the main thread unless the future was cancelled, can be null.
+     */
+    public <R> Future<R> submitWrite(Callable<R> task, Callback<R> callback) {
+        DatabaseTask<R> future = new DatabaseTask<>(task, callback, false);
+        mWriteExecutor.execute(future);
+        return future;
+    }
+
+    /**
+     * Queues a write that runs a single statement on the writing thread. When it runs, the
+     * grouped writes queued right behind it, up to {@link #MAX_GROUPED_WRITES}, run with it in one
+     * transaction. A statement that fails is rolled back by SQLite on its own, so the others are
+     * still committed. If a task throws instead, the transaction is rolled back and every write of
+     * the group runs again on its own. The results are delivered after the commit.
+     *
+     * @param callback Called on the main thread unless the future was cancelled, can be null.
+     */
+    public <R> Future<R> submitGroupedWrite(Callable<R> task, Callback<R> callback) {
+        DatabaseTask<R> future = new DatabaseTask<>(task, callback, true);
+        mWriteExecutor.execute(future);
+        return future;
+    }
+
+    /**
+     * @return The number of tasks waiting for the database threads.
+     */
+    public int getQueueSize() {
+        return mWriteExecutor.getQueue().size() + mReadExecutor.getQueue().size();
+    }
+
+    /**
+     * Runs the grouped writes at the head of the write queue together with the first one.
+     */
+    private void runGroup(DatabaseTask<?> first) {
+        List<DatabaseTask<?>> group = new ArrayList<>();
+        group.add(first);
+        BlockingQueue<Runnable> queue = mWriteExecutor.getQueue();
+        while (group.size() < MAX_GROUPED_WRITES) {
+            Runnable next = queue.peek();
+            if (!(next instanceof DatabaseTask) || !((DatabaseTask<?>) next).mGrouped) {
+                break;
+            }
+            // This thread is the only one taking from the queue.
+            queue.poll();
+            group.add((DatabaseTask<?>) next);
+        }
+        if (group.size() == 1) {
+            first.runAlone();
+            return;
+        }
+        SQLiteDatabase db;
+        try {
+            db = Orm.getDatabase();
+        } catch (RuntimeException e) {
+            for (DatabaseTask<?> task : group) {
+                task.complete(e);
+            }
+            return;
+        }
+        boolean thrown = false;
+        RuntimeException commitError = null;
+        db.beginTransaction();
+        try {
+            for (DatabaseTask<?> task : group) {
+                if (!task.runInGroup()) {
+                    thrown = true;
+                    break;
+                }
+            }
+            if (!thrown) {
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            try {
+                db.endTransaction();
+            } catch (RuntimeException e) {
+                commitError = e;
+            }
+            InvalidationTracker.getInstance().onTransactionEnd(db);
+        }
+        if (thrown) {
+            OrmLog.w("A grouped write failed, the " + group.size() + " writes run one by one.");
+            for (DatabaseTask<?> task : group) {
+                task.runAlone();
+            }
+            return;
+        }
+        for (DatabaseTask<?> task : group) {
+            task.complete(commitError);
+        }
+    }
+
+    private final class DatabaseTask<R> extends FutureTask<R> {
+
+        private final Callable<R> mCallable;
+        private final Callback<R> mCallback;
+        private final boolean mGrouped;
+        private R mResult;
+        private Throwable mError;
+
+        DatabaseTask(Callable<R> callable, Callback<R> callback, boolean grouped) {
+            super(callable);
+            this.mCallable = callable;
+            this.mCallback = callback;
+            this.mGrouped = grouped;
+        }
+
+        void reject(RejectedExecutionException e) {
+            setException(e);
+        }
+
+        @Override
+        public void run() {
+            if (mGrouped) {
+                runGroup(this);
+            } else {
+                super.run();
+            }
+        }
+
+        void runAlone() {
+            super.run();
+        }
+
+        /**
+         * Runs the task in the transaction of its group and keeps the result until the commit.
+         *
+         * @return False if the task threw.
+         */
+        boolean runInGroup() {
+            if (isCancelled()) {
+                return true;
+            }
+            try {
+                mResult = mCallable.call();
+                return true;
+            } catch (Throwable e) {
+                mError = e;
+                return false;
+            }
+        }
+
+        /**
+         * Completes the task after the transaction of its group has ended.
+         */
+        void complete(Throwable commitError) {
+            if (commitError != null) {
+                setException(commitError);
+            } else if (mError != null) {
+                setException(mError);
+            } else {
+                set(mResult);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (mCallback == null || isCancelled()) {
+                return;
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    try {
+                        mCallback.onSuccess(get());
+                    } catch (ExecutionException e) {
+                        mCallback.onFailure(e.getCause());
+                    } catch (InterruptedException e) {
+                        mCallback.onFailure(e);
+                    }
+                }
+            });
+        }
+    }
+}
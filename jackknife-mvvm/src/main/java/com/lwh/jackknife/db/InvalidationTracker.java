@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the tables written through the daos, {@link Transaction} and {@link Orm#execSQL}. The
+ * tables written inside a transaction are announced once, when the outermost transaction ends.
+ * Transactions belong to threads, so the tables are tracked per thread, and a write on another
+ * thread never announces the tables of a transaction that has not been committed yet.
+ */
+public final class InvalidationTracker {
+
+    private static final Pattern WRITTEN_TABLE = Pattern.compile(
+            "^\\s*(?:INSERT(?:\\s+OR\\s+\\w+)?\\s+INTO|REPLACE\\s+INTO|UPDATE(?:\\s+OR\\s+\\w+)?"
+                    + "|DELETE\\s+FROM)\\s+[\"`\\[]?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private static volatile InvalidationTracker sInstance;
+
+    private final ThreadLocal<Set<String>> mInvalidatedTables = new ThreadLocal<Set<String>>() {
+        @Override
+        protected Set<String> initialValue() {
+            return new HashSet<>();
+        }
+    };
+    private final List<ObserverWrapper> mObservers = new CopyOnWriteArrayList<>();
+
+    public interface Observer {
+
+        /**
+         * Called on the writing thread after the commit, it must not block.
+         *
+         * @param tables The observed tables that changed, in lower case.
+         */
+        void onInvalidated(Set<String> tables);
+    }
+
+    private InvalidationTracker() {
+    }
+
+    public static InvalidationTracker getInstance() {
+        if (sInstance == null) {
+            synchronized (InvalidationTracker.class) {
+                if (sInstance == null) {
+                    sInstance = new InvalidationTracker();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    public void addObserver(Observer observer, String... tables) {
+        Set<String> names = new HashSet<>();
+        for (String table : tables) {
+            names.add(table.toLowerCase(Locale.ENGLISH));
+        }
+        mObservers.add(new ObserverWrapper(observer, names));
+    }
+
+    public void removeObserver(Observer observer) {
+        for (ObserverWrapper wrapper : mObservers) {
+            if (wrapper.mObserver == observer) {
+                mObservers.remove(wrapper);
+            }
+        }
+    }
+
+    /**
+     * Marks the table as changed, the observers are notified now if the database is not in a
+     * transaction, or else when the transaction ends.
+     */
+    public void notifyChanged(SQLiteDatabase db, String table) {
+        if (table == null) {
+            return;
+        }
+        mInvalidatedTables.get().add(table.toLowerCase(Locale.ENGLISH));
+        onTransactionEnd(db);
+    }
+
+    /**
+     * Marks the table written by an INSERT, UPDATE, REPLACE or DELETE statement as changed.
+     */
+    public void notifySqlExecuted(SQLiteDatabase db, String sql) {
+        Matcher matcher = WRITTEN_TABLE.matcher(sql);
+        if (matcher.find()) {
+            notifyChanged(db, matcher.group(1));
+        }
+    }
+
+    /**
+     * Notifies the observers of the tables marked so far by the calling thread, unless its
+     * transaction is still running.
+     * A rolled back transaction also notifies its tables, the queries are then run again for
+     * nothing.
+     */
+    public void onTransactionEnd(SQLiteDatabase db) {
+        if (db.inTransaction()) {
+            return;
+        }
+        Set<String> invalidatedTables = mInvalidatedTables.get();
+        if (invalidatedTables.isEmpty()) {
+            return;
+        }
+        Set<String> tables = new HashSet<>(invalidatedTables);
+        invalidatedTables.clear();
+        for (ObserverWrapper wrapper : mObservers) {
+            wrapper.notifyIfMatched(tables);
+        }
+    }
+
+    private static class ObserverWrapper {
+
+        final Observer mObserver;
+        final Set<String> mTables;
+
+        ObserverWrapper(Observer observer, Set<String> tables) {
+            this.mObserver = observer;
+            this.mTables = tables;
+        }
+
+        void notifyIfMatched(Set<String> invalidatedTables) {
+            Set<String> matched = null;
+            for (String table : mTables) {
+                if (invalidatedTables.contains(table)) {
+                    if (matched == null) {
+                        matched = new HashSet<>();
+                    }
+                    matched.add(table);
+                }
+            }
+            if (matched != null) {
+                mObserver.onInvalidated(Collections.unmodifiableSet(matched));
+            }
+        }
+    }
+}
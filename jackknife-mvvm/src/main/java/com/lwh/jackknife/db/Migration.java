@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * A versioned migration step, run by {@link OrmSQLiteOpenHelper#onUpgrade} before the tables are
+ * compared with their classes. It is needed for the changes that can not be derived from the
+ * classes, such as renamed columns or converted data.
+ */
+public abstract class Migration {
+
+    private final int mStartVersion;
+    private final int mEndVersion;
+
+    public Migration(int startVersion, int endVersion) {
+        this.mStartVersion = startVersion;
+        this.mEndVersion = endVersion;
+    }
+
+    public int getStartVersion() {
+        return mStartVersion;
+    }
+
+    public int getEndVersion() {
+        return mEndVersion;
+    }
+
+    /**
+     * Runs inside the upgrade transaction.
+     */
+    public abstract void migrate(SQLiteDatabase db);
+}
@@ -17,20 +17,33 @@
 package com.lwh.jackknife.db;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import com.lwh.jackknife.db.exception.OrmStateException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Orm {
 
     private static SQLiteDatabase sDatabase;
     private static SQLiteOpenHelper sHelper;
+    private static StatementCache sStatementCache;
+    private static ReaderPool sReaderPool;
+    private static int sStatementCacheSize = StatementCache.DEFAULT_MAX_SIZE;
     private static int STATE_DATABASE_NOT_EXISTS = -1;
     private static int STATE_DATABASE_EXISTS = 0;
     private static int STATE_DATABASE_UPDATING = 1;
     private static int sDatabaseState = STATE_DATABASE_NOT_EXISTS;
 
+    /**
+     * Upper bound of {@link SQLiteDatabase#setMaxSqlCacheSize(int)}.
+     */
+    private static final int MAX_SQL_CACHE_SIZE = 100;
+
     public static boolean isPrepared() {
         return sDatabaseState == STATE_DATABASE_EXISTS;
     }
@@ -49,6 +62,7 @@ public class Orm {
         } else if (isWaitingUpdate()) {
             sDatabase = sHelper.getWritableDatabase();
             if (sDatabase != null) {
+                prepareStatementCache();
                 sDatabaseState = STATE_DATABASE_EXISTS;
             }
             return sDatabase;
@@ -57,22 +71,135 @@ public class Orm {
         }
     }
 
+    /**
+     * Gets a connection for a query, a reader of the pool when there is one. The writable
+     * connection is returned to the thread that runs a transaction on it, so that it reads its
+     * own uncommitted changes.
+     */
+    public static SQLiteDatabase getReadableDatabase() {
+        SQLiteDatabase db = getDatabase();
+        ReaderPool pool = sReaderPool;
+        if (pool == null || db.isDbLockedByCurrentThread()) {
+            return db;
+        }
+        SQLiteDatabase reader = pool.acquire();
+        return reader != null ? reader : db;
+    }
+
+    /**
+     * Executes a statement that returns no rows, the table it writes is announced to the
+     * {@link InvalidationTracker}.
+     */
+    public static void execSQL(String sql, Object... bindArgs) {
+        SQLiteDatabase db = getDatabase();
+        db.execSQL(sql, bindArgs);
+        InvalidationTracker.getInstance().notifySqlExecuted(db, sql);
+    }
+
+    /**
+     * Runs a pragma and ignores its result.
+     */
+    /* package */ static void pragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery("PRAGMA " + pragma, null);
+            cursor.moveToFirst();
+        } catch (SQLiteException e) {
+            OrmLog.e("PRAGMA " + pragma + " failed: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Gets the pragmas that must be run on every connection.
+     */
+    /* package */ static String[] getConnectionPragmas(OrmConfig config) {
+        List<String> pragmas = new ArrayList<>();
+        if (config.getCacheSize() != 0) {
+            pragmas.add("cache_size=" + config.getCacheSize());
+        }
+        if (config.getMmapSize() > 0) {
+            pragmas.add("mmap_size=" + config.getMmapSize());
+        }
+        return pragmas.toArray(new String[pragmas.size()]);
+    }
+
+    /**
+     * Gets the cache of compiled statements of a connection given by
+     * {@link #getReadableDatabase()}, a reader of the pool has its own cache.
+     */
+    public static StatementCache getStatementCache(SQLiteDatabase db) {
+        ReaderPool pool = sReaderPool;
+        if (pool != null && db != getDatabase()) {
+            StatementCache cache = pool.getStatementCache(db);
+            if (cache != null) {
+                return cache;
+            }
+        }
+        return getStatementCache();
+    }
+
+    /**
+     * Gets the cache of compiled statements of the current database.
+     */
+    public static StatementCache getStatementCache() {
+        SQLiteDatabase db = getDatabase();
+        StatementCache cache = sStatementCache;
+        if (cache == null || cache.getDatabase() != db) {
+            synchronized (Orm.class) {
+                prepareStatementCache();
+                cache = sStatementCache;
+            }
+        }
+        return cache;
+    }
+
+    private static void prepareStatementCache() {
+        if (sStatementCache != null && sStatementCache.getDatabase() == sDatabase) {
+            return;
+        }
+        if (sStatementCache != null) {
+            sStatementCache.clear();
+        }
+        sDatabase.setMaxSqlCacheSize(Math.min(sStatementCacheSize, MAX_SQL_CACHE_SIZE));
+        sStatementCache = new StatementCache(sDatabase, sStatementCacheSize);
+    }
+
+    private static void closeReaderPool() {
+        if (sReaderPool != null) {
+            sReaderPool.close();
+            sReaderPool = null;
+        }
+    }
+
     public synchronized static void init(Context context, String databaseName) {
+        sStatementCacheSize = StatementCache.DEFAULT_MAX_SIZE;
+        closeReaderPool();
         sHelper = new OrmSQLiteOpenHelper(context, databaseName, 1, null);
         sDatabase = sHelper.getWritableDatabase();
         if (sDatabase != null) {
+            prepareStatementCache();
             sDatabaseState = STATE_DATABASE_EXISTS;
         }
     }
 
     public synchronized static void init(Context context, OrmConfig config) {
-        String name = config.getDatabaseName();
-        int versionCode = config.getVersionCode();
-        Class<? extends OrmTable>[] tables = config.getTables();
-        sHelper = new OrmSQLiteOpenHelper(context, name, versionCode, tables);
+        sStatementCacheSize = config.getStatementCacheSize();
+        QueryPlanChecker.setEnabled(config.isCheckQueryPlan());
+        closeReaderPool();
+        sHelper = new OrmSQLiteOpenHelper(context, config);
         sDatabase = sHelper.getWritableDatabase();
         if (sDatabase != null) {
+            prepareStatementCache();
             sDatabaseState = STATE_DATABASE_EXISTS;
+            if (config.isWriteAheadLogging() && config.getMaxReaderConnections() > 0) {
+                sReaderPool = new ReaderPool(sDatabase.getPath(),
+                        config.getMaxReaderConnections(), getConnectionPragmas(config),
+                        sStatementCacheSize);
+            }
         }
     }
 }
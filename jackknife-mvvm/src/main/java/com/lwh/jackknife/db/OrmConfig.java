@@ -23,11 +23,34 @@ public class OrmConfig {
     private String mDatabaseName;
     private int mVersionCode;
     private Class<? extends OrmTable>[] mTables;
+    private int mStatementCacheSize;
+    private boolean mCheckQueryPlan;
+    private boolean mWriteAheadLogging;
+    private int mSynchronous;
+    private int mPageSize;
+    private int mCacheSize;
+    private long mMmapSize;
+    private int mMaxReaderConnections;
+    private Migration[] mMigrations;
+
+    public static final int SYNCHRONOUS_DEFAULT = -1;
+    public static final int SYNCHRONOUS_OFF = 0;
+    public static final int SYNCHRONOUS_NORMAL = 1;
+    public static final int SYNCHRONOUS_FULL = 2;
 
     private OrmConfig(Builder builder) {
         mDatabaseName = builder.mDatabaseName;
         mVersionCode = builder.mVersionCode;
         mTables = builder.mTables;
+        mStatementCacheSize = builder.mStatementCacheSize;
+        mCheckQueryPlan = builder.mCheckQueryPlan;
+        mWriteAheadLogging = builder.mWriteAheadLogging;
+        mSynchronous = builder.mSynchronous;
+        mPageSize = builder.mPageSize;
+        mCacheSize = builder.mCacheSize;
+        mMmapSize = builder.mMmapSize;
+        mMaxReaderConnections = builder.mMaxReaderConnections;
+        mMigrations = builder.mMigrations;
     }
 
     public String getDatabaseName() {
@@ -42,11 +65,56 @@ public class OrmConfig {
         return mTables;
     }
 
+    public int getStatementCacheSize() {
+        return mStatementCacheSize;
+    }
+
+    public boolean isCheckQueryPlan() {
+        return mCheckQueryPlan;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return mWriteAheadLogging;
+    }
+
+    public int getSynchronous() {
+        return mSynchronous;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public int getCacheSize() {
+        return mCacheSize;
+    }
+
+    public long getMmapSize() {
+        return mMmapSize;
+    }
+
+    public int getMaxReaderConnections() {
+        return mMaxReaderConnections;
+    }
+
+    public Migration[] getMigrations() {
+        return mMigrations;
+    }
+
     public static class Builder {
 
         private String mDatabaseName;
         private int mVersionCode = 1;
         private Class<? extends OrmTable>[] mTables;
+        private int mStatementCacheSize = StatementCache.DEFAULT_MAX_SIZE;
+        private boolean mCheckQueryPlan;
+        private boolean mWriteAheadLogging;
+        private int mSynchronous = SYNCHRONOUS_DEFAULT;
+        private int mPageSize;
+        private int mCacheSize;
+        private long mMmapSize;
+        private int mMaxReaderConnections;
+        private Migration[] mMigrations;
 
         public Builder database(String name) {
             mDatabaseName = name;
@@ -63,6 +131,87 @@ public class OrmConfig {
             return this;
         }
 
+        /**
+         * Sets the number of compiled statements cached by {@link StatementCache}, it is also
+         * used as the size of the SQLite prepared statement cache of the connection.
+         *
+         * @throws IllegalArgumentException if size is negative
+         */
+        public Builder statementCacheSize(int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("statementCacheSize must not be negative.");
+            }
+            mStatementCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Warns about the queries that scan the whole table, see {@link QueryPlanChecker}.
+         */
+        public Builder checkQueryPlan(boolean check) {
+            mCheckQueryPlan = check;
+            return this;
+        }
+
+        /**
+         * Enables the write-ahead logging, so that the readers are not blocked by a writer.
+         */
+        public Builder writeAheadLogging(boolean enabled) {
+            mWriteAheadLogging = enabled;
+            return this;
+        }
+
+        /**
+         * Sets PRAGMA synchronous, one of the SYNCHRONOUS constants. NORMAL is safe in the
+         * write-ahead logging mode and much faster than FULL.
+         */
+        public Builder synchronous(int level) {
+            mSynchronous = level;
+            return this;
+        }
+
+        /**
+         * Sets PRAGMA page_size in bytes, it only takes effect when the database is created.
+         */
+        public Builder pageSize(int bytes) {
+            mPageSize = bytes;
+            return this;
+        }
+
+        /**
+         * Sets PRAGMA cache_size of every connection, positive in pages and negative in KiB.
+         */
+        public Builder cacheSize(int size) {
+            mCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Sets PRAGMA mmap_size of every connection in bytes, 0 to read through the file system.
+         */
+        public Builder mmapSize(long bytes) {
+            mMmapSize = bytes;
+            return this;
+        }
+
+        /**
+         * Opens up to count read-only connections for the queries of the daos, it only takes
+         * effect with the write-ahead logging. 0 runs the queries on the writable connection.
+         */
+        public Builder maxReaderConnections(int count) {
+            mMaxReaderConnections = count;
+            return this;
+        }
+
+        /**
+         * Adds the versioned steps run on upgrade before the tables are compared with their
+         * classes.
+         */
+        public Builder migrations(Migration... migrations) {
+            mMigrations = migrations;
+            return this;
+        }
+
         public OrmConfig build() {
             if (!TextUtils.isEmpty(mDatabaseName)) {
                 return new OrmConfig(this);
@@ -21,6 +21,7 @@ package com.lwh.jackknife.db;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -28,6 +29,7 @@ import java.lang.reflect.InvocationTargetException;
 public class OrmSQLiteOpenHelper extends SQLiteOpenHelper {
 
     private Class<? extends OrmTable>[] mTables;
+    private OrmConfig mConfig;
 
     public OrmSQLiteOpenHelper(Context context, String name, int version,
                                Class<? extends OrmTable>[] tables) {
@@ -35,8 +37,61 @@ public class OrmSQLiteOpenHelper extends SQLiteOpenHelper {
         this.mTables = tables;
     }
 
+    public OrmSQLiteOpenHelper(Context context, OrmConfig config) {
+        this(context, config.getDatabaseName(), config.getVersionCode(), config.getTables());
+        this.mConfig = config;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(config.isWriteAheadLogging());
+        }
+    }
+
+    /**
+     * Applies the pragmas of the config before the tables are created, page_size has no effect
+     * after that.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        applyPragmas(db);
+    }
+
+    /**
+     * Below Jelly Bean {@link #onConfigure(SQLiteDatabase)} is never called, so the write-ahead
+     * logging and the pragmas are applied here, after the tables are created or upgraded. The
+     * indexes are built by {@link #onCreate} and {@link #onUpgrade}, not on every open.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            if (mConfig != null && mConfig.isWriteAheadLogging() && !db.isReadOnly()) {
+                db.enableWriteAheadLogging();
+            }
+            applyPragmas(db);
+        }
+    }
+
+    private void applyPragmas(SQLiteDatabase db) {
+        enableRecursiveTriggers(db);
+        if (mConfig == null) {
+            return;
+        }
+        if (mConfig.getPageSize() > 0) {
+            Orm.pragma(db, "page_size=" + mConfig.getPageSize());
+        }
+        if (mConfig.getSynchronous() != OrmConfig.SYNCHRONOUS_DEFAULT) {
+            Orm.pragma(db, "synchronous=" + mConfig.getSynchronous());
+        }
+        for (String pragma : Orm.getConnectionPragmas(mConfig)) {
+            Orm.pragma(db, pragma);
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            enableRecursiveTriggers(db);
+        }
         if (mTables != null && mTables.length > 0) {
             for (Class<? extends OrmTable> table : mTables) {
                 TableManager.getInstance()._createTable(table, db);
@@ -44,7 +99,16 @@ public class OrmSQLiteOpenHelper extends SQLiteOpenHelper {
         }
     }
 
-    private <T> T newOrmTableInstance(Class<T> clazz) {
+    /**
+     * REPLACE only fires the delete triggers of the full text tables with recursive triggers. It
+     * can be set inside a transaction, so below Jelly Bean it is also set before the tables are
+     * created or migrated, where {@link #onOpen(SQLiteDatabase)} has not run yet.
+     */
+    private static void enableRecursiveTriggers(SQLiteDatabase db) {
+        Orm.pragma(db, "recursive_triggers=ON");
+    }
+
+    /* package */ static <T> T newOrmTableInstance(Class<T> clazz) {
         Constructor<?>[] constructors = clazz.getDeclaredConstructors();
         for (Constructor<?> c : constructors) {
             c.setAccessible(true);
@@ -78,7 +142,7 @@ public class OrmSQLiteOpenHelper extends SQLiteOpenHelper {
         return null;
     }
 
-    private Object getPrimitiveDefaultValue(Class clazz) {
+    private static Object getPrimitiveDefaultValue(Class clazz) {
         if (clazz.isPrimitive()) {
             return clazz == boolean.class ? false : 0;
         }
@@ -87,18 +151,12 @@ public class OrmSQLiteOpenHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        if (mTables != null && mTables.length > 0 && newVersion > oldVersion) {
-            for (int i = 0; i < mTables.length; i++) {
-                Class<? extends OrmTable> table = mTables[i];
-                OrmTable ormTable = newOrmTableInstance(mTables[i]);
-                boolean isRecreated = ormTable.isUpgradeRecreated();
-                if (isRecreated) {
-                    TableManager.getInstance()._dropTable(table, db);
-                    TableManager.getInstance()._createTable(table, db);
-                } else {
-                    TableManager.getInstance()._upgradeTable(table, db);
-                }
+        if (newVersion > oldVersion) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                enableRecursiveTriggers(db);
             }
+            SchemaMigrator.upgrade(db, oldVersion, newVersion, mTables,
+                    mConfig != null ? mConfig.getMigrations() : null);
         }
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.lwh.jackknife.db.builder.BindArgs;
+
+import java.util.Locale;
+
+/**
+ * Debug hook that runs EXPLAIN QUERY PLAN before the queries of the daos, and warns when a query
+ * scans the whole table instead of searching an index. It is disabled by default, because every
+ * checked query is planned twice.
+ */
+public final class QueryPlanChecker {
+
+    private static final String EXPLAIN_QUERY_PLAN = "EXPLAIN QUERY PLAN ";
+
+    private static final String SCAN = "SCAN";
+
+    private static final String USING = "USING";
+
+    private static volatile boolean sEnabled;
+
+    private QueryPlanChecker() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Explains the statement with its arguments, only if the checker is enabled.
+     */
+    public static void check(SQLiteDatabase db, String sql, BindArgs args) {
+        if (!sEnabled) {
+            return;
+        }
+        Cursor cursor = null;
+        try {
+            String[] selectionArgs = args != null && args.size() > 0 ? args.toStringArray() : null;
+            cursor = db.rawQuery(EXPLAIN_QUERY_PLAN + sql, selectionArgs);
+            int detailIndex = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                String detail = cursor.getString(detailIndex);
+                if (detail != null && detail.toUpperCase(Locale.ENGLISH).startsWith(SCAN)
+                        && !detail.toUpperCase(Locale.ENGLISH).contains(USING)) {
+                    OrmLog.w("Full table scan (" + detail + "): " + sql);
+                }
+            }
+        } catch (RuntimeException e) {
+            OrmLog.w("Unable to explain " + sql + ": " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+}
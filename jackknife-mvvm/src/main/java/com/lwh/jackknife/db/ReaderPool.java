@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only connections of the database file, opened lazily and handed out in turn. In the
+ * write-ahead logging mode they read the last committed data while a write transaction is running
+ * on the writable connection. Each reader has its own {@link StatementCache}.
+ */
+public class ReaderPool {
+
+    private final String mPath;
+    private final SQLiteDatabase[] mReaders;
+    private final String[] mPragmas;
+    private final StatementCache[] mStatementCaches;
+    private final int mStatementCacheSize;
+    private final AtomicInteger mNext = new AtomicInteger();
+    private boolean mClosed;
+
+    /**
+     * @param pragmas The per-connection pragmas run when a reader is opened, such as cache_size.
+     */
+    public ReaderPool(String path, int size, String[] pragmas) {
+        this(path, size, pragmas, StatementCache.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param statementCacheSize The maximum number of statements cached for each reader.
+     */
+    public ReaderPool(String path, int size, String[] pragmas, int statementCacheSize) {
+        this.mPath = path;
+        this.mReaders = new SQLiteDatabase[size];
+        this.mPragmas = pragmas;
+        this.mStatementCaches = new StatementCache[size];
+        this.mStatementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Gets the next reader, or null if it can not be opened.
+     */
+    public SQLiteDatabase acquire() {
+        int index = (mNext.getAndIncrement() & Integer.MAX_VALUE) % mReaders.length;
+        synchronized (this) {
+            if (mClosed) {
+                return null;
+            }
+            SQLiteDatabase reader = mReaders[index];
+            if (reader == null || !reader.isOpen()) {
+                try {
+                    reader = SQLiteDatabase.openDatabase(mPath, null,
+                            SQLiteDatabase.OPEN_READONLY);
+                    for (String pragma : mPragmas) {
+                        Orm.pragma(reader, pragma);
+                    }
+                } catch (SQLiteException e) {
+                    OrmLog.e("Unable to open a reader of " + mPath + ": " + e.getMessage());
+                    return null;
+                }
+                if (mStatementCaches[index] != null) {
+                    mStatementCaches[index].clear();
+                }
+                mReaders[index] = reader;
+                mStatementCaches[index] = new StatementCache(reader, mStatementCacheSize);
+            }
+            return reader;
+        }
+    }
+
+    /**
+     * Gets the statement cache of a reader of this pool, or null if the database is not one of
+     * its readers.
+     */
+    public synchronized StatementCache getStatementCache(SQLiteDatabase reader) {
+        for (int i = 0; i < mReaders.length; i++) {
+            if (mReaders[i] == reader) {
+                return mStatementCaches[i];
+            }
+        }
+        return null;
+    }
+
+    public int getSize() {
+        return mReaders.length;
+    }
+
+    public synchronized void close() {
+        mClosed = true;
+        for (int i = 0; i < mReaders.length; i++) {
+            if (mStatementCaches[i] != null) {
+                mStatementCaches[i].clear();
+                mStatementCaches[i] = null;
+            }
+            if (mReaders[i] != null) {
+                mReaders[i].close();
+                mReaders[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Upgrades the database schema: runs the {@link Migration}s between the versions, then compares
+ * every table with its class. The schema hash of each table is recorded in
+ * {@link #SCHEMA_TABLE}, so that the tables whose classes did not change are skipped.
+ */
+/* package */ final class SchemaMigrator {
+
+    /* package */ static final String SCHEMA_TABLE = "orm_schema";
+
+    private static final String CREATE_SCHEMA_TABLE = "CREATE TABLE IF NOT EXISTS " + SCHEMA_TABLE
+            + "(table_name TEXT PRIMARY KEY,schema_hash TEXT NOT NULL)";
+
+    private SchemaMigrator() {
+    }
+
+    /* package */ static void upgrade(SQLiteDatabase db, int oldVersion, int newVersion,
+                                      Class<? extends OrmTable>[] tables, Migration[] migrations) {
+        runMigrations(db, oldVersion, newVersion, migrations);
+        if (tables == null) {
+            return;
+        }
+        TableManager manager = TableManager.getInstance();
+        for (Class<? extends OrmTable> table : tables) {
+            OrmTable ormTable = OrmSQLiteOpenHelper.newOrmTableInstance(table);
+            if (ormTable != null && ormTable.isUpgradeRecreated()) {
+                manager._dropTable(table, db);
+                manager._createTable(table, db);
+            } else {
+                manager._upgradeTable(table, db);
+            }
+        }
+    }
+
+    /**
+     * Runs the migrations on the path from oldVersion to newVersion, preferring the step that
+     * goes the furthest from each version. A gap in the path is logged and left to the comparison
+     * of the tables with their classes that follows.
+     */
+    private static void runMigrations(SQLiteDatabase db, int oldVersion, int newVersion,
+                                      Migration[] migrations) {
+        if (migrations == null || migrations.length == 0) {
+            return;
+        }
+        List<Migration> sorted = new ArrayList<>(Arrays.asList(migrations));
+        Collections.sort(sorted, new Comparator<Migration>() {
+            @Override
+            public int compare(Migration o1, Migration o2) {
+                return o2.getEndVersion() - o1.getEndVersion();
+            }
+        });
+        int version = oldVersion;
+        while (version < newVersion) {
+            Migration step = null;
+            for (Migration migration : sorted) {
+                if (migration.getStartVersion() == version
+                        && migration.getEndVersion() <= newVersion
+                        && migration.getEndVersion() > version) {
+                    step = migration;
+                    break;
+                }
+            }
+            if (step == null) {
+                int next = newVersion;
+                for (Migration migration : sorted) {
+                    if (migration.getStartVersion() > version
+                            && migration.getStartVersion() < next) {
+                        next = migration.getStartVersion();
+                    }
+                }
+                OrmLog.w("No migration from " + version + " to " + next
+                        + ", the tables are only compared with their classes");
+                version = next;
+                continue;
+            }
+            OrmLog.d("Migrate from " + step.getStartVersion() + " to " + step.getEndVersion());
+            step.migrate(db);
+            version = step.getEndVersion();
+        }
+    }
+
+    /**
+     * @return The recorded schema hash of the table, or null if it was never recorded.
+     */
+    /* package */ static String getSchemaHash(SQLiteDatabase db, String tableName) {
+        db.execSQL(CREATE_SCHEMA_TABLE);
+        Cursor cursor = db.rawQuery("SELECT schema_hash FROM " + SCHEMA_TABLE
+                + " WHERE table_name=?", new String[]{tableName});
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /* package */ static void putSchemaHash(SQLiteDatabase db, String tableName, String hash) {
+        db.execSQL(CREATE_SCHEMA_TABLE);
+        db.execSQL("INSERT OR REPLACE INTO " + SCHEMA_TABLE + "(table_name,schema_hash) VALUES(?,?)",
+                new Object[]{tableName, hash});
+    }
+
+    /* package */ static void removeSchemaHash(SQLiteDatabase db, String tableName) {
+        db.execSQL(CREATE_SCHEMA_TABLE);
+        db.execSQL("DELETE FROM " + SCHEMA_TABLE + " WHERE table_name=?", new Object[]{tableName});
+    }
+}
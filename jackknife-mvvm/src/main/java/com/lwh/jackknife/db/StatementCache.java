@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of compiled statements of a database, keyed by the SQL with placeholders, so the
+ * statements that differ only in arguments are parsed and planned only once. A statement is
+ * checked out of the cache by {@link #acquire(SQLiteDatabase, String)} and put back by
+ * {@link #release(SQLiteDatabase, String, SQLiteStatement)}, so that two threads never bind the
+ * same statement at the same time.
+ */
+public class StatementCache {
+
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    private final SQLiteDatabase mDatabase;
+    private final int mMaxSize;
+    private final LinkedHashMap<String, SQLiteStatement> mStatements;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    public StatementCache(SQLiteDatabase db, int maxSize) {
+        this.mDatabase = db;
+        this.mMaxSize = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+        this.mStatements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public SQLiteDatabase getDatabase() {
+        return mDatabase;
+    }
+
+    /**
+     * Gets a compiled statement of the sql, the statement is only cached for the database of this
+     * cache.
+     */
+    public SQLiteStatement acquire(SQLiteDatabase db, String sql) {
+        if (db == mDatabase) {
+            SQLiteStatement statement;
+            synchronized (this) {
+                statement = mStatements.remove(sql);
+                if (statement != null) {
+                    mHitCount++;
+                    return statement;
+                }
+                mMissCount++;
+            }
+        }
+        return db.compileStatement(sql);
+    }
+
+    /**
+     * Puts the statement back to the cache after it is executed.
+     */
+    public void release(SQLiteDatabase db, String sql, SQLiteStatement statement) {
+        if (db != mDatabase) {
+            statement.close();
+            return;
+        }
+        statement.clearBindings();
+        synchronized (this) {
+            if (mStatements.containsKey(sql)) {
+                statement.close();
+                return;
+            }
+            mStatements.put(sql, statement);
+            Iterator<Map.Entry<String, SQLiteStatement>> iterator =
+                    mStatements.entrySet().iterator();
+            while (mStatements.size() > mMaxSize && iterator.hasNext()) {
+                iterator.next().getValue().close();
+                iterator.remove();
+                mEvictionCount++;
+            }
+        }
+    }
+
+    /**
+     * Closes all cached statements, it must be called before the database is closed.
+     */
+    public synchronized void clear() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+    }
+
+    public synchronized int size() {
+        return mStatements.size();
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (int) (100 * mHitCount / accesses) : 0;
+        return "StatementCache[size=" + mStatements.size() + ",maxSize=" + mMaxSize + ",hits="
+                + mHitCount + ",misses=" + mMissCount + ",hitRate=" + hitPercent + "%]";
+    }
+}
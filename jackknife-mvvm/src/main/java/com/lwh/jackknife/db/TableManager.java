@@ -16,6 +16,7 @@
 
 package com.lwh.jackknife.db;
 
+import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 
@@ -28,8 +29,11 @@ import com.lwh.jackknife.db.constraint.Unique;
 import com.lwh.jackknife.db.dao.DaoFactory;
 import com.lwh.jackknife.db.exception.ConstraintException;
 import com.lwh.jackknife.db.table.Column;
-import com.lwh.jackknife.db.table.Ignore;
+import com.lwh.jackknife.db.table.FullText;
+import com.lwh.jackknife.db.table.ColumnInfo;
+import com.lwh.jackknife.db.table.IndexInfo;
 import com.lwh.jackknife.db.table.Table;
+import com.lwh.jackknife.db.table.TableInfo;
 import com.lwh.jackknife.db.type.BaseDataType;
 import com.lwh.jackknife.db.type.BooleanType;
 import com.lwh.jackknife.db.type.ByteArrayType;
@@ -41,14 +45,19 @@ import com.lwh.jackknife.db.type.FloatType;
 import com.lwh.jackknife.db.type.IntType;
 import com.lwh.jackknife.db.type.LongType;
 import com.lwh.jackknife.db.type.ShortType;
-import com.lwh.jackknife.db.type.SqlType;
 import com.lwh.jackknife.db.type.StringType;
 
+import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Locale;
 
 public class TableManager {
@@ -93,6 +102,22 @@ public class TableManager {
 
     private final String SEMICOLON = ";";
 
+    private final String PRAGMA_INDEX_LIST = "PRAGMA index_list";
+
+    private final String PRAGMA_TABLE_INFO = "PRAGMA table_info";
+
+    private final String CREATE_VIRTUAL_TABLE = "CREATE VIRTUAL TABLE";
+
+    private final String USING = "USING";
+
+    private final String FTS4 = "fts4";
+
+    private final String CREATE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS";
+
+    private final String DROP_TRIGGER = "DROP TRIGGER";
+
+    private final String IF_EXISTS = "IF EXISTS";
+
     private final String UNDERLINE = "_";
 
     private final String TABLE_NAME_HEADER = "t" + UNDERLINE;
@@ -172,7 +197,7 @@ public class TableManager {
         return dataTypes;
     }
 
-    private BaseDataType matchDataType(Field field) {
+    public BaseDataType matchDataType(Field field) {
         List<BaseDataType> dataTypes = getDeclaredDataTypes();
         for (BaseDataType dataType : dataTypes) {
             if (dataType.matches(field)) {
@@ -281,12 +306,11 @@ public class TableManager {
         }
     }
 
-    private ColumnBuilder createColumnBuilder(Field field) {
-        BaseDataType dataType = matchDataType(field);
-        SqlType sqlType = dataType.getSqlType();
-        String columnType = sqlType.name();
-        String columnName = getColumnName(field);
-        ColumnBuilder fieldBuilder = new ColumnBuilder(columnName + SPACE + columnType, field);
+    private ColumnBuilder createColumnBuilder(ColumnInfo column) {
+        String columnType = column.getSqlType().name();
+        String columnName = column.getName();
+        ColumnBuilder fieldBuilder = new ColumnBuilder(columnName + SPACE + columnType,
+                column.getField());
         fieldBuilder.buildColumnUnique()
                 .buildColumnDefault()
                 .buildColumnCheck()
@@ -295,19 +319,22 @@ public class TableManager {
         return fieldBuilder;
     }
 
+    /**
+     * Creates the table, its indexes and its FTS4 table. A table that already exists is upgraded
+     * instead, and the schema hashes are recorded only after the table is really created.
+     */
     /* package */ <T extends OrmTable> void _createTable(Class<T> tableClass, SQLiteDatabase db) {
-        String tableName = getTableName(tableClass);
-        Field[] fields = tableClass.getDeclaredFields();
+        TableInfo<T> tableInfo = DaoFactory.getTableInfo(tableClass);
+        String tableName = tableInfo.getTableName();
+        if (isTableExists(tableName, db)) {
+            _upgradeTable(tableClass, db);
+            return;
+        }
         StringBuilder sqlBuilder = new StringBuilder(CREATE_TABLE + SPACE + IF_NOT_EXISTS + SPACE
                 + tableName + LEFT_PARENTHESIS);//table header
         boolean hasPrimaryKey = false;
-        for (Field field : fields) {
-            field.setAccessible(true);
-            Ignore ignore = field.getAnnotation(Ignore.class);
-            if (ignore != null || (field.getModifiers() & Modifier.STATIC) != 0) {
-                continue;
-            }
-            ColumnBuilder fieldBuilder = createColumnBuilder(field);
+        for (ColumnInfo column : tableInfo.getColumns()) {
+            ColumnBuilder fieldBuilder = createColumnBuilder(column);
             if (fieldBuilder.isPrimaryKey) {
                 hasPrimaryKey = true;
             }
@@ -322,12 +349,227 @@ public class TableManager {
             OrmLog.d(sql);
             db.execSQL(sql);
         } catch (SQLException e) {
-            OrmLog.i(e.getMessage());
+            OrmLog.e("Failed to create " + tableName + ": " + e.getMessage());
+            return;
         }
+        _createIndexes(tableClass, db);
+        _createFullText(tableClass, db);
+        SchemaMigrator.putSchemaHash(db, tableName, getSchemaHash(tableInfo));
+        SchemaMigrator.putSchemaHash(db, tableInfo.getFullTextTableName(),
+                getFullTextHash(tableInfo));
         DaoFactory.removeDao(tableClass);
         Orm.update();
     }
 
+    /**
+     * Hashes the column definitions and the indexes of the table class, a different hash means
+     * that the table must be upgraded.
+     */
+    /* package */ <T extends OrmTable> String getSchemaHash(TableInfo<T> tableInfo) {
+        StringBuilder sb = new StringBuilder(tableInfo.getTableName());
+        for (ColumnInfo column : tableInfo.getColumns()) {
+            sb.append(COMMA).append(createColumnBuilder(column).build());
+        }
+        for (IndexInfo index : tableInfo.getIndexes()) {
+            sb.append(SEMICOLON).append(index.getCreateSql(tableInfo.getTableName()));
+        }
+        return digest(sb.toString());
+    }
+
+    /**
+     * Hashes the {@link FullText} columns and the tokenizer of the table class, it is recorded
+     * under the name of the FTS4 table, so that the FTS4 table is only rebuilt when they change.
+     */
+    /* package */ <T extends OrmTable> String getFullTextHash(TableInfo<T> tableInfo) {
+        StringBuilder sb = new StringBuilder(tableInfo.getFullTextTableName());
+        for (ColumnInfo column : tableInfo.getFullTextColumns()) {
+            sb.append(COMMA).append(column.getName());
+        }
+        if (tableInfo.getFullTextTokenizer() != null) {
+            sb.append(SEMICOLON).append(tableInfo.getFullTextTokenizer());
+        }
+        return digest(sb.toString());
+    }
+
+    private String digest(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(text.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(String.format(Locale.ENGLISH, "%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            return String.valueOf(text.hashCode());
+        }
+    }
+
+    private boolean isTableExists(String tableName, SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type='table' AND name=?",
+                new String[]{tableName});
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * A column as it is declared in the database, read by PRAGMA table_info.
+     */
+    private static class ExistingColumn {
+
+        final String type;
+        final boolean notNull;
+        final boolean primaryKey;
+
+        ExistingColumn(String type, boolean notNull, boolean primaryKey) {
+            this.type = type;
+            this.notNull = notNull;
+            this.primaryKey = primaryKey;
+        }
+    }
+
+    /**
+     * @return The columns of the table by their names in lower case, empty if the table does not
+     * exist.
+     */
+    private Map<String, ExistingColumn> getExistingColumns(String tableName, SQLiteDatabase db) {
+        Map<String, ExistingColumn> columns = new HashMap<>();
+        Cursor cursor = db.rawQuery(PRAGMA_TABLE_INFO + LEFT_PARENTHESIS + tableName
+                + RIGHT_PARENTHESIS, null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            int typeIndex = cursor.getColumnIndex("type");
+            int notNullIndex = cursor.getColumnIndex("notnull");
+            int pkIndex = cursor.getColumnIndex("pk");
+            while (cursor.moveToNext()) {
+                columns.put(cursor.getString(nameIndex).toLowerCase(Locale.ENGLISH),
+                        new ExistingColumn(cursor.getString(typeIndex),
+                                cursor.getInt(notNullIndex) != 0, cursor.getInt(pkIndex) != 0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    /**
+     * Compares the type, NOT NULL and PRIMARY KEY of an existing column with its field, SQLite
+     * can not alter them in place.
+     *
+     * @return The differences, or null if the column matches its field.
+     */
+    private String diffColumn(ColumnInfo column, ExistingColumn existing) {
+        StringBuilder diff = new StringBuilder();
+        String type = column.getSqlType().name();
+        if (!type.equalsIgnoreCase(existing.type)) {
+            diff.append(" type ").append(existing.type).append(" -> ").append(type);
+        }
+        boolean notNull = checkColumnConstraint(column.getField(), NotNull.class);
+        if (notNull != existing.notNull) {
+            diff.append(notNull ? " adds " : " drops ").append(NOT_NULL);
+        }
+        if (column.isPrimaryKey() != existing.primaryKey) {
+            diff.append(column.isPrimaryKey() ? " adds " : " drops ").append(PRIMARY_KEY);
+        }
+        return diff.length() > 0 ? diff.toString() : null;
+    }
+
+    /**
+     * Creates the indexes declared by {@link Index} that do not exist in the database yet.
+     */
+    /* package */ <T extends OrmTable> void _createIndexes(Class<T> tableClass, SQLiteDatabase db) {
+        TableInfo<T> tableInfo = DaoFactory.getTableInfo(tableClass);
+        List<IndexInfo> indexes = tableInfo.getIndexes();
+        if (indexes.isEmpty()) {
+            return;
+        }
+        String tableName = tableInfo.getTableName();
+        Set<String> existingIndexes = new HashSet<>();
+        Cursor cursor = db.rawQuery(PRAGMA_INDEX_LIST + LEFT_PARENTHESIS + tableName
+                + RIGHT_PARENTHESIS, null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                existingIndexes.add(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        for (IndexInfo index : indexes) {
+            if (existingIndexes.contains(index.getName())) {
+                continue;
+            }
+            try {
+                String sql = index.getCreateSql(tableName) + SEMICOLON;
+                OrmLog.d(sql);
+                db.execSQL(sql);
+            } catch (SQLException e) {
+                OrmLog.e(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates the FTS4 table of the {@link FullText} columns with the external content of the
+     * table, and the triggers that keep it in sync. The rows that already exist are indexed.
+     */
+    /* package */ <T extends OrmTable> void _createFullText(Class<T> tableClass, SQLiteDatabase db) {
+        TableInfo<T> tableInfo = DaoFactory.getTableInfo(tableClass);
+        List<ColumnInfo> columns = tableInfo.getFullTextColumns();
+        if (columns.isEmpty()) {
+            return;
+        }
+        String tableName = tableInfo.getTableName();
+        String ftsName = tableInfo.getFullTextTableName();
+        if (isTableExists(ftsName, db)) {
+            return;
+        }
+        StringBuilder names = new StringBuilder();
+        StringBuilder newValues = new StringBuilder();
+        for (ColumnInfo column : columns) {
+            names.append(COMMA).append(column.getName());
+            newValues.append(COMMA).append("new.").append(column.getName());
+        }
+        StringBuilder create = new StringBuilder(CREATE_VIRTUAL_TABLE + SPACE + ftsName + SPACE
+                + USING + SPACE + FTS4 + LEFT_PARENTHESIS + "content=\"" + tableName + "\"")
+                .append(names);
+        if (tableInfo.getFullTextTokenizer() != null) {
+            create.append(COMMA).append("tokenize=").append(tableInfo.getFullTextTokenizer());
+        }
+        create.append(RIGHT_PARENTHESIS);
+        String insert = "INSERT INTO " + ftsName + "(docid" + names + ") VALUES(new.rowid"
+                + newValues + ");";
+        String delete = "DELETE FROM " + ftsName + " WHERE docid=old.rowid;";
+        String[] sqls = {
+                create.toString(),
+                CREATE_TRIGGER + SPACE + ftsName + "_bu BEFORE UPDATE ON " + tableName
+                        + " BEGIN " + delete + " END",
+                CREATE_TRIGGER + SPACE + ftsName + "_bd BEFORE DELETE ON " + tableName
+                        + " BEGIN " + delete + " END",
+                CREATE_TRIGGER + SPACE + ftsName + "_au AFTER UPDATE ON " + tableName
+                        + " BEGIN " + insert + " END",
+                CREATE_TRIGGER + SPACE + ftsName + "_ai AFTER INSERT ON " + tableName
+                        + " BEGIN " + insert + " END",
+                "INSERT INTO " + ftsName + LEFT_PARENTHESIS + ftsName + RIGHT_PARENTHESIS
+                        + " VALUES('rebuild')"
+        };
+        for (String sql : sqls) {
+            OrmLog.d(sql);
+            db.execSQL(sql);
+        }
+    }
+
+    /* package */ void _dropFullText(String tableName, SQLiteDatabase db) {
+        String ftsName = tableName + TableInfo.FULL_TEXT_SUFFIX;
+        db.execSQL(DROP_TABLE + SPACE + IF_EXISTS + SPACE + ftsName);
+        for (String trigger : new String[]{"_bu", "_bd", "_au", "_ai"}) {
+            db.execSQL(DROP_TRIGGER + SPACE + IF_EXISTS + SPACE + ftsName + trigger);
+        }
+    }
+
     public static <T extends OrmTable> void createTable(Class<T> tableClass) {
         if (Orm.isPrepared()) {
             getInstance()._createTable(tableClass, Orm.getDatabase());
@@ -348,22 +590,65 @@ public class TableManager {
         getInstance()._upgradeTable(tableClass, db);
     }
 
+    /**
+     * Adds the missing columns and indexes of the table. The table is skipped if its recorded
+     * schema hashes match the class, and created if it does not exist. The FTS4 table is only
+     * rebuilt when its own hash changes. It runs inside the transaction of
+     * {@link OrmSQLiteOpenHelper#onUpgrade}, so a column that can not be added is logged and
+     * skipped as before. Such a column, or an existing column whose type or constraints differ
+     * from its field, leaves the schema hash unrecorded to be checked again on the next upgrade.
+     * Other failures are thrown and fail the whole upgrade.
+     */
     /* package */ <T extends OrmTable> void _upgradeTable(Class<T> tableClass, SQLiteDatabase db) {
-        String tableName = getTableName(tableClass);
-        Field[] fields = tableClass.getDeclaredFields();
-        for (Field field : fields) {
-            field.setAccessible(true);
-            Ignore ignore = field.getAnnotation(Ignore.class);
-            if (ignore != null || (field.getModifiers() & Modifier.STATIC) != 0) {
-                continue;
+        TableInfo<T> tableInfo = DaoFactory.getTableInfo(tableClass);
+        String tableName = tableInfo.getTableName();
+        String ftsName = tableInfo.getFullTextTableName();
+        String hash = getSchemaHash(tableInfo);
+        String ftsHash = getFullTextHash(tableInfo);
+        boolean schemaChanged = !hash.equals(SchemaMigrator.getSchemaHash(db, tableName));
+        boolean fullTextChanged = !ftsHash.equals(SchemaMigrator.getSchemaHash(db, ftsName));
+        if (!schemaChanged && !fullTextChanged) {
+            return;
+        }
+        Map<String, ExistingColumn> existingColumns = getExistingColumns(tableName, db);
+        if (existingColumns.isEmpty()) {
+            _createTable(tableClass, db);
+        } else {
+            if (schemaChanged) {
+                boolean complete = true;
+                for (ColumnInfo column : tableInfo.getColumns()) {
+                    ExistingColumn existing = existingColumns.get(
+                            column.getName().toLowerCase(Locale.ENGLISH));
+                    if (existing != null) {
+                        String diff = diffColumn(column, existing);
+                        if (diff != null) {
+                            OrmLog.w("Column " + column.getName() + " of " + tableName
+                                    + " differs from its field:" + diff
+                                    + ", recreate the table or migrate it with a Migration.");
+                            complete = false;
+                        }
+                        continue;
+                    }
+                    String sql = ALTER_TABLE + SPACE + tableName + SPACE + ADD_COLUMN + SPACE
+                            + createColumnBuilder(column).build() + SEMICOLON;
+                    OrmLog.d(sql);
+                    try {
+                        db.execSQL(sql);
+                    } catch (SQLException e) {
+                        OrmLog.e("Failed to add a column to " + tableName + ": "
+                                + e.getMessage());
+                        complete = false;
+                    }
+                }
+                _createIndexes(tableClass, db);
+                if (complete) {
+                    SchemaMigrator.putSchemaHash(db, tableName, hash);
+                }
             }
-            try {
-                String sql = ALTER_TABLE + SPACE + tableName + SPACE + ADD_COLUMN + SPACE
-                        + createColumnBuilder(field).build() + SEMICOLON;
-                OrmLog.d(sql);
-                db.execSQL(sql);
-            } catch (SQLException e) {
-                OrmLog.i(e.getMessage());
+            if (fullTextChanged) {
+                _dropFullText(tableName, db);
+                _createFullText(tableClass, db);
+                SchemaMigrator.putSchemaHash(db, ftsName, ftsHash);
             }
         }
         DaoFactory.removeDao(tableClass);
@@ -371,9 +656,13 @@ public class TableManager {
     }
 
     /* package */ <T extends OrmTable> void _dropTable(Class<T> tableClass, SQLiteDatabase db) {
-        String sql = DROP_TABLE + SPACE + getTableName(tableClass);
+        String tableName = getTableName(tableClass);
+        String sql = DROP_TABLE + SPACE + tableName;
         OrmLog.d(sql);
         db.execSQL(sql);
+        _dropFullText(tableName, db);
+        SchemaMigrator.removeSchemaHash(db, tableName);
+        SchemaMigrator.removeSchemaHash(db, tableName + TableInfo.FULL_TEXT_SUFFIX);
         DaoFactory.removeDao(tableClass);
         Orm.update();
     }
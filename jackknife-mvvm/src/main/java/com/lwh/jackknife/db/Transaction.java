@@ -41,6 +41,7 @@ public final class Transaction {
             e.printStackTrace();
         } finally {
             db.endTransaction();
+            InvalidationTracker.getInstance().onTransactionEnd(db);
         }
         return false;
     }
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.builder;
+
+import android.database.sqlite.SQLiteProgram;
+
+/**
+ * Growable buffer of typed bind arguments. Integral and boolean values are kept as long, decimal
+ * values as double, so that they can be bound with {@link SQLiteProgram#bindLong(int, long)} and
+ * {@link SQLiteProgram#bindDouble(int, double)} instead of being compared as text.
+ */
+public final class BindArgs {
+
+    private static final byte TYPE_NULL = 0;
+
+    private static final byte TYPE_LONG = 1;
+
+    private static final byte TYPE_DOUBLE = 2;
+
+    private static final byte TYPE_STRING = 3;
+
+    private static final byte TYPE_BLOB = 4;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private byte[] mTypes = new byte[INITIAL_CAPACITY];
+
+    private long[] mLongs = new long[INITIAL_CAPACITY];
+
+    private double[] mDoubles = new double[INITIAL_CAPACITY];
+
+    private Object[] mObjects = new Object[INITIAL_CAPACITY];
+
+    private int mSize;
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mTypes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mTypes.length * 2);
+        byte[] types = new byte[newCapacity];
+        long[] longs = new long[newCapacity];
+        double[] doubles = new double[newCapacity];
+        Object[] objects = new Object[newCapacity];
+        System.arraycopy(mTypes, 0, types, 0, mSize);
+        System.arraycopy(mLongs, 0, longs, 0, mSize);
+        System.arraycopy(mDoubles, 0, doubles, 0, mSize);
+        System.arraycopy(mObjects, 0, objects, 0, mSize);
+        mTypes = types;
+        mLongs = longs;
+        mDoubles = doubles;
+        mObjects = objects;
+    }
+
+    public void addNull() {
+        ensureCapacity(mSize + 1);
+        mTypes[mSize] = TYPE_NULL;
+        mObjects[mSize++] = null;
+    }
+
+    public void addLong(long value) {
+        ensureCapacity(mSize + 1);
+        mTypes[mSize] = TYPE_LONG;
+        mObjects[mSize] = null;
+        mLongs[mSize++] = value;
+    }
+
+    public void addDouble(double value) {
+        ensureCapacity(mSize + 1);
+        mTypes[mSize] = TYPE_DOUBLE;
+        mObjects[mSize] = null;
+        mDoubles[mSize++] = value;
+    }
+
+    public void addString(String value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        ensureCapacity(mSize + 1);
+        mTypes[mSize] = TYPE_STRING;
+        mObjects[mSize++] = value;
+    }
+
+    public void addBlob(byte[] value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        ensureCapacity(mSize + 1);
+        mTypes[mSize] = TYPE_BLOB;
+        mObjects[mSize++] = value;
+    }
+
+    /**
+     * Adds a value by its runtime type.
+     */
+    public void add(Object value) {
+        if (value == null) {
+            addNull();
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            addLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            addDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            addLong((Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            addBlob((byte[]) value);
+        } else if (value instanceof Class) {
+            addString(((Class<?>) value).getName());
+        } else {
+            addString(value.toString());
+        }
+    }
+
+    public void addAll(Object[] values) {
+        if (values == null) {
+            return;
+        }
+        ensureCapacity(mSize + values.length);
+        for (Object value : values) {
+            add(value);
+        }
+    }
+
+    public void addAll(BindArgs args) {
+        ensureCapacity(mSize + args.mSize);
+        System.arraycopy(args.mTypes, 0, mTypes, mSize, args.mSize);
+        System.arraycopy(args.mLongs, 0, mLongs, mSize, args.mSize);
+        System.arraycopy(args.mDoubles, 0, mDoubles, mSize, args.mSize);
+        System.arraycopy(args.mObjects, 0, mObjects, mSize, args.mSize);
+        mSize += args.mSize;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mObjects[i] = null;
+        }
+        mSize = 0;
+    }
+
+    /**
+     * Binds the arguments to the parameters of the program from the index start, the index of the
+     * first parameter is 1.
+     */
+    public void bindTo(SQLiteProgram program, int start) {
+        for (int i = 0; i < mSize; i++) {
+            int index = start + i;
+            switch (mTypes[i]) {
+                case TYPE_LONG:
+                    program.bindLong(index, mLongs[i]);
+                    break;
+                case TYPE_DOUBLE:
+                    program.bindDouble(index, mDoubles[i]);
+                    break;
+                case TYPE_STRING:
+                    program.bindString(index, (String) mObjects[i]);
+                    break;
+                case TYPE_BLOB:
+                    program.bindBlob(index, (byte[]) mObjects[i]);
+                    break;
+                default:
+                    program.bindNull(index);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return The arguments as text, for the APIs that only accept string arguments.
+     */
+    public String[] toStringArray() {
+        String[] values = new String[mSize];
+        for (int i = 0; i < mSize; i++) {
+            switch (mTypes[i]) {
+                case TYPE_LONG:
+                    values[i] = String.valueOf(mLongs[i]);
+                    break;
+                case TYPE_DOUBLE:
+                    values[i] = String.valueOf(mDoubles[i]);
+                    break;
+                default:
+                    values[i] = String.valueOf(mObjects[i]);
+                    break;
+            }
+        }
+        return values;
+    }
+}
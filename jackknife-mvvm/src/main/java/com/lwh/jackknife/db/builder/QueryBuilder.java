@@ -32,6 +32,16 @@ public class QueryBuilder {
 
     private static final String SPACE = "";
 
+    /**
+     * Column of a {@link #match(String)} query with the number of matched terms of the row.
+     */
+    public static final String RANK_COLUMN = "fts_rank";
+
+    /**
+     * Column of a {@link #match(String)} query with the snippet of the row.
+     */
+    public static final String SNIPPET_COLUMN = "fts_snippet";
+
     private String[] mColumns;
 
     private String mGroup;
@@ -44,10 +54,34 @@ public class QueryBuilder {
 
     private WhereBuilder mWhereBuilder;
 
+    private String mMatch;
+
+    private boolean mOrderByRank;
+
+    private String[] mSnippet;
+
     private QueryBuilder() {
         mWhereBuilder = WhereBuilder.create();
     }
 
+    /**
+     * Creates a builder with the same settings, changing it does not change this builder. The
+     * where builder is shared.
+     */
+    public QueryBuilder copy() {
+        QueryBuilder builder = new QueryBuilder();
+        builder.mColumns = mColumns;
+        builder.mGroup = mGroup;
+        builder.mHaving = mHaving;
+        builder.mOrder = mOrder;
+        builder.mLimit = mLimit;
+        builder.mWhereBuilder = mWhereBuilder;
+        builder.mMatch = mMatch;
+        builder.mOrderByRank = mOrderByRank;
+        builder.mSnippet = mSnippet;
+        return builder;
+    }
+
     public QueryBuilder where(WhereBuilder builder) {
         mWhereBuilder = builder;
         return this;
@@ -63,7 +97,7 @@ public class QueryBuilder {
         return new QueryBuilder();
     }
 
-    public QueryBuilder columns(String[] columns) {
+    public QueryBuilder columns(String... columns) {
         mColumns = columns;
         return this;
     }
@@ -93,6 +127,37 @@ public class QueryBuilder {
         return this;
     }
 
+    /**
+     * Searches the full text table of the {@link com.lwh.jackknife.db.table.FullText} columns,
+     * the query uses the FTS4 syntax, such as "word*" or "title:word".
+     */
+    public QueryBuilder match(String query) {
+        mMatch = query;
+        return this;
+    }
+
+    /**
+     * Orders a {@link #match(String)} query by the number of matched terms, descending. It is
+     * ignored if {@link #orderBy(String)} is set.
+     */
+    public QueryBuilder orderByRank() {
+        mOrderByRank = true;
+        return this;
+    }
+
+    /**
+     * Adds the {@link #SNIPPET_COLUMN} to a {@link #match(String)} query.
+     *
+     * @param start    The text inserted before a matched term.
+     * @param end      The text inserted after a matched term.
+     * @param ellipsis The text inserted where the column is cut.
+     * @param tokens   The maximum number of tokens of the snippet.
+     */
+    public QueryBuilder snippet(String start, String end, String ellipsis, int tokens) {
+        mSnippet = new String[]{start, end, ellipsis, String.valueOf(tokens)};
+        return this;
+    }
+
     public String build() {
         return mWhereBuilder.build() + (mGroup != null ? mGroup : SPACE) + (mHaving != null ? mHaving : SPACE)
                 + (mOrder != null ? mOrder : SPACE) + (mLimit != null ? mLimit : SPACE);
@@ -121,4 +186,19 @@ public class QueryBuilder {
     public String[] getColumns() {
         return mColumns;
     }
+
+    public String getMatch() {
+        return mMatch;
+    }
+
+    public boolean isOrderByRank() {
+        return mOrderByRank;
+    }
+
+    /**
+     * @return The start, end, ellipsis and tokens arguments of the snippet, or null.
+     */
+    public String[] getSnippet() {
+        return mSnippet;
+    }
 }
@@ -52,21 +52,22 @@ public class WhereBuilder {
 
     private static final String SPACE = "";
 
-    private String mWhereClause;
+    private final StringBuilder mWhereClause = new StringBuilder();
 
-    private Object[] mWhereArgs;
+    private final BindArgs mWhereArgs = new BindArgs();
 
     private WhereBuilder() {
     }
 
     private WhereBuilder(Condition condition) {
-        this.mWhereClause = condition.getSelection();
-        this.mWhereArgs = condition.getSelectionArgs();
+        where(condition);
     }
 
     private WhereBuilder(String whereClause, String[] whereArgs) {
-        this.mWhereClause = whereClause;
-        this.mWhereArgs = whereArgs;
+        if (whereClause != null) {
+            mWhereClause.append(whereClause);
+        }
+        mWhereArgs.addAll(whereArgs);
     }
 
     public static WhereBuilder create() {
@@ -81,26 +82,26 @@ public class WhereBuilder {
         return new WhereBuilder(condition);
     }
 
+    private boolean isEmpty() {
+        return mWhereClause.length() == 0;
+    }
+
     public WhereBuilder and() {
-        if (mWhereClause != null) {
-            mWhereClause += AND;
+        if (!isEmpty()) {
+            mWhereClause.append(AND);
         }
         return this;
     }
 
     public WhereBuilder or() {
-        if (mWhereClause != null) {
-            mWhereClause += OR;
+        if (!isEmpty()) {
+            mWhereClause.append(OR);
         }
         return this;
     }
 
     public WhereBuilder not() {
-        if (mWhereClause != null) {
-            mWhereClause += NOT;
-        } else {
-            mWhereClause = NOT;
-        }
+        mWhereClause.append(NOT);
         return this;
     }
 
@@ -117,77 +118,70 @@ public class WhereBuilder {
     }
 
     public WhereBuilder andNot(String whereClause, Object... whereArgs) {
-        return and(not(whereClause, whereArgs));
+        return and().not(whereClause, whereArgs);
     }
 
     public WhereBuilder orNot(String whereClause, Object... whereArgs) {
-        return or(not(whereClause, whereArgs));
+        return or().not(whereClause, whereArgs);
     }
 
     public WhereBuilder and(WhereBuilder builder) {
-        String selection = builder.getSelection();
-        String[] selectionArgs = builder.getSelectionArgs();
-        return and(selection, new Object[]{selectionArgs});
+        return appendGroup(AND, builder);
     }
 
     public WhereBuilder or(WhereBuilder builder) {
-        String selection = builder.getSelection();
-        String[] selectionArgs = builder.getSelectionArgs();
-        return or(selection, new Object[]{selectionArgs});
+        return appendGroup(OR, builder);
     }
 
     public WhereBuilder not(WhereBuilder builder) {
-        String selection = builder.getSelection();
-        String[] selectionArgs = builder.getSelectionArgs();
-        return not(selection, new Object[]{selectionArgs});
+        if (builder.isEmpty()) {
+            return this;
+        }
+        return not().appendGroup(null, builder);
     }
 
     public WhereBuilder andNot(WhereBuilder builder) {
-        return and(not(builder));
+        return builder.isEmpty() ? this : and().not(builder);
     }
 
     public WhereBuilder orNot(WhereBuilder builder) {
-        return or(not(builder));
+        return builder.isEmpty() ? this : or().not(builder);
     }
 
     public WhereBuilder parenthesesLeft() {
-        if (mWhereClause != null) {
-            mWhereClause += PARENTHESES_LEFT;
-        } else {
-            mWhereClause = PARENTHESES_LEFT;
-        }
+        mWhereClause.append(PARENTHESES_LEFT);
         return this;
     }
 
     public WhereBuilder parenthesesRight() {
-        if (mWhereClause != null) {
-            mWhereClause += PARENTHESES_RIGHT;
+        if (!isEmpty()) {
+            mWhereClause.append(PARENTHESES_RIGHT);
         }
         return this;
     }
 
     public WhereBuilder addWhereEqualTo(String column, Object value) {
-        return append(null, column + EQUAL_HOLDER, value);
+        return append(null, column, EQUAL_HOLDER, value);
     }
 
     public WhereBuilder addWhereNotEqualTo(String column, Object value) {
-        return append(null, column + NOT_EQUAL_HOLDER, value);
+        return append(null, column, NOT_EQUAL_HOLDER, value);
     }
 
     public WhereBuilder addWhereGreaterThan(String column, Object value) {
-        return append(null, column + GREATER_THAN_HOLDER, value);
+        return append(null, column, GREATER_THAN_HOLDER, value);
     }
 
     public WhereBuilder addWhereGreaterThanOrEqualTo(String column, Object value) {
-        return append(null, column + GREATER_THAN_OR_EQUAL_TO_HOLDER, value);
+        return append(null, column, GREATER_THAN_OR_EQUAL_TO_HOLDER, value);
     }
 
     public WhereBuilder addWhereLessThan(String column, Object value) {
-        return append(null, column + LESS_THAN_HOLDER, value);
+        return append(null, column, LESS_THAN_HOLDER, value);
     }
 
     public WhereBuilder addWhereLessThanOrEqualTo(String column, Object value) {
-        return append(null, column + LESS_THAN_OR_EQUAL_TO_HOLDER, value);
+        return append(null, column, LESS_THAN_OR_EQUAL_TO_HOLDER, value);
     }
 
     public WhereBuilder addWhereIn(String column, String... values) {
@@ -195,27 +189,27 @@ public class WhereBuilder {
     }
 
     public WhereBuilder andWhereEqualTo(String column, Object value) {
-        return append(AND, column + EQUAL_HOLDER, value);
+        return append(AND, column, EQUAL_HOLDER, value);
     }
 
     public WhereBuilder andWhereNotEqualTo(String column, Object value) {
-        return append(AND, column + NOT_EQUAL_HOLDER, value);
+        return append(AND, column, NOT_EQUAL_HOLDER, value);
     }
 
     public WhereBuilder andWhereGreatorThan(String column, Object value) {
-        return append(AND, column + GREATER_THAN_HOLDER, value);
+        return append(AND, column, GREATER_THAN_HOLDER, value);
     }
 
     public WhereBuilder andWhereGreatorThanOrEqualTo(String column, Object value) {
-        return append(AND, column + GREATER_THAN_OR_EQUAL_TO_HOLDER, value);
+        return append(AND, column, GREATER_THAN_OR_EQUAL_TO_HOLDER, value);
     }
 
     public WhereBuilder andWhereLessThan(String column, Object value) {
-        return append(AND, column + LESS_THAN_HOLDER, value);
+        return append(AND, column, LESS_THAN_HOLDER, value);
     }
 
     public WhereBuilder andWhereLessThanOrEqualTo(String column, Object value) {
-        return append(AND, column + LESS_THAN_OR_EQUAL_TO_HOLDER, value);
+        return append(AND, column, LESS_THAN_OR_EQUAL_TO_HOLDER, value);
     }
 
     public WhereBuilder andWhereIn(String column, String... values) {
@@ -223,27 +217,27 @@ public class WhereBuilder {
     }
 
     public WhereBuilder orWhereEqualTo(String column, Object value) {
-        return append(OR, column + EQUAL_HOLDER, value);
+        return append(OR, column, EQUAL_HOLDER, value);
     }
 
     public WhereBuilder orWhereNotEqualTo(String column, Object value) {
-        return append(OR, column + NOT_EQUAL_HOLDER, value);
+        return append(OR, column, NOT_EQUAL_HOLDER, value);
     }
 
     public WhereBuilder orWhereGreatorThan(String column, Object value) {
-        return append(OR, column + GREATER_THAN_HOLDER, value);
+        return append(OR, column, GREATER_THAN_HOLDER, value);
     }
 
     public WhereBuilder orWhereGreatorThanOrEqualTo(String column, Object value) {
-        return append(OR, column + GREATER_THAN_OR_EQUAL_TO_HOLDER, value);
+        return append(OR, column, GREATER_THAN_OR_EQUAL_TO_HOLDER, value);
     }
 
     public WhereBuilder orWhereLessThan(String column, Object value) {
-        return append(OR, column + LESS_THAN_HOLDER, value);
+        return append(OR, column, LESS_THAN_HOLDER, value);
     }
 
     public WhereBuilder orWhereLessThanOrEqualTo(String column, Object value) {
-        return append(OR, column + LESS_THAN_OR_EQUAL_TO_HOLDER, value);
+        return append(OR, column, LESS_THAN_OR_EQUAL_TO_HOLDER, value);
     }
 
     public WhereBuilder orWhereIn(String column, String... values) {
@@ -258,56 +252,78 @@ public class WhereBuilder {
         return tempValues;
     }
 
-    private WhereBuilder append(String connect, String whereClause, Object... whereArgs) {
-        if (mWhereClause == null) {
-            mWhereClause = whereClause;
-            mWhereArgs = whereArgs;
-        } else {
-            if (connect != null) {
-                mWhereClause += connect;
-            }
-            this.mWhereClause += whereClause;
-            if (mWhereArgs == null) {
-                mWhereArgs = whereArgs;
-            } else {
-                Object[] tempArgs = new Object[mWhereArgs.length + whereArgs.length];
-                System.arraycopy(mWhereArgs, 0, tempArgs, 0, mWhereArgs.length);
-                System.arraycopy(whereArgs, 0, tempArgs, mWhereArgs.length, whereArgs.length);
-                mWhereArgs = tempArgs;
-            }
+    private WhereBuilder appendConnect(String connect) {
+        if (connect != null && !isEmpty()) {
+            mWhereClause.append(connect);
         }
         return this;
     }
 
-    private WhereBuilder appendWhereIn(String connect, String column, String[] values) {
-        String whereIn = buildWhereIn(column, values.length);
-        return append(connect, whereIn, new Object[]{values});
+    private WhereBuilder append(String connect, String whereClause, Object... whereArgs) {
+        appendConnect(connect);
+        mWhereClause.append(whereClause);
+        mWhereArgs.addAll(whereArgs);
+        return this;
+    }
+
+    private WhereBuilder append(String connect, String column, String holder, Object value) {
+        appendConnect(connect);
+        mWhereClause.append(column).append(holder);
+        mWhereArgs.add(value);
+        return this;
     }
 
-    private String buildWhereIn(String column, int num) {
-        StringBuilder sb = new StringBuilder(column).append(SPACE).append(IN).append(PARENTHESES_LEFT)
-                .append(HOLDER);
-        for (int i = 0; i < num - 1; i++) {
-            sb.append(COMMA_HOLDER);
+    /**
+     * Appends the clause of the builder in parentheses, with its arguments in their types.
+     */
+    private WhereBuilder appendGroup(String connect, WhereBuilder builder) {
+        if (builder.isEmpty()) {
+            return this;
         }
-        return sb.append(PARENTHESES_RIGHT).toString();
+        appendConnect(connect);
+        mWhereClause.append(PARENTHESES_LEFT).append(builder.mWhereClause)
+                .append(PARENTHESES_RIGHT);
+        mWhereArgs.addAll(builder.mWhereArgs);
+        return this;
+    }
+
+    private WhereBuilder appendWhereIn(String connect, String column, String[] values) {
+        appendConnect(connect);
+        mWhereClause.append(column).append(SPACE).append(IN).append(PARENTHESES_LEFT);
+        for (int i = 0; i < values.length; i++) {
+            mWhereClause.append(i == 0 ? HOLDER : COMMA_HOLDER);
+            mWhereArgs.addString(values[i]);
+        }
+        mWhereClause.append(PARENTHESES_RIGHT);
+        return this;
     }
 
     public String build() {
-        return mWhereClause != null ? WHERE + mWhereClause : SPACE;
+        return !isEmpty() ? WHERE + mWhereClause : SPACE;
     }
 
     public String getSelection() {
-        return mWhereClause;
+        return !isEmpty() ? mWhereClause.toString() : null;
     }
 
     public String[] getSelectionArgs() {
-        return mWhereArgs != null ? toStringArgs(mWhereArgs) : null;
+        return mWhereArgs.size() > 0 ? mWhereArgs.toStringArray() : null;
+    }
+
+    /**
+     * @return The arguments in their types, to be bound by {@link BindArgs#bindTo}.
+     */
+    public BindArgs getBindArgs() {
+        return mWhereArgs;
     }
 
     public WhereBuilder where(Condition condition) {
-        mWhereClause = condition.getSelection();
-        mWhereArgs = condition.getSelectionArgs();
+        mWhereClause.setLength(0);
+        mWhereArgs.clear();
+        if (condition.getSelection() != null) {
+            mWhereClause.append(condition.getSelection());
+        }
+        mWhereArgs.addAll(condition.getSelectionArgs());
         return this;
     }
 }
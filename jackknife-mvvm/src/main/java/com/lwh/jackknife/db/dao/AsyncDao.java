@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.dao;
+
+import com.lwh.jackknife.db.DatabaseExecutor;
+import com.lwh.jackknife.db.OrmTable;
+import com.lwh.jackknife.db.Transaction;
+import com.lwh.jackknife.db.builder.QueryBuilder;
+import com.lwh.jackknife.db.builder.WhereBuilder;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous facade of a {@link Dao}, the operations run on the {@link DatabaseExecutor} and
+ * the results are delivered to the main thread. Every method returns a {@link Future} that can
+ * be used to cancel the operation before it runs, or to wait for it. The writes of a single
+ * statement are grouped with the ones queued behind them into one transaction, the list writes
+ * run in their own transaction, and {@link #runInTransaction} commits several operations at once.
+ */
+public class AsyncDao<T extends OrmTable> {
+
+    private final Dao<T> mDao;
+    private final DatabaseExecutor mExecutor;
+
+    public AsyncDao(Dao<T> dao) {
+        this(dao, DatabaseExecutor.getInstance());
+    }
+
+    public AsyncDao(Dao<T> dao, DatabaseExecutor executor) {
+        this.mDao = dao;
+        this.mExecutor = executor;
+    }
+
+    public Dao<T> getDao() {
+        return mDao;
+    }
+
+    public Future<Boolean> insert(final T bean, DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitGroupedWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDao.insert(bean);
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> insert(final List<T> beans,
+                                  DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDao.insert(beans);
+            }
+        }, callback);
+    }
+
+    public Future<long[]> insertBatch(final List<T> beans,
+                                      DatabaseExecutor.Callback<long[]> callback) {
+        return mExecutor.submitWrite(new Callable<long[]>() {
+            @Override
+            public long[] call() {
+                return mDao.insertBatch(beans);
+            }
+        }, callback);
+    }
+
+    public Future<Integer> upsert(final List<T> beans, final ConflictStrategy strategy,
+                                  DatabaseExecutor.Callback<Integer> callback,
+                                  final String... updateColumns) {
+        return mExecutor.submitWrite(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return mDao.upsert(beans, strategy, updateColumns);
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> delete(final WhereBuilder builder,
+                                  DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitGroupedWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDao.delete(builder);
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> delete(final T bean, DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitGroupedWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDao.delete(bean);
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> deleteAll(DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitGroupedWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDao.deleteAll();
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> update(final WhereBuilder builder, final T newBean,
+                                  DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitGroupedWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDao.update(builder, newBean);
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> update(final T bean, DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitGroupedWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDao.update(bean);
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> updateAll(final T newBean,
+                                     DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitGroupedWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDao.updateAll(newBean);
+            }
+        }, callback);
+    }
+
+    /**
+     * Runs several operations in one transaction on the writing thread, they are committed
+     * together only if the worker returns true.
+     */
+    public Future<Boolean> runInTransaction(final Transaction.Worker worker,
+                                            DatabaseExecutor.Callback<Boolean> callback) {
+        return mExecutor.submitWrite(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Transaction.execute(worker);
+            }
+        }, callback);
+    }
+
+    public Future<List<T>> selectAll(DatabaseExecutor.Callback<List<T>> callback) {
+        return mExecutor.submitRead(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return mDao.selectAll();
+            }
+        }, callback);
+    }
+
+    public Future<List<T>> select(final QueryBuilder builder,
+                                  DatabaseExecutor.Callback<List<T>> callback) {
+        return mExecutor.submitRead(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return mDao.select(builder);
+            }
+        }, callback);
+    }
+
+    public Future<T> selectOne(final QueryBuilder builder, DatabaseExecutor.Callback<T> callback) {
+        return mExecutor.submitRead(new Callable<T>() {
+            @Override
+            public T call() {
+                return mDao.selectOne(builder);
+            }
+        }, callback);
+    }
+
+    public Future<Long> selectCount(final QueryBuilder builder,
+                                    DatabaseExecutor.Callback<Long> callback) {
+        return mExecutor.submitRead(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return mDao.selectCount(builder);
+            }
+        }, callback);
+    }
+}
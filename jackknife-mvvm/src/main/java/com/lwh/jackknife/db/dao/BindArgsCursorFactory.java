@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+import com.lwh.jackknife.db.builder.BindArgs;
+
+/**
+ * Binds the typed arguments to the query before the cursor is created, because
+ * {@link SQLiteDatabase#rawQuery(String, String[])} only accepts string arguments.
+ */
+/* package */ class BindArgsCursorFactory implements SQLiteDatabase.CursorFactory {
+
+    private final BindArgs mBindArgs;
+
+    /* package */ BindArgsCursorFactory(BindArgs bindArgs) {
+        this.mBindArgs = bindArgs;
+    }
+
+    @Override
+    public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable,
+                            SQLiteQuery query) {
+        mBindArgs.bindTo(query, 1);
+        return new SQLiteCursor(driver, editTable, query);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.dao;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Iterates the rows of a query lazily, each row is mapped to a bean only when it is reached. The
+ * iterator is single-use, so {@link #iterator()} returns itself and it can be used in a for-each
+ * loop directly. The cursor is released when the last row is reached, call {@link #close()} if the
+ * iteration stops earlier.
+ */
+public abstract class CloseableIterator<T> implements Iterator<T>, Iterable<T>, Closeable {
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public abstract void close();
+}
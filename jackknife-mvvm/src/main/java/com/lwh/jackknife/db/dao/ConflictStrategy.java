@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.dao;
+
+/**
+ * What {@link Dao#upsert(java.util.List, ConflictStrategy, String...)} does with a row whose
+ * primary key or unique column already exists.
+ */
+public enum ConflictStrategy {
+
+    /**
+     * Deletes the existing row and inserts the new one, INSERT OR REPLACE.
+     */
+    REPLACE,
+
+    /**
+     * Keeps the existing row, INSERT OR IGNORE.
+     */
+    IGNORE,
+
+    /**
+     * Updates the columns of the existing row, it keeps its row ID and the columns not updated.
+     */
+    UPDATE
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.dao;
+
+import android.database.Cursor;
+
+import com.lwh.jackknife.db.OrmTable;
+import com.lwh.jackknife.db.table.TableInfo;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.NoSuchElementException;
+
+/**
+ * Maps the rows of a cursor to beans one by one.
+ */
+public class CursorIterator<T extends OrmTable> extends CloseableIterator<T> {
+
+    private final TableInfo<T> mTableInfo;
+    private Cursor mCursor;
+    private int[] mColumnIndexes;
+    private T mNext;
+
+    /* package */ CursorIterator(TableInfo<T> tableInfo, Cursor cursor) {
+        this.mTableInfo = tableInfo;
+        this.mCursor = cursor;
+        this.mColumnIndexes = tableInfo.getColumnIndexes(cursor);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (mNext == null && mCursor != null) {
+            if (!mCursor.moveToNext()) {
+                close();
+                break;
+            }
+            try {
+                mNext = mTableInfo.fromCursor(mCursor, mColumnIndexes);
+            } catch (InstantiationException e) {
+                e.printStackTrace();
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            }
+        }
+        return mNext != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T next = mNext;
+        mNext = null;
+        return next;
+    }
+
+    @Override
+    public void close() {
+        if (mCursor != null) {
+            mCursor.close();
+            mCursor = null;
+        }
+    }
+}
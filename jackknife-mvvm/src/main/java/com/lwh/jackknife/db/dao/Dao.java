@@ -34,6 +34,19 @@ public interface Dao<T extends OrmTable> {
 
     boolean insertSafety(List<T> beans, SQLiteDatabase db);
 
+    long[] insertBatch(List<T> beans);
+
+    long[] insertBatch(List<T> beans, int batchSize);
+
+    long[] insertBatchSafety(List<T> beans, int batchSize, SQLiteDatabase db);
+
+    boolean upsert(T bean, ConflictStrategy strategy, String... updateColumns);
+
+    int upsert(List<T> beans, ConflictStrategy strategy, String... updateColumns);
+
+    int upsertSafety(List<T> beans, ConflictStrategy strategy, String[] updateColumns,
+                     SQLiteDatabase db);
+
     boolean delete(WhereBuilder builder);
 
     boolean delete(T bean);
@@ -58,10 +71,36 @@ public interface Dao<T extends OrmTable> {
 
     List<T> select(QueryBuilder builder);
 
+    ObservableQuery<T> observe(QueryBuilder builder);
+
+    CloseableIterator<T> iterateAll();
+
+    CloseableIterator<T> iterate(QueryBuilder builder);
+
+    CloseableIterator<T> iterateByPage(WhereBuilder builder, int pageSize);
+
+    T selectById(Object id);
+
     T selectOne();
 
     T selectOne(QueryBuilder builder);
 
+    <R> List<R> select(QueryBuilder builder, RowMapper<R> mapper);
+
+    long[] selectLongColumn(String column, QueryBuilder builder);
+
+    double[] selectDoubleColumn(String column, QueryBuilder builder);
+
+    String[] selectStringColumn(String column, QueryBuilder builder);
+
+    double sum(String column, QueryBuilder builder);
+
+    double avg(String column, QueryBuilder builder);
+
+    String min(String column, QueryBuilder builder);
+
+    String max(String column, QueryBuilder builder);
+
     long selectCount();
 
     long selectCount(QueryBuilder builder);
@@ -16,7 +16,10 @@
 
 package com.lwh.jackknife.db.dao;
 
+import com.lwh.jackknife.db.OrmLog;
 import com.lwh.jackknife.db.OrmTable;
+import com.lwh.jackknife.db.table.OrmBinder;
+import com.lwh.jackknife.db.table.TableInfo;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -24,24 +27,58 @@ import java.util.Map;
 public class DaoFactory {
 
     private static Map<Class<? extends OrmTable>, OrmDao> sDaoMap = new HashMap<>();
+    private static Map<Class<? extends OrmTable>, TableInfo> sTableInfoMap = new HashMap<>();
     private static Object sLock1 = new Object();
     private static Object sLock2 = new Object();
     private static Object sLock3 = new Object();
 
     public static <T extends OrmTable> void removeDao(Class<T> beanClass) {
         synchronized (DaoFactory.class) {
-            if (sDaoMap.containsKey(beanClass)) {
-                sDaoMap.remove(beanClass);
+            OrmDao dao = sDaoMap.remove(beanClass);
+            if (dao != null) {
+                // Unregisters the observer of the identity cache.
+                dao.setIdentityCacheSize(0);
+            }
+        }
+    }
+
+    /**
+     * Gets the metadata of the table class, it is resolved only once and kept for the whole
+     * process, even if the dao is removed. The binder generated by jackknife-compiler is used if
+     * it exists.
+     */
+    public static <T extends OrmTable> TableInfo<T> getTableInfo(Class<T> beanClass) {
+        synchronized (sTableInfoMap) {
+            TableInfo<T> tableInfo = sTableInfoMap.get(beanClass);
+            if (tableInfo == null) {
+                tableInfo = TableInfo.create(beanClass, findBinder(beanClass));
+                sTableInfoMap.put(beanClass, tableInfo);
             }
+            return tableInfo;
         }
     }
 
+    private static <T extends OrmTable> OrmBinder<T> findBinder(Class<T> beanClass) {
+        try {
+            Class<?> binderClass = Class.forName(beanClass.getName() + OrmBinder.SUFFIX, true,
+                    beanClass.getClassLoader());
+            return (OrmBinder<T>) binderClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            OrmLog.d("No binder generated for " + beanClass.getName() + ", use reflection.");
+        } catch (InstantiationException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
     public static <T extends OrmTable> OrmDao<T> getDao(Class<T> beanClass) {
         synchronized (sLock1) {
             if (sDaoMap.containsKey(beanClass)) {
                 return sDaoMap.get(beanClass);
             } else {
-                OrmDao<T> dao = new OrmDao<>(beanClass);
+                OrmDao<T> dao = new OrmDao<>(getTableInfo(beanClass));
                 sDaoMap.put(beanClass, dao);
                 return dao;
             }
@@ -64,4 +101,11 @@ public class DaoFactory {
             return (OrmDao<T>) getDao(bean.getClass());
         }
     }
+
+    /**
+     * Gets a dao whose operations run on the {@link com.lwh.jackknife.db.DatabaseExecutor}.
+     */
+    public static <T extends OrmTable> AsyncDao<T> getAsyncDao(Class<T> beanClass) {
+        return new AsyncDao<>(getDao(beanClass));
+    }
 }
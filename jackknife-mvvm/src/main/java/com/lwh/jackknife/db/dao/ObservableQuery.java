@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.dao;
+
+import com.lwh.jackknife.db.DatabaseExecutor;
+import com.lwh.jackknife.db.InvalidationTracker;
+import com.lwh.jackknife.db.OrmLog;
+import com.lwh.jackknife.db.OrmTable;
+import com.lwh.jackknife.db.builder.QueryBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A query that is run again on the {@link DatabaseExecutor} after each commit that wrote its
+ * table, while it has subscribers. Several invalidations that arrive before the query runs
+ * again are coalesced into one run. An invalidation while the query is running starts another
+ * run, each run is numbered and a result older than the one already delivered is dropped.
+ */
+public class ObservableQuery<T extends OrmTable> implements InvalidationTracker.Observer {
+
+    private final Dao<T> mDao;
+    private final QueryBuilder mBuilder;
+    private final String mTableName;
+    private final List<Subscriber<T>> mSubscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean mQueued = new AtomicBoolean();
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    /**
+     * The generation of the last delivered result, only accessed on the main thread.
+     */
+    private int mDeliveredGeneration;
+    private volatile Future<List<T>> mFuture;
+    private List<T> mResult;
+
+    public interface Subscriber<T> {
+
+        /**
+         * Called on the main thread with the previous and the new result, so that they can be
+         * compared with DiffUtil. The previous result is empty on the first call.
+         */
+        void onChanged(List<T> oldResult, List<T> newResult);
+    }
+
+    /* package */ ObservableQuery(Dao<T> dao, String tableName, QueryBuilder builder) {
+        this.mDao = dao;
+        this.mTableName = tableName;
+        this.mBuilder = builder;
+    }
+
+    /**
+     * Adds a subscriber, the first one starts observing the table. Must be called on the main
+     * thread.
+     */
+    public void subscribe(Subscriber<T> subscriber) {
+        mSubscribers.add(subscriber);
+        if (mSubscribers.size() == 1) {
+            InvalidationTracker.getInstance().addObserver(this, mTableName);
+            requery();
+        } else if (mResult != null) {
+            subscriber.onChanged(Collections.<T>emptyList(), mResult);
+        }
+    }
+
+    /**
+     * Removes a subscriber, the last one stops observing the table. Must be called on the main
+     * thread.
+     */
+    public void unsubscribe(Subscriber<T> subscriber) {
+        mSubscribers.remove(subscriber);
+        if (mSubscribers.isEmpty()) {
+            InvalidationTracker.getInstance().removeObserver(this);
+            if (mFuture != null) {
+                mFuture.cancel(false);
+                mFuture = null;
+            }
+            mQueued.set(false);
+            mResult = null;
+        }
+    }
+
+    /**
+     * @return The last delivered result, or null if the query has not completed yet.
+     */
+    public List<T> getResult() {
+        return mResult;
+    }
+
+    @Override
+    public void onInvalidated(Set<String> tables) {
+        requery();
+    }
+
+    private void requery() {
+        if (!mQueued.compareAndSet(false, true)) {
+            return;
+        }
+        final int generation = mGeneration.incrementAndGet();
+        mFuture = DatabaseExecutor.getInstance().submitRead(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                mQueued.set(false);
+                return mDao.select(mBuilder);
+            }
+        }, new DatabaseExecutor.Callback<List<T>>() {
+            @Override
+            public void onSuccess(List<T> result) {
+                if (mSubscribers.isEmpty() || generation <= mDeliveredGeneration) {
+                    return;
+                }
+                mDeliveredGeneration = generation;
+                List<T> oldResult = mResult != null ? mResult : Collections.<T>emptyList();
+                mResult = result;
+                for (Subscriber<T> subscriber : mSubscribers) {
+                    subscriber.onChanged(oldResult, result);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                OrmLog.e("Observable query of " + mTableName + " failed: " + e);
+            }
+        });
+    }
+}
@@ -16,142 +16,230 @@
 
 package com.lwh.jackknife.db.dao;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 
-import com.lwh.jackknife.db.Condition;
+import com.lwh.jackknife.cache.LruCache;
+import com.lwh.jackknife.db.InvalidationTracker;
 import com.lwh.jackknife.db.Orm;
+import com.lwh.jackknife.db.OrmLog;
 import com.lwh.jackknife.db.OrmTable;
 import com.lwh.jackknife.db.PrimaryKeyEntity;
-import com.lwh.jackknife.db.TableManager;
+import com.lwh.jackknife.db.QueryPlanChecker;
+import com.lwh.jackknife.db.StatementCache;
+import com.lwh.jackknife.db.builder.BindArgs;
 import com.lwh.jackknife.db.builder.QueryBuilder;
 import com.lwh.jackknife.db.builder.WhereBuilder;
-import com.lwh.jackknife.db.constraint.AssignType;
-import com.lwh.jackknife.db.constraint.PrimaryKey;
-import com.lwh.jackknife.db.table.Column;
-import com.lwh.jackknife.db.table.Ignore;
+import com.lwh.jackknife.db.exception.ConstraintException;
+import com.lwh.jackknife.db.table.ColumnInfo;
+import com.lwh.jackknife.db.table.IndexInfo;
+import com.lwh.jackknife.db.table.TableInfo;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class OrmDao<T extends OrmTable> implements Dao<T> {
 
-    private Class<T> mBeanClass;
+    /**
+     * Number of rows inserted in one transaction by {@link #insertBatch(List)}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private TableInfo<T> mTableInfo;
     private SQLiteDatabase mDatabase;
+    private String mInsertSql;
+    private String mUpdateSql;
+    private volatile LruCache<String, T> mIdentityCache;
+
+    /**
+     * Guards the identity cache against a lookup that read a row before a write committed and
+     * would put the stale bean after the write evicted it.
+     */
+    private final Object mIdentityLock = new Object();
+    private long mIdentityVersion;
+    private InvalidationTracker.Observer mIdentityObserver;
+    private final ThreadLocal<PendingEvictions> mPendingEvictions =
+            new ThreadLocal<PendingEvictions>() {
+                @Override
+                protected PendingEvictions initialValue() {
+                    return new PendingEvictions();
+                }
+            };
 
-    /* package */ OrmDao(Class<T> beanClass) {
-        this.mBeanClass = beanClass;
-        mDatabase = Orm.getDatabase();
-    }
+    /**
+     * The keys written by the current thread that are evicted when its writes are committed.
+     */
+    private static class PendingEvictions {
 
-    private boolean isAssignableFromBoolean(Class<?> fieldType) {
-        return boolean.class.isAssignableFrom(fieldType) ||
-                Boolean.class.isAssignableFrom(fieldType);
-    }
+        final Set<String> mKeys = new HashSet<>();
+        boolean mAll;
 
-    private boolean isAssignableFromByte(Class<?> fieldType) {
-        return byte.class.isAssignableFrom(fieldType) || Byte.class.isAssignableFrom(fieldType);
+        void reset() {
+            mKeys.clear();
+            mAll = false;
+        }
     }
 
-    private boolean isAssignableFromShort(Class<?> fieldType) {
-        return short.class.isAssignableFrom(fieldType) || Short.class.isAssignableFrom(fieldType);
+    /* package */ OrmDao(TableInfo<T> tableInfo) {
+        this.mTableInfo = tableInfo;
+        mDatabase = Orm.getDatabase();
     }
 
-    private boolean isAssignableFromInteger(Class<?> fieldType) {
-        return int.class.isAssignableFrom(fieldType) || Integer.class.isAssignableFrom(fieldType);
+    public TableInfo<T> getTableInfo() {
+        return mTableInfo;
+    }
+
+    /**
+     * Keeps up to maxSize beans loaded by {@link #selectById(Object)}, so that the same bean is
+     * returned without a query until it is written through this dao. The cached beans are shared,
+     * they must not be modified without being updated. The written beans are evicted when the
+     * write is committed, and the whole cache is cleared after the writes that can not be traced
+     * to a key, such as a REPLACE, a bulk update or raw SQL through {@link Orm#execSQL}. The writes
+     * made by another process are not seen by the cache.
+     *
+     * @param maxSize 0 to disable the cache, which is the default.
+     */
+    public void setIdentityCacheSize(int maxSize) {
+        synchronized (mIdentityLock) {
+            mIdentityVersion++;
+            mIdentityCache = maxSize > 0 ? new LruCache<String, T>(maxSize) : null;
+            if (maxSize > 0 && mIdentityObserver == null) {
+                mIdentityObserver = new InvalidationTracker.Observer() {
+                    @Override
+                    public void onInvalidated(Set<String> tables) {
+                        evictCommitted();
+                    }
+                };
+                InvalidationTracker.getInstance().addObserver(mIdentityObserver,
+                        mTableInfo.getTableName());
+            } else if (maxSize <= 0 && mIdentityObserver != null) {
+                InvalidationTracker.getInstance().removeObserver(mIdentityObserver);
+                mIdentityObserver = null;
+            }
+        }
     }
 
-    private boolean isAssignableFromLong(Class<?> fieldType) {
-        return long.class.isAssignableFrom(fieldType) || Long.class.isAssignableFrom(fieldType);
+    public void clearIdentityCache() {
+        synchronized (mIdentityLock) {
+            mIdentityVersion++;
+            LruCache<String, T> cache = mIdentityCache;
+            if (cache != null) {
+                cache.clear();
+            }
+        }
     }
 
-    private boolean isAssignableFromFloat(Class<?> fieldType) {
-        return float.class.isAssignableFrom(fieldType) || Float.class.isAssignableFrom(fieldType);
+    /**
+     * Called on the writing thread after its writes to the table were committed.
+     */
+    private void evictCommitted() {
+        PendingEvictions pending = mPendingEvictions.get();
+        synchronized (mIdentityLock) {
+            mIdentityVersion++;
+            LruCache<String, T> cache = mIdentityCache;
+            if (cache != null) {
+                if (pending.mAll || pending.mKeys.isEmpty()) {
+                    // A write that recorded no key, such as raw SQL.
+                    cache.clear();
+                } else {
+                    for (String key : pending.mKeys) {
+                        cache.remove(key);
+                    }
+                }
+            }
+        }
+        pending.reset();
     }
 
-    private boolean isAssignableFromDouble(Class<?> fieldType) {
-        return double.class.isAssignableFrom(fieldType) || Double.class.isAssignableFrom(fieldType);
+    private static String toCacheKey(Object id) {
+        return String.valueOf(id);
     }
 
-    private boolean isAssignableFromCharacter(Class<?> fieldType) {
-        return char.class.isAssignableFrom(fieldType) || Character.class.isAssignableFrom(fieldType);
+    /**
+     * Gets the typed primary key value of the bean, or the value given by
+     * {@link OrmTable#getPrimaryKey()} if the table class does not declare a primary key.
+     */
+    private Object getPrimaryKeyValue(T bean) {
+        ColumnInfo primaryKey = mTableInfo.getPrimaryKey();
+        if (primaryKey != null) {
+            try {
+                return primaryKey.getValue(bean);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            }
+        }
+        PrimaryKeyEntity entity = bean.getPrimaryKey();
+        return entity != null ? entity.getValue() : null;
     }
 
-    private boolean isAssignableFromCharSequence(Class<?> fieldType) {
-        return CharSequence.class.isAssignableFrom(fieldType);
+    private String getPrimaryKeyName(T bean) {
+        ColumnInfo primaryKey = mTableInfo.getPrimaryKey();
+        return primaryKey != null ? primaryKey.getName() : bean.getPrimaryKey().getName();
     }
 
-    private boolean isAssignableFromClass(Class<?> fieldType) {
-        return Class.class.isAssignableFrom(fieldType);
+    /**
+     * Marks the bean to be evicted from the identity cache when the write is committed.
+     */
+    private void evictOnCommit(T bean) {
+        if (mIdentityCache != null) {
+            mPendingEvictions.get().mKeys.add(toCacheKey(getPrimaryKeyValue(bean)));
+        }
     }
 
-    private ContentValues getContentValues(T bean) {
-        ContentValues values = new ContentValues();
-        Field[] fields = mBeanClass.getDeclaredFields();
-        for (Field field : fields) {
-            field.setAccessible(true);
-            Ignore ignore = field.getAnnotation(Ignore.class);
-            Column column = field.getAnnotation(Column.class);
-            PrimaryKey primaryKey = field.getAnnotation(PrimaryKey.class);
-            if (ignore != null || (field.getModifiers() & Modifier.STATIC) != 0) {
-                continue;
-            }
-            if (primaryKey != null && primaryKey.value() == AssignType.AUTO_INCREMENT) {
-                continue;
-            }
-            String columnName;
-            if (column != null) {
-                columnName = column.value();
-            } else {
-                columnName = TableManager.getInstance().generateColumnName(field.getName());
-            }
-            Class<?> fieldType = field.getType();
-            try {
-                if (isAssignableFromCharSequence(fieldType)) {
-                    values.put(columnName, String.valueOf(field.get(bean)));
-                } else if (isAssignableFromBoolean(fieldType)) {
-                    values.put(columnName, field.getBoolean(bean));
-                } else if (isAssignableFromByte(fieldType)) {
-                    values.put(columnName, field.getByte(bean));
-                } else if (isAssignableFromShort(fieldType)) {
-                    values.put(columnName, field.getShort(bean));
-                } else if (isAssignableFromInteger(fieldType)) {
-                    values.put(columnName, field.getInt(bean));
-                } else if (isAssignableFromLong(fieldType)) {
-                    values.put(columnName, field.getLong(bean));
-                } else if (isAssignableFromFloat(fieldType)) {
-                    values.put(columnName, field.getFloat(bean));
-                } else if (isAssignableFromDouble(fieldType)) {
-                    values.put(columnName, field.getDouble(bean));
-                } else if (Class.class.isAssignableFrom(fieldType)) {
-                    values.put(columnName, ((Class) field.get(bean)).getName());
-                }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            }
+    /**
+     * Marks the identity cache to be cleared when the write is committed.
+     */
+    private void clearOnCommit() {
+        if (mIdentityCache != null) {
+            mPendingEvictions.get().mAll = true;
         }
-        return values;
     }
 
-    private String getColumnHack() {
-        StringBuilder sb = new StringBuilder();
-        Field[] fields = mBeanClass.getDeclaredFields();
-        for (Field field : fields) {
-            field.setAccessible(true);
-            Ignore ignore = field.getAnnotation(Ignore.class);
-            PrimaryKey primaryKey = field.getAnnotation(PrimaryKey.class);
-            if (ignore == null && (primaryKey == null ||
-                    (primaryKey != null && primaryKey.value() == AssignType.BY_MYSELF))) {
-                String name = field.getName();
-                sb.append(name).append(",");
+    /**
+     * Loads a bean by its primary key, through the identity cache if it is enabled.
+     *
+     * @return The bean, or null if no row has the key.
+     */
+    @Override
+    public T selectById(Object id) {
+        ColumnInfo primaryKey = mTableInfo.getPrimaryKey();
+        if (primaryKey == null) {
+            throw new ConstraintException("Lack valid primary key.");
+        }
+        LruCache<String, T> cache;
+        long version;
+        synchronized (mIdentityLock) {
+            cache = mIdentityCache;
+            version = mIdentityVersion;
+        }
+        String key = toCacheKey(id);
+        if (cache != null) {
+            T bean = cache.get(key);
+            if (bean != null) {
+                return bean;
             }
         }
-        return sb.substring(0, sb.length() - 2);
+        String tableName = mTableInfo.getTableName();
+        String sql = "SELECT * FROM " + tableName + " WHERE " + primaryKey.getName() + "=? LIMIT 1";
+        BindArgs args = new BindArgs();
+        args.add(id);
+        T bean = getFirstResult(rawQuery(Orm.getReadableDatabase(), sql, args, tableName));
+        if (cache != null && bean != null) {
+            synchronized (mIdentityLock) {
+                // A write committed during the query, the row may be stale.
+                if (version == mIdentityVersion) {
+                    cache.put(key, bean);
+                }
+            }
+        }
+        return bean;
     }
 
     @Override
@@ -166,22 +254,355 @@ public class OrmDao<T extends OrmTable> implements Dao<T> {
 
     @Override
     public boolean insertSafety(List<T> beans, SQLiteDatabase db) {
-        int count = 0;
-        for (T bean : beans) {
-            boolean isOk = insertSafety(bean, db);
-            if (isOk) {
-                count++;
+        long[] rowIds = insertBatchSafety(beans, DEFAULT_BATCH_SIZE, db);
+        for (long rowId : rowIds) {
+            if (rowId == -1) {
+                return false;
             }
         }
-        return count == beans.size();
+        return true;
+    }
+
+    private String getInsertSql() {
+        if (mInsertSql == null) {
+            mInsertSql = buildInsertSql("INSERT INTO ");
+        }
+        return mInsertSql;
+    }
+
+    private String buildInsertSql(String verb) {
+        String[] columns = mTableInfo.getInsertableColumnNames();
+        StringBuilder sb = new StringBuilder(verb).append(mTableInfo.getTableName());
+        if (columns.length == 0) {
+            sb.append(" DEFAULT VALUES");
+        } else {
+            sb.append("(");
+            for (int i = 0; i < columns.length; i++) {
+                sb.append(i > 0 ? "," : "").append(columns[i]);
+            }
+            sb.append(") VALUES (");
+            for (int i = 0; i < columns.length; i++) {
+                sb.append(i > 0 ? ",?" : "?");
+            }
+            sb.append(")");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public long[] insertBatch(List<T> beans) {
+        return insertBatchSafety(beans, DEFAULT_BATCH_SIZE, mDatabase);
+    }
+
+    @Override
+    public long[] insertBatch(List<T> beans, int batchSize) {
+        return insertBatchSafety(beans, batchSize, mDatabase);
+    }
+
+    /**
+     * Inserts the beans through one compiled statement, every batchSize rows are committed in a
+     * transaction.
+     *
+     * @return The row ID of each bean, -1 if the bean failed to be inserted.
+     */
+    @Override
+    public long[] insertBatchSafety(List<T> beans, int batchSize, SQLiteDatabase db) {
+        long[] rowIds = new long[beans.size()];
+        if (beans.isEmpty()) {
+            return rowIds;
+        }
+        if (batchSize <= 0) {
+            batchSize = DEFAULT_BATCH_SIZE;
+        }
+        String sql = getInsertSql();
+        StatementCache cache = Orm.getStatementCache();
+        SQLiteStatement statement = cache.acquire(db, sql);
+        try {
+            int start = 0;
+            while (start < rowIds.length) {
+                int end = Math.min(start + batchSize, rowIds.length);
+                db.beginTransaction();
+                try {
+                    for (int i = start; i < end; i++) {
+                        statement.clearBindings();
+                        mTableInfo.bind(statement, beans.get(i));
+                        evictOnCommit(beans.get(i));
+                        try {
+                            rowIds[i] = statement.executeInsert();
+                        } catch (SQLiteException e) {
+                            OrmLog.e(e.getMessage());
+                            rowIds[i] = -1;
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                start = end;
+            }
+        } finally {
+            cache.release(db, sql, statement);
+            InvalidationTracker.getInstance().notifyChanged(db, mTableInfo.getTableName());
+        }
+        return rowIds;
     }
 
     @Override
     public boolean insertSafety(T bean, SQLiteDatabase db) {
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        ContentValues contentValues = getContentValues(bean);
-        return db.insert(tableName, getColumnHack(), contentValues) > 0;
+        String sql = getInsertSql();
+        StatementCache cache = Orm.getStatementCache();
+        SQLiteStatement statement = cache.acquire(db, sql);
+        try {
+            mTableInfo.bind(statement, bean);
+            evictOnCommit(bean);
+            boolean isOk = statement.executeInsert() > 0;
+            if (isOk) {
+                InvalidationTracker.getInstance().notifyChanged(db, mTableInfo.getTableName());
+            }
+            return isOk;
+        } catch (SQLiteException e) {
+            OrmLog.e(e.getMessage());
+            return false;
+        } finally {
+            cache.release(db, sql, statement);
+        }
+    }
+
+    @Override
+    public boolean upsert(T bean, ConflictStrategy strategy, String... updateColumns) {
+        List<T> beans = new ArrayList<>(1);
+        beans.add(bean);
+        return upsertSafety(beans, strategy, updateColumns, mDatabase) > 0;
+    }
+
+    @Override
+    public int upsert(List<T> beans, ConflictStrategy strategy, String... updateColumns) {
+        return upsertSafety(beans, strategy, updateColumns, mDatabase);
+    }
+
+    /**
+     * Inserts the beans, the rows whose primary key, {@link com.lwh.jackknife.db.constraint.Unique}
+     * column or unique {@link com.lwh.jackknife.db.table.Index} already exists are resolved by the
+     * strategy. With {@link ConflictStrategy#UPDATE}, a row that can not be inserted is updated
+     * through the first unique key that matches an existing row: the primary key if it is assigned
+     * by the bean, then the unique columns, then the unique indexes. Each key is matched on its own,
+     * so a row conflicting on only one of several unique columns is still updated.
+     *
+     * @param updateColumns The columns updated by {@link ConflictStrategy#UPDATE}, all insertable
+     *                      columns except the columns of the matched key if empty.
+     * @return The number of rows inserted or updated.
+     */
+    @Override
+    public int upsertSafety(List<T> beans, ConflictStrategy strategy, String[] updateColumns,
+                            SQLiteDatabase db) {
+        if (beans.isEmpty()) {
+            return 0;
+        }
+        String insertSql;
+        List<List<ColumnInfo>> keys = new ArrayList<>();
+        List<List<ColumnInfo>> setColumns = new ArrayList<>();
+        List<String> updateSqls = new ArrayList<>();
+        if (strategy == ConflictStrategy.REPLACE) {
+            insertSql = buildInsertSql("INSERT OR REPLACE INTO ");
+        } else {
+            insertSql = buildInsertSql("INSERT OR IGNORE INTO ");
+        }
+        if (strategy == ConflictStrategy.UPDATE) {
+            for (List<ColumnInfo> key : getUniqueKeys()) {
+                List<ColumnInfo> columns = getSetColumns(key, updateColumns);
+                if (!columns.isEmpty()) {
+                    keys.add(key);
+                    setColumns.add(columns);
+                    updateSqls.add(buildUpsertUpdateSql(columns, key));
+                }
+            }
+        }
+        if (strategy == ConflictStrategy.REPLACE) {
+            // REPLACE also deletes the other rows conflicting on a unique column.
+            clearOnCommit();
+        }
+        int count = 0;
+        StatementCache cache = Orm.getStatementCache();
+        SQLiteStatement insert = cache.acquire(db, insertSql);
+        SQLiteStatement[] updates = new SQLiteStatement[updateSqls.size()];
+        for (int i = 0; i < updates.length; i++) {
+            updates[i] = cache.acquire(db, updateSqls.get(i));
+        }
+        db.beginTransaction();
+        try {
+            for (T bean : beans) {
+                insert.clearBindings();
+                mTableInfo.bind(insert, bean);
+                evictOnCommit(bean);
+                if (insert.executeInsert() != -1) {
+                    count++;
+                    continue;
+                }
+                for (int i = 0; i < updates.length; i++) {
+                    SQLiteStatement update = updates[i];
+                    update.clearBindings();
+                    int index = 1;
+                    for (ColumnInfo column : setColumns.get(i)) {
+                        column.bind(update, index++, bean);
+                    }
+                    for (ColumnInfo column : keys.get(i)) {
+                        column.bind(update, index++, bean);
+                    }
+                    int updated = update.executeUpdateDelete();
+                    if (updated > 0) {
+                        count += updated;
+                        break;
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            count = 0;
+        } catch (SQLiteException e) {
+            OrmLog.e(e.getMessage());
+            count = 0;
+        } finally {
+            db.endTransaction();
+            cache.release(db, insertSql, insert);
+            for (int i = 0; i < updates.length; i++) {
+                cache.release(db, updateSqls.get(i), updates[i]);
+            }
+        }
+        if (count > 0) {
+            InvalidationTracker.getInstance().notifyChanged(db, mTableInfo.getTableName());
+        }
+        return count;
+    }
+
+    /**
+     * @return The unique keys that can identify an existing row: the primary key if it is assigned
+     * by the bean, each unique column, and the columns of each unique index.
+     */
+    private List<List<ColumnInfo>> getUniqueKeys() {
+        List<List<ColumnInfo>> keys = new ArrayList<>();
+        ColumnInfo primaryKey = mTableInfo.getPrimaryKey();
+        if (primaryKey != null && primaryKey.isInsertable()) {
+            List<ColumnInfo> key = new ArrayList<>(1);
+            key.add(primaryKey);
+            keys.add(key);
+        }
+        for (ColumnInfo column : mTableInfo.getColumns()) {
+            if (column.isUnique() && column != primaryKey) {
+                List<ColumnInfo> key = new ArrayList<>(1);
+                key.add(column);
+                keys.add(key);
+            }
+        }
+        for (IndexInfo index : mTableInfo.getIndexes()) {
+            if (!index.isUnique()) {
+                continue;
+            }
+            List<ColumnInfo> key = new ArrayList<>();
+            for (String name : index.getColumns()) {
+                for (ColumnInfo column : mTableInfo.getColumns()) {
+                    if (column.getName().equalsIgnoreCase(name)) {
+                        key.add(column);
+                        break;
+                    }
+                }
+            }
+            if (key.size() == index.getColumns().length && !keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        if (keys.isEmpty()) {
+            throw new ConstraintException("Lack valid primary key or unique column.");
+        }
+        return keys;
+    }
+
+    private List<ColumnInfo> getSetColumns(List<ColumnInfo> keyColumns, String[] updateColumns) {
+        List<ColumnInfo> columns = new ArrayList<>();
+        for (ColumnInfo column : mTableInfo.getInsertableColumns()) {
+            if (keyColumns.contains(column)) {
+                continue;
+            }
+            if (updateColumns == null || updateColumns.length == 0) {
+                columns.add(column);
+                continue;
+            }
+            for (String name : updateColumns) {
+                if (column.getName().equalsIgnoreCase(name)) {
+                    columns.add(column);
+                    break;
+                }
+            }
+        }
+        return columns;
+    }
+
+    private String buildUpsertUpdateSql(List<ColumnInfo> setColumns, List<ColumnInfo> keyColumns) {
+        StringBuilder sb = new StringBuilder("UPDATE ").append(mTableInfo.getTableName())
+                .append(" SET ");
+        for (int i = 0; i < setColumns.size(); i++) {
+            sb.append(i > 0 ? "," : "").append(setColumns.get(i).getName()).append("=?");
+        }
+        sb.append(" WHERE ");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            sb.append(i > 0 ? " AND " : "").append(keyColumns.get(i).getName()).append("=?");
+        }
+        return sb.toString();
+    }
+
+    private String getUpdateSql() {
+        if (mUpdateSql == null) {
+            String[] columns = mTableInfo.getInsertableColumnNames();
+            StringBuilder sb = new StringBuilder("UPDATE ").append(mTableInfo.getTableName())
+                    .append(" SET ");
+            for (int i = 0; i < columns.length; i++) {
+                sb.append(i > 0 ? "," : "").append(columns[i]).append("=?");
+            }
+            mUpdateSql = sb.toString();
+        }
+        return mUpdateSql;
+    }
+
+    /**
+     * Executes an UPDATE or DELETE statement through the statement cache, the values of the bean
+     * are bound before the selection arguments.
+     *
+     * @return The number of rows affected.
+     */
+    private int executeUpdateDelete(SQLiteDatabase db, String sql, T bean, BindArgs args) {
+        if (args != null && QueryPlanChecker.isEnabled()) {
+            BindArgs explainArgs = new BindArgs();
+            if (bean != null) {
+                for (int i = 0; i < mTableInfo.getInsertableColumnNames().length; i++) {
+                    explainArgs.addNull();
+                }
+            }
+            explainArgs.addAll(args);
+            QueryPlanChecker.check(db, sql, explainArgs);
+        }
+        StatementCache cache = Orm.getStatementCache();
+        SQLiteStatement statement = cache.acquire(db, sql);
+        try {
+            int start = 1;
+            if (bean != null) {
+                mTableInfo.bind(statement, bean);
+                start += mTableInfo.getInsertableColumnNames().length;
+            }
+            if (args != null) {
+                args.bindTo(statement, start);
+            }
+            int count = statement.executeUpdateDelete();
+            if (count > 0) {
+                InvalidationTracker.getInstance().notifyChanged(db, mTableInfo.getTableName());
+            }
+            return count;
+        } finally {
+            cache.release(db, sql, statement);
+        }
+    }
+
+    private String where(String selection) {
+        return selection != null && selection.length() > 0 ? " WHERE " + selection : "";
     }
 
     @Override
@@ -191,10 +612,11 @@ public class OrmDao<T extends OrmTable> implements Dao<T> {
 
     @Override
     public boolean delete(T bean) {
-        PrimaryKeyEntity primaryKey = bean.getPrimaryKey();
-        String name = primaryKey.getName();
-        String value = primaryKey.getValue();
-        return deleteSafety(WhereBuilder.create(new Condition(name+"=?", new String[]{value})), mDatabase);
+        WhereBuilder builder = WhereBuilder.create().addWhereEqualTo(getPrimaryKeyName(bean),
+                getPrimaryKeyValue(bean));
+        evictOnCommit(bean);
+        String sql = "DELETE FROM " + mTableInfo.getTableName() + where(builder.getSelection());
+        return executeUpdateDelete(mDatabase, sql, null, builder.getBindArgs()) > 0;
     }
 
     @Override
@@ -204,16 +626,17 @@ public class OrmDao<T extends OrmTable> implements Dao<T> {
 
     @Override
     public boolean deleteAllSafety(SQLiteDatabase db) {
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        return db.delete(tableName, null, null) > 0;
+        clearOnCommit();
+        String tableName = mTableInfo.getTableName();
+        return executeUpdateDelete(db, "DELETE FROM " + tableName, null, null) > 0;
     }
 
     @Override
     public boolean deleteSafety(WhereBuilder builder, SQLiteDatabase db) {
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        return db.delete(tableName, builder.getSelection(), builder.getSelectionArgs()) > 0;
+        clearOnCommit();
+        String tableName = mTableInfo.getTableName();
+        String sql = "DELETE FROM " + tableName + where(builder.getSelection());
+        return executeUpdateDelete(db, sql, null, builder.getBindArgs()) > 0;
     }
 
     @Override
@@ -223,11 +646,11 @@ public class OrmDao<T extends OrmTable> implements Dao<T> {
 
     @Override
     public boolean update(T bean) {
-        PrimaryKeyEntity primaryKey = bean.getPrimaryKey();
-        String name = primaryKey.getName();
-        String value = primaryKey.getValue();
-        return updateSafety(WhereBuilder.create(new Condition(name+"=?", new String[]{value})),
-                bean, mDatabase);
+        WhereBuilder builder = WhereBuilder.create().addWhereEqualTo(getPrimaryKeyName(bean),
+                getPrimaryKeyValue(bean));
+        evictOnCommit(bean);
+        String sql = getUpdateSql() + where(builder.getSelection());
+        return executeUpdateDelete(mDatabase, sql, bean, builder.getBindArgs()) > 0;
     }
 
     @Override
@@ -237,165 +660,340 @@ public class OrmDao<T extends OrmTable> implements Dao<T> {
 
     @Override
     public boolean updateAllSafety(T newBean, SQLiteDatabase db) {
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        ContentValues contentValues = getContentValues(newBean);
-        return db.update(tableName, contentValues, null, null) > 0;
+        clearOnCommit();
+        return executeUpdateDelete(db, getUpdateSql(), newBean, null) > 0;
     }
 
     @Override
     public boolean updateSafety(WhereBuilder builder, T newBean, SQLiteDatabase db) {
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        ContentValues contentValues = getContentValues(newBean);
-        return db.update(tableName, contentValues, builder.getSelection(), builder.getSelectionArgs()) > 0;
+        clearOnCommit();
+        String sql = getUpdateSql() + where(builder.getSelection());
+        return executeUpdateDelete(db, sql, newBean, builder.getBindArgs()) > 0;
     }
 
     @Override
     public List<T> selectAll() {
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        Cursor cursor = mDatabase.query(tableName, null, null, null, null, null, null);
+        String tableName = mTableInfo.getTableName();
+        Cursor cursor = Orm.getReadableDatabase().query(tableName, null, null, null, null, null,
+                null);
         return getResult(cursor);
     }
 
-    @Override
-    public List<T> select(QueryBuilder builder) {
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
+    private Cursor query(QueryBuilder builder) {
+        if (builder.getMatch() != null) {
+            return queryMatch(builder);
+        }
+        String tableName = mTableInfo.getTableName();
         String[] columns = builder.getColumns();
         String group = builder.getGroup();
         String having = builder.getHaving();
         String order = builder.getOrder();
         String limit = builder.getLimit();
         WhereBuilder where = builder.getWhereBuilder();
-        String selection = where.getSelection();
-        String[] selectionArgs = where.getSelectionArgs();
-        Cursor cursor = mDatabase.query(tableName, columns, selection, selectionArgs, group, having, order, limit);
-        return getResult(cursor);
+        String sql = SQLiteQueryBuilder.buildQueryString(false, tableName, columns,
+                where.getSelection(), group, having, order, limit);
+        return rawQuery(Orm.getReadableDatabase(), sql, where.getBindArgs(), tableName);
+    }
+
+    /**
+     * Joins the table with the rows of its full text table that match the query, the where
+     * clause of the builder still refers to the columns of the table.
+     */
+    private Cursor queryMatch(QueryBuilder builder) {
+        if (mTableInfo.getFullTextColumns().isEmpty()) {
+            throw new ConstraintException("Lack full text column.");
+        }
+        String tableName = mTableInfo.getTableName();
+        String ftsName = mTableInfo.getFullTextTableName();
+        BindArgs args = new BindArgs();
+        StringBuilder sb = new StringBuilder("SELECT ");
+        String[] columns = builder.getColumns();
+        if (columns == null || columns.length == 0) {
+            sb.append(tableName).append(".*");
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                sb.append(i > 0 ? "," : "").append(columns[i]);
+            }
+        }
+        sb.append(",f.").append(QueryBuilder.RANK_COLUMN);
+        String[] snippet = builder.getSnippet();
+        if (snippet != null) {
+            sb.append(",f.").append(QueryBuilder.SNIPPET_COLUMN);
+        }
+        String offsets = "offsets(" + ftsName + ")";
+        sb.append(" FROM ").append(tableName).append(" JOIN (SELECT docid,(length(")
+                .append(offsets).append(")-length(replace(").append(offsets)
+                .append(",' ',''))+1)/4 AS ").append(QueryBuilder.RANK_COLUMN);
+        if (snippet != null) {
+            sb.append(",snippet(").append(ftsName).append(",?,?,?,-1,?) AS ")
+                    .append(QueryBuilder.SNIPPET_COLUMN);
+            args.addString(snippet[0]);
+            args.addString(snippet[1]);
+            args.addString(snippet[2]);
+            args.addLong(Long.parseLong(snippet[3]));
+        }
+        sb.append(" FROM ").append(ftsName).append(" WHERE ").append(ftsName)
+                .append(" MATCH ?) AS f ON ").append(tableName).append(".rowid=f.docid");
+        args.addString(builder.getMatch());
+        WhereBuilder where = builder.getWhereBuilder();
+        sb.append(where(where.getSelection()));
+        args.addAll(where.getBindArgs());
+        if (builder.getGroup().length() > 0) {
+            sb.append(" GROUP BY ").append(builder.getGroup());
+        }
+        if (builder.getHaving().length() > 0) {
+            sb.append(" HAVING ").append(builder.getHaving());
+        }
+        if (builder.getOrder().length() > 0) {
+            sb.append(" ORDER BY ").append(builder.getOrder());
+        } else if (builder.isOrderByRank()) {
+            sb.append(" ORDER BY f.").append(QueryBuilder.RANK_COLUMN).append(" DESC");
+        }
+        if (builder.getLimit().length() > 0) {
+            sb.append(" LIMIT ").append(builder.getLimit());
+        }
+        return rawQuery(Orm.getReadableDatabase(), sb.toString(), args, tableName);
+    }
+
+    /**
+     * Runs a query with the arguments bound in their types.
+     */
+    /* package */ static Cursor rawQuery(SQLiteDatabase db, String sql, BindArgs args,
+                                        String tableName) {
+        QueryPlanChecker.check(db, sql, args);
+        return db.rawQueryWithFactory(new BindArgsCursorFactory(args), sql, null, tableName);
+    }
+
+    @Override
+    public List<T> select(QueryBuilder builder) {
+        return getResult(query(builder));
+    }
+
+    /**
+     * Creates a query that is run again whenever the table is written.
+     */
+    @Override
+    public ObservableQuery<T> observe(QueryBuilder builder) {
+        if (builder == null) {
+            builder = QueryBuilder.create();
+        }
+        return new ObservableQuery<>(this, mTableInfo.getTableName(), builder);
+    }
+
+    @Override
+    public CloseableIterator<T> iterateAll() {
+        String tableName = mTableInfo.getTableName();
+        Cursor cursor = Orm.getReadableDatabase().query(tableName, null, null, null, null, null,
+                null);
+        return new CursorIterator<>(mTableInfo, cursor);
+    }
+
+    @Override
+    public CloseableIterator<T> iterate(QueryBuilder builder) {
+        return new CursorIterator<>(mTableInfo, query(builder));
+    }
+
+    /**
+     * Iterates the rows matching the builder in windows of pageSize rows, ordered by the primary
+     * key.
+     */
+    @Override
+    public CloseableIterator<T> iterateByPage(WhereBuilder builder, int pageSize) {
+        return new PageIterator<>(Orm.getReadableDatabase(), mTableInfo, builder, pageSize);
     }
 
     @Override
     public T selectOne() {
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        Cursor cursor = mDatabase.query(tableName, null, null, null, null, null, null);
-        if (cursor.moveToFirst()) {
-            try {
-                T bean = createResult(cursor);
-                return bean;
-            } catch (InstantiationException e) {
-                e.printStackTrace();
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            } catch (InvocationTargetException e) {
-                e.printStackTrace();
+        String tableName = mTableInfo.getTableName();
+        Cursor cursor = Orm.getReadableDatabase().query(tableName, null, null, null, null, null,
+                null, "1");
+        return getFirstResult(cursor);
+    }
+
+    @Override
+    public T selectOne(QueryBuilder builder) {
+        return getFirstResult(query(builder));
+    }
+
+    /**
+     * Maps each row of the query with the mapper, only the columns set by
+     * {@link QueryBuilder#columns(String...)} are read.
+     */
+    @Override
+    public <R> List<R> select(QueryBuilder builder, RowMapper<R> mapper) {
+        Cursor cursor = query(builder);
+        try {
+            List<R> result = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                result.add(mapper.map(cursor));
             }
+            return result;
+        } finally {
+            cursor.close();
         }
-        return null;
+    }
+
+    private Cursor queryColumn(String column, QueryBuilder builder) {
+        builder = builder != null ? builder.copy() : QueryBuilder.create();
+        return query(builder.columns(column));
     }
 
     @Override
-    public T selectOne(QueryBuilder builder) {
-        List<T> beans = select(builder);
-        if (beans.size() > 0) {
-            return beans.get(0);
+    public long[] selectLongColumn(String column, QueryBuilder builder) {
+        Cursor cursor = queryColumn(column, builder);
+        try {
+            long[] values = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                values[i] = cursor.getLong(0);
+            }
+            return values;
+        } finally {
+            cursor.close();
         }
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        String[] columns = builder.getColumns();
-        String group = builder.getGroup();
-        String having = builder.getHaving();
-        String order = builder.getOrder();
-        String limit = builder.getLimit();
-        WhereBuilder where = builder.getWhereBuilder();
-        String selection = where.getSelection();
-        String[] selectionArgs = where.getSelectionArgs();
-        Cursor cursor = mDatabase.query(tableName, columns, selection, selectionArgs, group, having, order, limit);
-        if (cursor.moveToFirst()) {
-            try {
-                T bean = createResult(cursor);
-                return bean;
-            } catch (InstantiationException e) {
-                e.printStackTrace();
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            } catch (InvocationTargetException e) {
-                e.printStackTrace();
+    }
+
+    @Override
+    public double[] selectDoubleColumn(String column, QueryBuilder builder) {
+        Cursor cursor = queryColumn(column, builder);
+        try {
+            double[] values = new double[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                values[i] = cursor.getDouble(0);
             }
+            return values;
+        } finally {
+            cursor.close();
         }
-        return null;
     }
 
     @Override
-    public long selectCount() {
-        long count = 0;
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
-        Cursor cursor = mDatabase.rawQuery("SELECT COUNT(*) FROM " + tableName, null);
-        if (cursor != null) {
-            cursor.moveToFirst();
-            count = cursor.getLong(0);
+    public String[] selectStringColumn(String column, QueryBuilder builder) {
+        Cursor cursor = queryColumn(column, builder);
+        try {
+            String[] values = new String[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                values[i] = cursor.getString(0);
+            }
+            return values;
+        } finally {
             cursor.close();
         }
-        return count;
+    }
+
+    /**
+     * Evaluates a query that returns a single value through the statement cache of the connection
+     * it runs on.
+     *
+     * @return The value of the first column of the first row, null if no row or the value is
+     * NULL.
+     */
+    private String simpleQuery(String sql, BindArgs args) {
+        SQLiteDatabase db = Orm.getReadableDatabase();
+        StatementCache cache = Orm.getStatementCache(db);
+        SQLiteStatement statement = cache.acquire(db, sql);
+        try {
+            if (args != null) {
+                args.bindTo(statement, 1);
+            }
+            return statement.simpleQueryForString();
+        } catch (SQLiteDoneException e) {
+            return null;
+        } finally {
+            cache.release(db, sql, statement);
+        }
+    }
+
+    /**
+     * Evaluates an aggregate function over the rows matching the where clause of the builder, the
+     * other clauses such as ORDER BY and LIMIT are ignored.
+     *
+     * @return The value as text, null if no row matches.
+     */
+    private String aggregate(String function, String column, QueryBuilder builder) {
+        String tableName = mTableInfo.getTableName();
+        WhereBuilder where = builder != null ? builder.getWhereBuilder() : null;
+        String sql = "SELECT " + function + "(" + column + ") FROM " + tableName
+                + (where != null ? where.build() : "");
+        return simpleQuery(sql, where != null ? where.getBindArgs() : null);
+    }
+
+    /**
+     * @return The sum of the column, 0 if no row matches.
+     */
+    @Override
+    public double sum(String column, QueryBuilder builder) {
+        String value = aggregate("SUM", column, builder);
+        return value != null ? Double.parseDouble(value) : 0;
+    }
+
+    /**
+     * @return The average of the column, 0 if no row matches.
+     */
+    @Override
+    public double avg(String column, QueryBuilder builder) {
+        String value = aggregate("AVG", column, builder);
+        return value != null ? Double.parseDouble(value) : 0;
+    }
+
+    /**
+     * @return The smallest value of the column as text, it works for the columns of any type, or
+     * null if no row matches.
+     */
+    @Override
+    public String min(String column, QueryBuilder builder) {
+        return aggregate("MIN", column, builder);
+    }
+
+    /**
+     * @return The largest value of the column as text, it works for the columns of any type, or
+     * null if no row matches.
+     */
+    @Override
+    public String max(String column, QueryBuilder builder) {
+        return aggregate("MAX", column, builder);
+    }
+
+    @Override
+    public long selectCount() {
+        String tableName = mTableInfo.getTableName();
+        String value = simpleQuery("SELECT COUNT(*) FROM " + tableName, null);
+        return value != null ? Long.parseLong(value) : 0;
     }
 
     @Override
     public long selectCount(QueryBuilder builder) {
-        long count = 0;
-        TableManager manager = TableManager.getInstance();
-        String tableName = manager.getTableName(mBeanClass);
+        String tableName = mTableInfo.getTableName();
         String sql = builder.build();
-        Cursor cursor = mDatabase.rawQuery("SELECT COUNT(*) FROM " + tableName + sql,
-                builder.getWhereBuilder().getSelectionArgs());
-        if (cursor != null) {
-            cursor.moveToFirst();
-            count = cursor.getLong(0);
-            cursor.close();
-        }
-        return count;
+        String value = simpleQuery("SELECT COUNT(*) FROM " + tableName + sql,
+                builder.getWhereBuilder().getBindArgs());
+        return value != null ? Long.parseLong(value) : 0;
     }
 
-    private List<T> getResult(Cursor cursor) {
-        List<T> result = new ArrayList<>();
-        while (cursor.moveToNext()) {
-            try {
-                T bean = createResult(cursor);
-                result.add(bean);
-            } catch (InstantiationException e) {
-                e.printStackTrace();
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            } catch (InvocationTargetException e) {
-                e.printStackTrace();
+    private T getFirstResult(Cursor cursor) {
+        try {
+            if (cursor.moveToFirst()) {
+                return mTableInfo.fromCursor(cursor, mTableInfo.getColumnIndexes(cursor));
             }
+        } catch (InstantiationException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        } catch (InvocationTargetException e) {
+            e.printStackTrace();
+        } finally {
+            cursor.close();
         }
-        return result;
+        return null;
     }
 
-    private <T extends OrmTable> T newOrmTableInstance(Class<T> clazz) {
-        Constructor<?>[] constructors = clazz.getDeclaredConstructors();
-        for (Constructor<?> c : constructors) {
-            c.setAccessible(true);
-            Class[] cls = c.getParameterTypes();
-            if (cls.length == 0) {
-                try {
-                    return (T) c.newInstance();
-                } catch (InstantiationException e) {
-                    e.printStackTrace();
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                } catch (InvocationTargetException e) {
-                    e.printStackTrace();
-                }
-            } else {
-                Object[] objs = new Object[cls.length];
-                for (int i = 0; i < cls.length; i++) {
-                    objs[i] = getPrimitiveDefaultValue(cls[i]);
-                }
+    private List<T> getResult(Cursor cursor) {
+        List<T> result = new ArrayList<>();
+        try {
+            int[] columnIndexes = mTableInfo.getColumnIndexes(cursor);
+            while (cursor.moveToNext()) {
                 try {
-                    return (T) c.newInstance(objs);
+                    T bean = mTableInfo.fromCursor(cursor, columnIndexes);
+                    result.add(bean);
                 } catch (InstantiationException e) {
                     e.printStackTrace();
                 } catch (IllegalAccessException e) {
@@ -404,62 +1002,9 @@ public class OrmDao<T extends OrmTable> implements Dao<T> {
                     e.printStackTrace();
                 }
             }
+        } finally {
+            cursor.close();
         }
-        return null;
-    }
-
-    private Object getPrimitiveDefaultValue(Class clazz) {
-        if (clazz.isPrimitive()) {
-            return clazz == boolean.class ? false : 0;
-        }
-        return null;
-    }
-
-    private T createResult(Cursor cursor) throws IllegalAccessException,
-            InstantiationException, InvocationTargetException {
-        T bean = newOrmTableInstance(mBeanClass);
-        Field[] fields = mBeanClass.getDeclaredFields();
-        for (Field field : fields) {
-            field.setAccessible(true);
-            String columnName;
-            Column column = field.getAnnotation(Column.class);
-            if (column != null) {
-                columnName = column.value();
-            } else {
-                columnName = TableManager.getInstance().generateColumnName(field.getName());
-            }
-            int columnIndex = cursor.getColumnIndex(columnName);
-            if (columnIndex != -1) {
-                Class<?> fieldType = field.getType();
-                if (isAssignableFromCharSequence(fieldType)) {
-                    field.set(bean, cursor.getString(columnIndex));
-                } else if (isAssignableFromBoolean(fieldType)) {
-                    int value = cursor.getInt(columnIndex);
-                    field.set(bean, value == 1 ? true : false);
-                } else if (isAssignableFromLong(fieldType)) {
-                    field.set(bean, cursor.getLong(columnIndex));
-                } else if (isAssignableFromInteger(fieldType)) {
-                    field.set(bean, cursor.getInt(columnIndex));
-                } else if (isAssignableFromShort(fieldType)
-                        || isAssignableFromByte(fieldType)) {
-                    field.set(bean, cursor.getShort(columnIndex));
-                } else if (isAssignableFromDouble(fieldType)) {
-                    field.set(bean, cursor.getDouble(columnIndex));
-                } else if (isAssignableFromFloat(fieldType)) {
-                    field.set(bean, cursor.getFloat(columnIndex));
-                } else if (isAssignableFromCharacter(fieldType)) {
-                    field.set(bean, cursor.getString(columnIndex));
-                } else if (isAssignableFromClass(fieldType)) {
-                    try {
-                        field.set(bean, Class.forName(cursor.getString(columnIndex)));
-                    } catch (ClassNotFoundException e) {
-                        e.printStackTrace();
-                    }
-                } else {
-                    field.set(bean, cursor.getBlob(columnIndex));
-                }
-            }
-        }
-        return bean;
+        return result;
     }
 }
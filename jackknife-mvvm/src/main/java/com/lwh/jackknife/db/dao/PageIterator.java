@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import com.lwh.jackknife.db.OrmTable;
+import com.lwh.jackknife.db.builder.WhereBuilder;
+import com.lwh.jackknife.db.exception.ConstraintException;
+import com.lwh.jackknife.db.table.ColumnInfo;
+import com.lwh.jackknife.db.table.TableInfo;
+import com.lwh.jackknife.db.type.SqlType;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates a table in windows ordered by the primary key. Each window is queried with the last
+ * primary key that was read, instead of an OFFSET, so only one window is held in memory however
+ * large the table is, and every window costs an index seek.
+ */
+public class PageIterator<T extends OrmTable> extends CloseableIterator<T> {
+
+    private final SQLiteDatabase mDatabase;
+    private final TableInfo<T> mTableInfo;
+    private final String mPrimaryKey;
+    private final SqlType mPrimaryKeyType;
+    private final WhereBuilder mWhere;
+    private final int mPageSize;
+    private Cursor mCursor;
+    private int[] mColumnIndexes;
+    private int mPrimaryKeyIndex;
+    private int mRowsInPage;
+    private Object mLastKey;
+    private boolean mFinished;
+    private T mNext;
+
+    /* package */ PageIterator(SQLiteDatabase db, TableInfo<T> tableInfo, WhereBuilder where,
+                               int pageSize) {
+        ColumnInfo primaryKey = tableInfo.getPrimaryKey();
+        if (primaryKey == null) {
+            throw new ConstraintException("Lack valid primary key.");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive.");
+        }
+        this.mDatabase = db;
+        this.mTableInfo = tableInfo;
+        this.mPrimaryKey = primaryKey.getName();
+        this.mPrimaryKeyType = primaryKey.getSqlType();
+        this.mWhere = where;
+        this.mPageSize = pageSize;
+    }
+
+    private void openPage() {
+        WhereBuilder page = WhereBuilder.create();
+        if (mWhere != null) {
+            page.and(mWhere);
+        }
+        if (mLastKey != null) {
+            page.andWhereGreatorThan(mPrimaryKey, mLastKey);
+        }
+        String tableName = mTableInfo.getTableName();
+        String sql = SQLiteQueryBuilder.buildQueryString(false, tableName, null,
+                page.getSelection(), null, null, mPrimaryKey, String.valueOf(mPageSize));
+        mCursor = OrmDao.rawQuery(mDatabase, sql, page.getBindArgs(), tableName);
+        if (mColumnIndexes == null) {
+            mColumnIndexes = mTableInfo.getColumnIndexes(mCursor);
+            mPrimaryKeyIndex = mCursor.getColumnIndex(mPrimaryKey);
+        }
+        mRowsInPage = 0;
+    }
+
+    private Object readPrimaryKey() {
+        if (mPrimaryKeyType == SqlType.INTEGER) {
+            return mCursor.getLong(mPrimaryKeyIndex);
+        } else if (mPrimaryKeyType == SqlType.REAL) {
+            return mCursor.getDouble(mPrimaryKeyIndex);
+        }
+        return mCursor.getString(mPrimaryKeyIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (mNext == null && !mFinished) {
+            if (mCursor == null) {
+                openPage();
+            }
+            if (!mCursor.moveToNext()) {
+                boolean isFull = mRowsInPage == mPageSize;
+                mCursor.close();
+                mCursor = null;
+                mFinished = !isFull;
+                continue;
+            }
+            mRowsInPage++;
+            mLastKey = readPrimaryKey();
+            try {
+                mNext = mTableInfo.fromCursor(mCursor, mColumnIndexes);
+            } catch (InstantiationException e) {
+                e.printStackTrace();
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            }
+        }
+        return mNext != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T next = mNext;
+        mNext = null;
+        return next;
+    }
+
+    @Override
+    public void close() {
+        mFinished = true;
+        if (mCursor != null) {
+            mCursor.close();
+            mCursor = null;
+        }
+    }
+}
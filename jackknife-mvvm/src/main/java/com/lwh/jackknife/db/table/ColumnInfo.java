@@ -0,0 +1,597 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.table;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import com.lwh.jackknife.db.constraint.AssignType;
+import com.lwh.jackknife.db.constraint.PrimaryKey;
+import com.lwh.jackknife.db.constraint.Unique;
+import com.lwh.jackknife.db.type.SqlType;
+
+import java.lang.reflect.Field;
+
+/**
+ * Immutable description of a mapped field. The field is made accessible only once, and the
+ * conversion between the field and the column is decided by its type when the table is resolved,
+ * instead of being checked again for every row.
+ */
+public abstract class ColumnInfo {
+
+    private final Field mField;
+    private final String mName;
+    private final SqlType mSqlType;
+    private final boolean mPrimaryKey;
+    private final AssignType mAssignType;
+    private final boolean mUnique;
+
+    /* package */ ColumnInfo(Field field, String name, SqlType sqlType) {
+        this.mField = field;
+        this.mName = name;
+        this.mSqlType = sqlType;
+        PrimaryKey primaryKey = field.getAnnotation(PrimaryKey.class);
+        this.mPrimaryKey = primaryKey != null;
+        this.mAssignType = primaryKey != null ? primaryKey.value() : null;
+        this.mUnique = field.getAnnotation(Unique.class) != null;
+        field.setAccessible(true);
+    }
+
+    public Field getField() {
+        return mField;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public SqlType getSqlType() {
+        return mSqlType;
+    }
+
+    public boolean isPrimaryKey() {
+        return mPrimaryKey;
+    }
+
+    public AssignType getAssignType() {
+        return mAssignType;
+    }
+
+    /**
+     * @return True if the column is declared with {@link Unique}.
+     */
+    public boolean isUnique() {
+        return mUnique;
+    }
+
+    /**
+     * @return False if the value of the column is generated by the database.
+     */
+    public boolean isInsertable() {
+        return mAssignType != AssignType.AUTO_INCREMENT;
+    }
+
+    /**
+     * Gets the value of the field, boxed.
+     */
+    public Object getValue(Object bean) throws IllegalAccessException {
+        return mField.get(bean);
+    }
+
+    /**
+     * Copies the value of the field into the values to be written.
+     */
+    public abstract void put(ContentValues values, Object bean) throws IllegalAccessException;
+
+    /**
+     * Binds the value of the field to the parameter index of a compiled statement, the index
+     * starts from 1.
+     */
+    public abstract void bind(SQLiteProgram program, int index, Object bean)
+            throws IllegalAccessException;
+
+    /**
+     * Reads the value at the column index of the cursor into the field.
+     */
+    public abstract void read(Cursor cursor, int columnIndex, Object bean)
+            throws IllegalAccessException;
+
+    /* package */ static ColumnInfo create(Field field, String name, SqlType sqlType) {
+        Class<?> type = field.getType();
+        if (CharSequence.class.isAssignableFrom(type)) {
+            return new StringColumn(field, name, sqlType);
+        } else if (type == boolean.class || type == Boolean.class) {
+            return new BooleanColumn(field, name, sqlType);
+        } else if (type == byte.class || type == Byte.class) {
+            return new ByteColumn(field, name, sqlType);
+        } else if (type == short.class || type == Short.class) {
+            return new ShortColumn(field, name, sqlType);
+        } else if (type == int.class || type == Integer.class) {
+            return new IntColumn(field, name, sqlType);
+        } else if (type == long.class || type == Long.class) {
+            return new LongColumn(field, name, sqlType);
+        } else if (type == float.class || type == Float.class) {
+            return new FloatColumn(field, name, sqlType);
+        } else if (type == double.class || type == Double.class) {
+            return new DoubleColumn(field, name, sqlType);
+        } else if (type == char.class || type == Character.class) {
+            return new CharColumn(field, name, sqlType);
+        } else if (type == Class.class) {
+            return new ClassColumn(field, name, sqlType);
+        } else {
+            return new BlobColumn(field, name, sqlType);
+        }
+    }
+
+    private static class StringColumn extends ColumnInfo {
+
+        StringColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            Object value = getField().get(bean);
+            values.put(getName(), value != null ? value.toString() : null);
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            Object value = getField().get(bean);
+            if (value != null) {
+                program.bindString(index, value.toString());
+            } else {
+                program.bindNull(index);
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            getField().set(bean, cursor.getString(columnIndex));
+        }
+    }
+
+    private static class BooleanColumn extends ColumnInfo {
+
+        private final boolean mPrimitive;
+
+        BooleanColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+            mPrimitive = field.getType().isPrimitive();
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                values.put(getName(), getField().getBoolean(bean));
+            } else {
+                values.put(getName(), (Boolean) getField().get(bean));
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            if (mPrimitive) {
+                program.bindLong(index, getField().getBoolean(bean) ? 1 : 0);
+            } else {
+                Boolean value = (Boolean) getField().get(bean);
+                if (value != null) {
+                    program.bindLong(index, value ? 1 : 0);
+                } else {
+                    program.bindNull(index);
+                }
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                getField().setBoolean(bean, cursor.getInt(columnIndex) == 1);
+            } else {
+                getField().set(bean, cursor.isNull(columnIndex) ? null
+                        : cursor.getInt(columnIndex) == 1);
+            }
+        }
+    }
+
+    private static class ByteColumn extends ColumnInfo {
+
+        private final boolean mPrimitive;
+
+        ByteColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+            mPrimitive = field.getType().isPrimitive();
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                values.put(getName(), getField().getByte(bean));
+            } else {
+                values.put(getName(), (Byte) getField().get(bean));
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            if (mPrimitive) {
+                program.bindLong(index, getField().getByte(bean));
+            } else {
+                Byte value = (Byte) getField().get(bean);
+                if (value != null) {
+                    program.bindLong(index, value.longValue());
+                } else {
+                    program.bindNull(index);
+                }
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                getField().setByte(bean, (byte) cursor.getShort(columnIndex));
+            } else {
+                getField().set(bean, cursor.isNull(columnIndex) ? null
+                        : (byte) cursor.getShort(columnIndex));
+            }
+        }
+    }
+
+    private static class ShortColumn extends ColumnInfo {
+
+        private final boolean mPrimitive;
+
+        ShortColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+            mPrimitive = field.getType().isPrimitive();
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                values.put(getName(), getField().getShort(bean));
+            } else {
+                values.put(getName(), (Short) getField().get(bean));
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            if (mPrimitive) {
+                program.bindLong(index, getField().getShort(bean));
+            } else {
+                Short value = (Short) getField().get(bean);
+                if (value != null) {
+                    program.bindLong(index, value.longValue());
+                } else {
+                    program.bindNull(index);
+                }
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                getField().setShort(bean, cursor.getShort(columnIndex));
+            } else {
+                getField().set(bean, cursor.isNull(columnIndex) ? null
+                        : cursor.getShort(columnIndex));
+            }
+        }
+    }
+
+    private static class IntColumn extends ColumnInfo {
+
+        private final boolean mPrimitive;
+
+        IntColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+            mPrimitive = field.getType().isPrimitive();
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                values.put(getName(), getField().getInt(bean));
+            } else {
+                values.put(getName(), (Integer) getField().get(bean));
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            if (mPrimitive) {
+                program.bindLong(index, getField().getInt(bean));
+            } else {
+                Integer value = (Integer) getField().get(bean);
+                if (value != null) {
+                    program.bindLong(index, value.longValue());
+                } else {
+                    program.bindNull(index);
+                }
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                getField().setInt(bean, cursor.getInt(columnIndex));
+            } else {
+                getField().set(bean, cursor.isNull(columnIndex) ? null
+                        : cursor.getInt(columnIndex));
+            }
+        }
+    }
+
+    private static class LongColumn extends ColumnInfo {
+
+        private final boolean mPrimitive;
+
+        LongColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+            mPrimitive = field.getType().isPrimitive();
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                values.put(getName(), getField().getLong(bean));
+            } else {
+                values.put(getName(), (Long) getField().get(bean));
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            if (mPrimitive) {
+                program.bindLong(index, getField().getLong(bean));
+            } else {
+                Long value = (Long) getField().get(bean);
+                if (value != null) {
+                    program.bindLong(index, value.longValue());
+                } else {
+                    program.bindNull(index);
+                }
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                getField().setLong(bean, cursor.getLong(columnIndex));
+            } else {
+                getField().set(bean, cursor.isNull(columnIndex) ? null
+                        : cursor.getLong(columnIndex));
+            }
+        }
+    }
+
+    private static class FloatColumn extends ColumnInfo {
+
+        private final boolean mPrimitive;
+
+        FloatColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+            mPrimitive = field.getType().isPrimitive();
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                values.put(getName(), getField().getFloat(bean));
+            } else {
+                values.put(getName(), (Float) getField().get(bean));
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            if (mPrimitive) {
+                program.bindDouble(index, getField().getFloat(bean));
+            } else {
+                Float value = (Float) getField().get(bean);
+                if (value != null) {
+                    program.bindDouble(index, value.doubleValue());
+                } else {
+                    program.bindNull(index);
+                }
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                getField().setFloat(bean, cursor.getFloat(columnIndex));
+            } else {
+                getField().set(bean, cursor.isNull(columnIndex) ? null
+                        : cursor.getFloat(columnIndex));
+            }
+        }
+    }
+
+    private static class DoubleColumn extends ColumnInfo {
+
+        private final boolean mPrimitive;
+
+        DoubleColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+            mPrimitive = field.getType().isPrimitive();
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                values.put(getName(), getField().getDouble(bean));
+            } else {
+                values.put(getName(), (Double) getField().get(bean));
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            if (mPrimitive) {
+                program.bindDouble(index, getField().getDouble(bean));
+            } else {
+                Double value = (Double) getField().get(bean);
+                if (value != null) {
+                    program.bindDouble(index, value.doubleValue());
+                } else {
+                    program.bindNull(index);
+                }
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                getField().setDouble(bean, cursor.getDouble(columnIndex));
+            } else {
+                getField().set(bean, cursor.isNull(columnIndex) ? null
+                        : cursor.getDouble(columnIndex));
+            }
+        }
+    }
+
+    private static class CharColumn extends ColumnInfo {
+
+        private final boolean mPrimitive;
+
+        CharColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+            mPrimitive = field.getType().isPrimitive();
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            if (mPrimitive) {
+                values.put(getName(), String.valueOf(getField().getChar(bean)));
+            } else {
+                Character value = (Character) getField().get(bean);
+                values.put(getName(), value != null ? String.valueOf(value) : null);
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            if (mPrimitive) {
+                program.bindString(index, String.valueOf(getField().getChar(bean)));
+            } else {
+                Character value = (Character) getField().get(bean);
+                if (value != null) {
+                    program.bindString(index, String.valueOf(value));
+                } else {
+                    program.bindNull(index);
+                }
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            String value = cursor.getString(columnIndex);
+            if (mPrimitive) {
+                getField().setChar(bean, value != null && value.length() > 0
+                        ? value.charAt(0) : '\u0000');
+            } else {
+                getField().set(bean, value != null && value.length() > 0
+                        ? value.charAt(0) : null);
+            }
+        }
+    }
+
+    private static class ClassColumn extends ColumnInfo {
+
+        ClassColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            Class<?> value = (Class<?>) getField().get(bean);
+            values.put(getName(), value != null ? value.getName() : null);
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            Class<?> value = (Class<?>) getField().get(bean);
+            if (value != null) {
+                program.bindString(index, value.getName());
+            } else {
+                program.bindNull(index);
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            String value = cursor.getString(columnIndex);
+            if (value == null) {
+                getField().set(bean, null);
+                return;
+            }
+            try {
+                getField().set(bean, Class.forName(value));
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class BlobColumn extends ColumnInfo {
+
+        BlobColumn(Field field, String name, SqlType sqlType) {
+            super(field, name, sqlType);
+        }
+
+        @Override
+        public void put(ContentValues values, Object bean) throws IllegalAccessException {
+            Object value = getField().get(bean);
+            if (value instanceof byte[]) {
+                values.put(getName(), (byte[]) value);
+            } else if (value == null) {
+                values.putNull(getName());
+            }
+        }
+
+        @Override
+        public void bind(SQLiteProgram program, int index, Object bean)
+                throws IllegalAccessException {
+            Object value = getField().get(bean);
+            if (value instanceof byte[]) {
+                program.bindBlob(index, (byte[]) value);
+            } else {
+                program.bindNull(index);
+            }
+        }
+
+        @Override
+        public void read(Cursor cursor, int columnIndex, Object bean) throws IllegalAccessException {
+            if (byte[].class == getField().getType()) {
+                getField().set(bean, cursor.getBlob(columnIndex));
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.table;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Adds the column of the field to the full text index of the table, an FTS4 table with the
+ * external content of the table, kept in sync by triggers. It is searched by
+ * {@link com.lwh.jackknife.db.builder.QueryBuilder#match(String)}.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface FullText {
+
+    /**
+     * @return The tokenizer of the full text table, such as "porter" or "unicode61". It applies
+     * to the whole table, the first one that is not empty is used.
+     */
+    String tokenizer() default "";
+}
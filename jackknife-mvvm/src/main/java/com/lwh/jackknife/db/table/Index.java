@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.table;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index of the table. On a field, the index is created on the column of the field and
+ * {@link #value()} is ignored. On a table class, {@link #value()} lists the column names of a
+ * composite index, use {@link Indexes} to declare more than one.
+ */
+@Target({ElementType.FIELD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Index {
+
+    /**
+     * @return The column names of the index, in order.
+     */
+    String[] value() default {};
+
+    /**
+     * @return The name of the index, generated from the table and column names if it is empty.
+     */
+    String name() default "";
+
+    boolean unique() default false;
+}
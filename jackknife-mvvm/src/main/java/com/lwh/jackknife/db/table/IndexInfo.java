@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.table;
+
+import java.util.Arrays;
+
+/**
+ * Immutable description of an index declared by {@link Index}.
+ */
+public final class IndexInfo {
+
+    private final String mName;
+    private final String[] mColumns;
+    private final boolean mUnique;
+
+    /* package */ IndexInfo(String tableName, Index index, String[] columns) {
+        this.mColumns = columns;
+        this.mUnique = index.unique();
+        if (index.name().length() > 0) {
+            this.mName = index.name();
+        } else {
+            StringBuilder sb = new StringBuilder("index_").append(tableName);
+            for (String column : columns) {
+                sb.append("_").append(column);
+            }
+            this.mName = sb.toString();
+        }
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String[] getColumns() {
+        return mColumns.clone();
+    }
+
+    public boolean isUnique() {
+        return mUnique;
+    }
+
+    /**
+     * @return The statement that creates the index if it does not exist.
+     */
+    public String getCreateSql(String tableName) {
+        StringBuilder sb = new StringBuilder("CREATE ");
+        if (mUnique) {
+            sb.append("UNIQUE ");
+        }
+        sb.append("INDEX IF NOT EXISTS ").append(mName).append(" ON ").append(tableName)
+                .append("(");
+        for (int i = 0; i < mColumns.length; i++) {
+            sb.append(i > 0 ? "," : "").append(mColumns[i]);
+        }
+        return sb.append(")").toString();
+    }
+
+    @Override
+    public String toString() {
+        return "IndexInfo{name=" + mName + ", columns=" + Arrays.toString(mColumns) + ", unique="
+                + mUnique + "}";
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.table;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import com.lwh.jackknife.db.OrmTable;
+
+/**
+ * Accessor of an {@link OrmTable} class generated by jackknife-compiler, named as the table class
+ * with the {@link #SUFFIX}. It reads and writes the fields directly, without reflection. If no
+ * binder is generated for a table class, the reflective {@link ColumnInfo}s are used instead.
+ */
+public interface OrmBinder<T extends OrmTable> {
+
+    String SUFFIX = "_OrmBinder";
+
+    /**
+     * @return The names of all mapped columns, in the order expected by
+     * {@link #read(Cursor, int[], OrmTable)}.
+     */
+    String[] getColumnNames();
+
+    /**
+     * @return The names of the columns written by insert and update statements, in the order
+     * bound by {@link #bind(SQLiteProgram, OrmTable)}.
+     */
+    String[] getInsertableColumnNames();
+
+    T newInstance();
+
+    void put(ContentValues values, T bean);
+
+    /**
+     * Binds the insertable columns of the bean to the parameters of a compiled statement,
+     * starting from index 1.
+     */
+    void bind(SQLiteProgram program, T bean);
+
+    /**
+     * Reads the current row of the cursor into the bean, the index of a column that was not
+     * queried is -1.
+     */
+    void read(Cursor cursor, int[] columnIndexes, T bean);
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.db.table;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import com.lwh.jackknife.db.OrmTable;
+import com.lwh.jackknife.db.TableManager;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable metadata of an {@link OrmTable} class, resolved once by reflection and shared by
+ * the dao and the table manager. When an {@link OrmBinder} is generated for the class, the values
+ * of rows are accessed through it instead of through the fields.
+ */
+public final class TableInfo<T extends OrmTable> {
+
+    /**
+     * Suffix of the name of the full text table.
+     */
+    public static final String FULL_TEXT_SUFFIX = "_fts";
+
+    private final Class<T> mTableClass;
+    private final String mTableName;
+    private final List<ColumnInfo> mColumns;
+    private final List<ColumnInfo> mInsertableColumns;
+    private final ColumnInfo mPrimaryKey;
+    private final List<IndexInfo> mIndexes;
+    private final List<ColumnInfo> mFullTextColumns;
+    private final String mFullTextTokenizer;
+    private final Constructor<T> mConstructor;
+    private final Object[] mConstructorArgs;
+    private final OrmBinder<T> mBinder;
+
+    private TableInfo(Class<T> tableClass, OrmBinder<T> binder) {
+        TableManager manager = TableManager.getInstance();
+        this.mTableClass = tableClass;
+        this.mTableName = manager.getTableName(tableClass);
+        List<ColumnInfo> columns = new ArrayList<>();
+        List<ColumnInfo> insertableColumns = new ArrayList<>();
+        ColumnInfo primaryKey = null;
+        List<IndexInfo> indexes = new ArrayList<>();
+        List<ColumnInfo> fullTextColumns = new ArrayList<>();
+        String tokenizer = null;
+        Index tableIndex = tableClass.getAnnotation(Index.class);
+        if (tableIndex != null) {
+            indexes.add(new IndexInfo(mTableName, tableIndex, tableIndex.value()));
+        }
+        Indexes tableIndexes = tableClass.getAnnotation(Indexes.class);
+        if (tableIndexes != null) {
+            for (Index index : tableIndexes.value()) {
+                indexes.add(new IndexInfo(mTableName, index, index.value()));
+            }
+        }
+        Field[] fields = tableClass.getDeclaredFields();
+        for (Field field : fields) {
+            Ignore ignore = field.getAnnotation(Ignore.class);
+            if (ignore != null || (field.getModifiers() & Modifier.STATIC) != 0) {
+                continue;
+            }
+            ColumnInfo column = ColumnInfo.create(field, manager.getColumnName(field),
+                    manager.matchDataType(field).getSqlType());
+            columns.add(column);
+            Index index = field.getAnnotation(Index.class);
+            if (index != null) {
+                indexes.add(new IndexInfo(mTableName, index, new String[]{column.getName()}));
+            }
+            FullText fullText = field.getAnnotation(FullText.class);
+            if (fullText != null) {
+                fullTextColumns.add(column);
+                if (tokenizer == null && fullText.tokenizer().length() > 0) {
+                    tokenizer = fullText.tokenizer();
+                }
+            }
+            if (column.isInsertable()) {
+                insertableColumns.add(column);
+            }
+            if (column.isPrimaryKey() && primaryKey == null) {
+                primaryKey = column;
+            }
+        }
+        this.mColumns = Collections.unmodifiableList(columns);
+        this.mInsertableColumns = Collections.unmodifiableList(insertableColumns);
+        this.mPrimaryKey = primaryKey;
+        this.mIndexes = Collections.unmodifiableList(indexes);
+        this.mFullTextColumns = Collections.unmodifiableList(fullTextColumns);
+        this.mFullTextTokenizer = tokenizer;
+        this.mConstructor = findConstructor(tableClass);
+        this.mConstructorArgs = mConstructor != null ? getDefaultArgs(mConstructor) : null;
+        this.mBinder = binder;
+    }
+
+    public static <T extends OrmTable> TableInfo<T> create(Class<T> tableClass) {
+        return new TableInfo<>(tableClass, null);
+    }
+
+    public static <T extends OrmTable> TableInfo<T> create(Class<T> tableClass,
+                                                           OrmBinder<T> binder) {
+        return new TableInfo<>(tableClass, binder);
+    }
+
+    private Constructor<T> findConstructor(Class<T> tableClass) {
+        Constructor<?>[] constructors = tableClass.getDeclaredConstructors();
+        Constructor<?> found = null;
+        for (Constructor<?> c : constructors) {
+            if (c.getParameterTypes().length == 0) {
+                found = c;
+                break;
+            }
+            if (found == null) {
+                found = c;
+            }
+        }
+        if (found != null) {
+            found.setAccessible(true);
+        }
+        return (Constructor<T>) found;
+    }
+
+    private Object[] getDefaultArgs(Constructor<T> constructor) {
+        Class<?>[] cls = constructor.getParameterTypes();
+        Object[] objs = new Object[cls.length];
+        for (int i = 0; i < cls.length; i++) {
+            objs[i] = getPrimitiveDefaultValue(cls[i]);
+        }
+        return objs;
+    }
+
+    private Object getPrimitiveDefaultValue(Class<?> clazz) {
+        if (clazz.isPrimitive()) {
+            if (clazz == boolean.class) {
+                return false;
+            } else if (clazz == char.class) {
+                return '\u0000';
+            } else if (clazz == byte.class) {
+                return (byte) 0;
+            } else if (clazz == short.class) {
+                return (short) 0;
+            } else if (clazz == long.class) {
+                return 0L;
+            } else if (clazz == float.class) {
+                return 0f;
+            } else if (clazz == double.class) {
+                return 0d;
+            }
+            return 0;
+        }
+        return null;
+    }
+
+    public Class<T> getTableClass() {
+        return mTableClass;
+    }
+
+    public String getTableName() {
+        return mTableName;
+    }
+
+    /**
+     * @return All mapped columns, in declaration order.
+     */
+    public List<ColumnInfo> getColumns() {
+        return mColumns;
+    }
+
+    /**
+     * @return The columns whose values are written by insert and update statements.
+     */
+    public List<ColumnInfo> getInsertableColumns() {
+        return mInsertableColumns;
+    }
+
+    /**
+     * @return The names of the insertable columns, in the order bound by
+     * {@link #bind(SQLiteProgram, OrmTable)}.
+     */
+    public String[] getInsertableColumnNames() {
+        if (mBinder != null) {
+            return mBinder.getInsertableColumnNames();
+        }
+        String[] names = new String[mInsertableColumns.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = mInsertableColumns.get(i).getName();
+        }
+        return names;
+    }
+
+    /**
+     * @return The primary key column, or null if the table does not declare one.
+     */
+    public ColumnInfo getPrimaryKey() {
+        return mPrimaryKey;
+    }
+
+    /**
+     * @return The indexes declared on the class and on its fields.
+     */
+    public List<IndexInfo> getIndexes() {
+        return mIndexes;
+    }
+
+    /**
+     * @return The columns declared with {@link FullText}, empty if the table is not searchable.
+     */
+    public List<ColumnInfo> getFullTextColumns() {
+        return mFullTextColumns;
+    }
+
+    /**
+     * @return The tokenizer of the full text table, or null for the default one.
+     */
+    public String getFullTextTokenizer() {
+        return mFullTextTokenizer;
+    }
+
+    public String getFullTextTableName() {
+        return mTableName + FULL_TEXT_SUFFIX;
+    }
+
+    /**
+     * @return A column name that SQLite can fill with NULL when the inserted values are empty.
+     */
+    public String getNullColumnHack() {
+        return mInsertableColumns.size() > 0 ? mInsertableColumns.get(0).getName() : null;
+    }
+
+    /**
+     * @return The generated binder, or null if the fields are accessed by reflection.
+     */
+    public OrmBinder<T> getBinder() {
+        return mBinder;
+    }
+
+    public T newInstance() throws IllegalAccessException, InstantiationException,
+            InvocationTargetException {
+        if (mBinder != null) {
+            return mBinder.newInstance();
+        }
+        if (mConstructor == null) {
+            throw new InstantiationException("No constructor found in " + mTableClass.getName());
+        }
+        return mConstructor.newInstance(mConstructorArgs);
+    }
+
+    public ContentValues toContentValues(T bean) {
+        ContentValues values = new ContentValues(mInsertableColumns.size());
+        if (mBinder != null) {
+            mBinder.put(values, bean);
+            return values;
+        }
+        for (ColumnInfo column : mInsertableColumns) {
+            try {
+                column.put(values, bean);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Binds the values of {@link #getInsertableColumnNames()} to the parameters of a compiled
+     * statement, starting from index 1.
+     */
+    public void bind(SQLiteProgram program, T bean) {
+        if (mBinder != null) {
+            mBinder.bind(program, bean);
+            return;
+        }
+        for (int i = 0; i < mInsertableColumns.size(); i++) {
+            try {
+                mInsertableColumns.get(i).bind(program, i + 1, bean);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Resolves the index of each column in the cursor, -1 if the column was not queried. The
+     * result can be reused for every row of the same cursor.
+     */
+    public int[] getColumnIndexes(Cursor cursor) {
+        if (mBinder != null) {
+            String[] names = mBinder.getColumnNames();
+            int[] indexes = new int[names.length];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = cursor.getColumnIndex(names[i]);
+            }
+            return indexes;
+        }
+        int[] indexes = new int[mColumns.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = cursor.getColumnIndex(mColumns.get(i).getName());
+        }
+        return indexes;
+    }
+
+    public T fromCursor(Cursor cursor, int[] columnIndexes) throws IllegalAccessException,
+            InstantiationException, InvocationTargetException {
+        T bean = newInstance();
+        if (mBinder != null) {
+            mBinder.read(cursor, columnIndexes, bean);
+            return bean;
+        }
+        for (int i = 0; i < columnIndexes.length; i++) {
+            int columnIndex = columnIndexes[i];
+            if (columnIndex != -1) {
+                mColumns.get(i).read(cursor, columnIndex, bean);
+            }
+        }
+        return bean;
+    }
+}
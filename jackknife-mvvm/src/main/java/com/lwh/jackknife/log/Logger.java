@@ -18,9 +18,18 @@ package com.lwh.jackknife.log;
 
 import android.util.Log;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * A system that controls log output globally. When flag is closed, you can't output logs anywhere.
  * Instead, you can output logs anywhere.<note>The log system is opened by default.</note>
+ * <p>
+ * Every method checks {@link #isLoggable(String, int)} before formatting, so a disabled call
+ * costs a field read. The overloads taking primitives or a {@link LogSupplier} allocate nothing
+ * when the log is disabled, while the ones taking {@code String...} still allocate the array at
+ * the call site.
  */
 public class Logger {
 
@@ -29,12 +38,28 @@ public class Logger {
      */
     private static final String TAG = "jackknife";
 
+    /**
+     * A level above {@link Log#ASSERT}, which disables the logs of a tag.
+     */
+    public static final int OFF = Log.ASSERT + 1;
+
     // <editor-folder desc="日志控制">
 
     /**
      * The flag that represents the log system is opened or closed, default is opened.
      */
-    private static boolean DEBUG = true;
+    private static volatile boolean DEBUG = true;
+
+    /**
+     * The minimum level of the tags without their own level.
+     */
+    private static volatile int sLevel = Log.VERBOSE;
+
+    /**
+     * The minimum levels of tags, replaced as a whole when changed so it can be read without a
+     * lock.
+     */
+    private static volatile Map<String, Integer> sTagLevels = Collections.emptyMap();
 
     public static void close() {
         DEBUG = false;
@@ -52,10 +77,71 @@ public class Logger {
         return !DEBUG;
     }
 
+    /**
+     * Sets the minimum level of the tags without their own level.
+     *
+     * @param level One of the {@link Log} levels, or {@link #OFF}.
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static int getLevel() {
+        return sLevel;
+    }
+
+    /**
+     * Sets the minimum level of a tag, which takes precedence over {@link #setLevel(int)}.
+     *
+     * @param level One of the {@link Log} levels, or {@link #OFF}.
+     */
+    public static synchronized void setLevel(String tag, int level) {
+        Map<String, Integer> tagLevels = new HashMap<>(sTagLevels);
+        tagLevels.put(tag, level);
+        sTagLevels = tagLevels;
+    }
+
+    /**
+     * Makes the tag use the level of {@link #setLevel(int)} again.
+     */
+    public static synchronized void resetLevel(String tag) {
+        if (sTagLevels.containsKey(tag)) {
+            Map<String, Integer> tagLevels = new HashMap<>(sTagLevels);
+            tagLevels.remove(tag);
+            sTagLevels = tagLevels.isEmpty() ? Collections.<String, Integer>emptyMap() : tagLevels;
+        }
+    }
+
+    public static synchronized void resetLevels() {
+        sTagLevels = Collections.emptyMap();
+    }
+
+    /**
+     * Checks whether a log of the level and the tag will be output, can be used to guard the
+     * building of expensive messages.
+     */
+    public static boolean isLoggable(String tag, int level) {
+        if (!DEBUG) {
+            return false;
+        }
+        Map<String, Integer> tagLevels = sTagLevels;
+        if (!tagLevels.isEmpty()) {
+            Integer tagLevel = tagLevels.get(tag);
+            if (tagLevel != null) {
+                return level >= tagLevel;
+            }
+        }
+        return level >= sLevel;
+    }
+
     // </editor-folder>
 
     // <editor-folder desc="日志输出">
 
+    private static void print(int level, String tag, String format, Object... args) {
+        Log.println(level, tag, String.format(format, args));
+    }
+
     public static void info(String msg) {
         infoWithTag(TAG, msg);
     }
@@ -65,15 +151,13 @@ public class Logger {
     }
 
     public static void infoWithTag(String tag, String msg) {
-        if (DEBUG) {
-            Log.i(tag, msg);
+        if (isLoggable(tag, Log.INFO)) {
+            Log.println(Log.INFO, tag, msg);
         }
     }
 
     public static void iwt(String tag, String msg) {
-        if (DEBUG) {
-            Log.i(tag, msg);
-        }
+        infoWithTag(tag, msg);
     }
 
     public static void info(String format, String... values) {
@@ -85,11 +169,83 @@ public class Logger {
     }
 
     public static void infoWithTag(String tag, String format, String... values) {
-        infoWithTag(tag, String.format(format, new Object[]{values}));
+        if (isLoggable(tag, Log.INFO)) {
+            print(Log.INFO, tag, format, (Object[]) values);
+        }
     }
 
     public static void iwt(String tag, String format, String... values) {
-        infoWithTag(tag, String.format(format, new Object[]{values}));
+        infoWithTag(tag, format, values);
+    }
+
+    public static void i(String format, int arg) {
+        iwt(TAG, format, arg);
+    }
+
+    public static void iwt(String tag, String format, int arg) {
+        if (isLoggable(tag, Log.INFO)) {
+            print(Log.INFO, tag, format, arg);
+        }
+    }
+
+    public static void i(String format, long arg) {
+        iwt(TAG, format, arg);
+    }
+
+    public static void iwt(String tag, String format, long arg) {
+        if (isLoggable(tag, Log.INFO)) {
+            print(Log.INFO, tag, format, arg);
+        }
+    }
+
+    public static void i(String format, double arg) {
+        iwt(TAG, format, arg);
+    }
+
+    public static void iwt(String tag, String format, double arg) {
+        if (isLoggable(tag, Log.INFO)) {
+            print(Log.INFO, tag, format, arg);
+        }
+    }
+
+    public static void i(String format, boolean arg) {
+        iwt(TAG, format, arg);
+    }
+
+    public static void iwt(String tag, String format, boolean arg) {
+        if (isLoggable(tag, Log.INFO)) {
+            print(Log.INFO, tag, format, arg);
+        }
+    }
+
+    public static void i(String format, Object arg) {
+        iwt(TAG, format, arg);
+    }
+
+    public static void iwt(String tag, String format, Object arg) {
+        if (isLoggable(tag, Log.INFO)) {
+            print(Log.INFO, tag, format, arg);
+        }
+    }
+
+    public static void i(String format, Object arg1, Object arg2) {
+        iwt(TAG, format, arg1, arg2);
+    }
+
+    public static void iwt(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, Log.INFO)) {
+            print(Log.INFO, tag, format, arg1, arg2);
+        }
+    }
+
+    public static void i(LogSupplier supplier) {
+        iwt(TAG, supplier);
+    }
+
+    public static void iwt(String tag, LogSupplier supplier) {
+        if (isLoggable(tag, Log.INFO)) {
+            Log.println(Log.INFO, tag, supplier.get());
+        }
     }
 
     public static void error(String msg) {
@@ -101,15 +257,13 @@ public class Logger {
     }
 
     public static void errorWithTag(String tag, String msg) {
-        if (DEBUG) {
-            Log.e(tag, msg);
+        if (isLoggable(tag, Log.ERROR)) {
+            Log.println(Log.ERROR, tag, msg);
         }
     }
 
     public static void ewt(String tag, String msg) {
-        if (DEBUG) {
-            Log.e(tag, msg);
-        }
+        errorWithTag(tag, msg);
     }
 
     public static void error(String format, String... values) {
@@ -121,11 +275,83 @@ public class Logger {
     }
 
     public static void errorWithTag(String tag, String format, String... values) {
-        errorWithTag(tag, String.format(format, new Object[]{values}));
+        if (isLoggable(tag, Log.ERROR)) {
+            print(Log.ERROR, tag, format, (Object[]) values);
+        }
     }
 
     public static void ewt(String tag, String format, String... values) {
-        errorWithTag(tag, String.format(format, new Object[]{values}));
+        errorWithTag(tag, format, values);
+    }
+
+    public static void e(String format, int arg) {
+        ewt(TAG, format, arg);
+    }
+
+    public static void ewt(String tag, String format, int arg) {
+        if (isLoggable(tag, Log.ERROR)) {
+            print(Log.ERROR, tag, format, arg);
+        }
+    }
+
+    public static void e(String format, long arg) {
+        ewt(TAG, format, arg);
+    }
+
+    public static void ewt(String tag, String format, long arg) {
+        if (isLoggable(tag, Log.ERROR)) {
+            print(Log.ERROR, tag, format, arg);
+        }
+    }
+
+    public static void e(String format, double arg) {
+        ewt(TAG, format, arg);
+    }
+
+    public static void ewt(String tag, String format, double arg) {
+        if (isLoggable(tag, Log.ERROR)) {
+            print(Log.ERROR, tag, format, arg);
+        }
+    }
+
+    public static void e(String format, boolean arg) {
+        ewt(TAG, format, arg);
+    }
+
+    public static void ewt(String tag, String format, boolean arg) {
+        if (isLoggable(tag, Log.ERROR)) {
+            print(Log.ERROR, tag, format, arg);
+        }
+    }
+
+    public static void e(String format, Object arg) {
+        ewt(TAG, format, arg);
+    }
+
+    public static void ewt(String tag, String format, Object arg) {
+        if (isLoggable(tag, Log.ERROR)) {
+            print(Log.ERROR, tag, format, arg);
+        }
+    }
+
+    public static void e(String format, Object arg1, Object arg2) {
+        ewt(TAG, format, arg1, arg2);
+    }
+
+    public static void ewt(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, Log.ERROR)) {
+            print(Log.ERROR, tag, format, arg1, arg2);
+        }
+    }
+
+    public static void e(LogSupplier supplier) {
+        ewt(TAG, supplier);
+    }
+
+    public static void ewt(String tag, LogSupplier supplier) {
+        if (isLoggable(tag, Log.ERROR)) {
+            Log.println(Log.ERROR, tag, supplier.get());
+        }
     }
 
     public static void debug(String msg) {
@@ -137,15 +363,13 @@ public class Logger {
     }
 
     public static void debugWithTag(String tag, String msg) {
-        if (DEBUG) {
-            Log.d(tag, msg);
+        if (isLoggable(tag, Log.DEBUG)) {
+            Log.println(Log.DEBUG, tag, msg);
         }
     }
 
     public static void dwt(String tag, String msg) {
-        if (DEBUG) {
-            Log.d(tag, msg);
-        }
+        debugWithTag(tag, msg);
     }
 
     public static void debug(String format, String... values) {
@@ -157,11 +381,83 @@ public class Logger {
     }
 
     public static void debugWithTag(String tag, String format, String... values) {
-        debugWithTag(tag, String.format(format, new Object[]{values}));
+        if (isLoggable(tag, Log.DEBUG)) {
+            print(Log.DEBUG, tag, format, (Object[]) values);
+        }
     }
 
     public static void dwt(String tag, String format, String... values) {
-        debugWithTag(tag, String.format(format, new Object[]{values}));
+        debugWithTag(tag, format, values);
+    }
+
+    public static void d(String format, int arg) {
+        dwt(TAG, format, arg);
+    }
+
+    public static void dwt(String tag, String format, int arg) {
+        if (isLoggable(tag, Log.DEBUG)) {
+            print(Log.DEBUG, tag, format, arg);
+        }
+    }
+
+    public static void d(String format, long arg) {
+        dwt(TAG, format, arg);
+    }
+
+    public static void dwt(String tag, String format, long arg) {
+        if (isLoggable(tag, Log.DEBUG)) {
+            print(Log.DEBUG, tag, format, arg);
+        }
+    }
+
+    public static void d(String format, double arg) {
+        dwt(TAG, format, arg);
+    }
+
+    public static void dwt(String tag, String format, double arg) {
+        if (isLoggable(tag, Log.DEBUG)) {
+            print(Log.DEBUG, tag, format, arg);
+        }
+    }
+
+    public static void d(String format, boolean arg) {
+        dwt(TAG, format, arg);
+    }
+
+    public static void dwt(String tag, String format, boolean arg) {
+        if (isLoggable(tag, Log.DEBUG)) {
+            print(Log.DEBUG, tag, format, arg);
+        }
+    }
+
+    public static void d(String format, Object arg) {
+        dwt(TAG, format, arg);
+    }
+
+    public static void dwt(String tag, String format, Object arg) {
+        if (isLoggable(tag, Log.DEBUG)) {
+            print(Log.DEBUG, tag, format, arg);
+        }
+    }
+
+    public static void d(String format, Object arg1, Object arg2) {
+        dwt(TAG, format, arg1, arg2);
+    }
+
+    public static void dwt(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, Log.DEBUG)) {
+            print(Log.DEBUG, tag, format, arg1, arg2);
+        }
+    }
+
+    public static void d(LogSupplier supplier) {
+        dwt(TAG, supplier);
+    }
+
+    public static void dwt(String tag, LogSupplier supplier) {
+        if (isLoggable(tag, Log.DEBUG)) {
+            Log.println(Log.DEBUG, tag, supplier.get());
+        }
     }
 
     public static void warn(String msg) {
@@ -173,15 +469,13 @@ public class Logger {
     }
 
     public static void warnWithTag(String tag, String msg) {
-        if (DEBUG) {
-            Log.w(tag, msg);
+        if (isLoggable(tag, Log.WARN)) {
+            Log.println(Log.WARN, tag, msg);
         }
     }
 
     public static void wwt(String tag, String msg) {
-        if (DEBUG) {
-            Log.w(tag, msg);
-        }
+        warnWithTag(tag, msg);
     }
 
     public static void warn(String format, String... values) {
@@ -193,11 +487,83 @@ public class Logger {
     }
 
     public static void warnWithTag(String tag, String format, String... values) {
-        warnWithTag(tag, String.format(format, new Object[]{values}));
+        if (isLoggable(tag, Log.WARN)) {
+            print(Log.WARN, tag, format, (Object[]) values);
+        }
     }
 
     public static void wwt(String tag, String format, String... values) {
-        warnWithTag(tag, String.format(format, new Object[]{values}));
+        warnWithTag(tag, format, values);
+    }
+
+    public static void w(String format, int arg) {
+        wwt(TAG, format, arg);
+    }
+
+    public static void wwt(String tag, String format, int arg) {
+        if (isLoggable(tag, Log.WARN)) {
+            print(Log.WARN, tag, format, arg);
+        }
+    }
+
+    public static void w(String format, long arg) {
+        wwt(TAG, format, arg);
+    }
+
+    public static void wwt(String tag, String format, long arg) {
+        if (isLoggable(tag, Log.WARN)) {
+            print(Log.WARN, tag, format, arg);
+        }
+    }
+
+    public static void w(String format, double arg) {
+        wwt(TAG, format, arg);
+    }
+
+    public static void wwt(String tag, String format, double arg) {
+        if (isLoggable(tag, Log.WARN)) {
+            print(Log.WARN, tag, format, arg);
+        }
+    }
+
+    public static void w(String format, boolean arg) {
+        wwt(TAG, format, arg);
+    }
+
+    public static void wwt(String tag, String format, boolean arg) {
+        if (isLoggable(tag, Log.WARN)) {
+            print(Log.WARN, tag, format, arg);
+        }
+    }
+
+    public static void w(String format, Object arg) {
+        wwt(TAG, format, arg);
+    }
+
+    public static void wwt(String tag, String format, Object arg) {
+        if (isLoggable(tag, Log.WARN)) {
+            print(Log.WARN, tag, format, arg);
+        }
+    }
+
+    public static void w(String format, Object arg1, Object arg2) {
+        wwt(TAG, format, arg1, arg2);
+    }
+
+    public static void wwt(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, Log.WARN)) {
+            print(Log.WARN, tag, format, arg1, arg2);
+        }
+    }
+
+    public static void w(LogSupplier supplier) {
+        wwt(TAG, supplier);
+    }
+
+    public static void wwt(String tag, LogSupplier supplier) {
+        if (isLoggable(tag, Log.WARN)) {
+            Log.println(Log.WARN, tag, supplier.get());
+        }
     }
 
     public static void verbose(String msg) {
@@ -209,15 +575,13 @@ public class Logger {
     }
 
     public static void verboseWithTag(String tag, String msg) {
-        if (DEBUG) {
-            Log.v(tag, msg);
+        if (isLoggable(tag, Log.VERBOSE)) {
+            Log.println(Log.VERBOSE, tag, msg);
         }
     }
 
     public static void vwt(String tag, String msg) {
-        if (DEBUG) {
-            Log.v(tag, msg);
-        }
+        verboseWithTag(tag, msg);
     }
 
     public static void verbose(String format, String... values) {
@@ -229,12 +593,84 @@ public class Logger {
     }
 
     public static void verboseWithTag(String tag, String format, String... values) {
-        verboseWithTag(tag, String.format(format, new Object[]{values}));
+        if (isLoggable(tag, Log.VERBOSE)) {
+            print(Log.VERBOSE, tag, format, (Object[]) values);
+        }
     }
 
     public static void vwt(String tag, String format, String... values) {
-        verboseWithTag(tag, String.format(format, new Object[]{values}));
+        verboseWithTag(tag, format, values);
+    }
+
+    public static void v(String format, int arg) {
+        vwt(TAG, format, arg);
+    }
+
+    public static void vwt(String tag, String format, int arg) {
+        if (isLoggable(tag, Log.VERBOSE)) {
+            print(Log.VERBOSE, tag, format, arg);
+        }
+    }
+
+    public static void v(String format, long arg) {
+        vwt(TAG, format, arg);
+    }
+
+    public static void vwt(String tag, String format, long arg) {
+        if (isLoggable(tag, Log.VERBOSE)) {
+            print(Log.VERBOSE, tag, format, arg);
+        }
+    }
+
+    public static void v(String format, double arg) {
+        vwt(TAG, format, arg);
+    }
+
+    public static void vwt(String tag, String format, double arg) {
+        if (isLoggable(tag, Log.VERBOSE)) {
+            print(Log.VERBOSE, tag, format, arg);
+        }
+    }
+
+    public static void v(String format, boolean arg) {
+        vwt(TAG, format, arg);
+    }
+
+    public static void vwt(String tag, String format, boolean arg) {
+        if (isLoggable(tag, Log.VERBOSE)) {
+            print(Log.VERBOSE, tag, format, arg);
+        }
+    }
+
+    public static void v(String format, Object arg) {
+        vwt(TAG, format, arg);
+    }
+
+    public static void vwt(String tag, String format, Object arg) {
+        if (isLoggable(tag, Log.VERBOSE)) {
+            print(Log.VERBOSE, tag, format, arg);
+        }
+    }
+
+    public static void v(String format, Object arg1, Object arg2) {
+        vwt(TAG, format, arg1, arg2);
+    }
+
+    public static void vwt(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, Log.VERBOSE)) {
+            print(Log.VERBOSE, tag, format, arg1, arg2);
+        }
+    }
+
+    public static void v(LogSupplier supplier) {
+        vwt(TAG, supplier);
+    }
+
+    public static void vwt(String tag, LogSupplier supplier) {
+        if (isLoggable(tag, Log.VERBOSE)) {
+            Log.println(Log.VERBOSE, tag, supplier.get());
+        }
     }
 
     // </editor-folder>
-}
\ No newline at end of file
+}
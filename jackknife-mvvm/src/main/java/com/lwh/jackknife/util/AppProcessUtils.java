@@ -37,6 +37,23 @@ public final class AppProcessUtils {
         return false;
     }
 
+    /**
+     * 获取当前进程的进程名,获取不到时返回包名
+     */
+    public static String getProcessName(Context context) {
+        ActivityManager activityManager = ServiceUtils.getActivityManager(context);
+        List<ActivityManager.RunningAppProcessInfo> processes = activityManager.getRunningAppProcesses();
+        if (processes != null) {
+            int pid = android.os.Process.myPid();
+            for (ActivityManager.RunningAppProcessInfo processInfo : processes) {
+                if (processInfo.pid == pid) {
+                    return processInfo.processName;
+                }
+            }
+        }
+        return context.getPackageName();
+    }
+
     public static void killAllProcesses(Context context) {
         //杀死相关进程
         ActivityManager activityManager = ServiceUtils.getActivityManager(context);
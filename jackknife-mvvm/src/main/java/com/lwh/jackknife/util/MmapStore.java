@@ -0,0 +1,515 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.util;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ================================================
+ * 基于内存映射文件的键值存储,用来代替 {@link SharedPreferences}
+ * <p>
+ * 文件由 8 字节的文件头(魔数和有效数据长度)和依次追加的记录组成,每条记录为
+ * [类型 1 字节][key 长度 2 字节][key][值],修改和删除都只追加一条新记录,写完记录后再更新文件头中的
+ * 长度,进程在任何时刻被杀死都不会读到写了一半的记录。文件写满时先把仍然有效的记录压缩到临时文件
+ * 再替换原文件,空间仍然不够时按页扩容。
+ * <p>
+ * 打开时只扫描一次文件建立 key 到值偏移量的索引,基本类型直接从映射的内存中读取,不经过装箱。
+ * 仅支持单进程访问:每个进程维护自己的有效数据长度,两个进程同时追加会互相覆盖记录,所以打开时会对文件加
+ * 排他锁,文件已经被另一个进程打开时抛出 {@link IOException},多进程的应用需要为每个进程使用不同的文件。
+ */
+public final class MmapStore {
+
+    private static final String TAG = "MmapStore";
+
+    private static final int MAGIC = 0x4a4b4b56;
+    private static final int HEADER_SIZE = 8;
+    private static final int OFFSET_LENGTH = 4;
+    private static final int PAGE_SIZE = 4096;
+    private static final int MAX_KEY_LENGTH = 0xffff;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_REMOVED = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_STRING = 6;
+    private static final byte TYPE_BYTES = 7;
+
+    private static final Map<String, MmapStore> sStores = new HashMap<>();
+
+    private final File mFile;
+    private final HashMap<String, Entry> mEntries = new HashMap<>();
+    private RandomAccessFile mRaf;
+    private MappedByteBuffer mBuffer;
+    private int mCapacity;
+
+    /**
+     * 有效数据的末尾,即下一条记录写入的位置
+     */
+    private int mLength;
+
+    /**
+     * 仍然有效的记录的总字节数,和 {@link #mLength} 的差值就是压缩能回收的空间
+     */
+    private int mLiveBytes;
+
+    private static final class Entry {
+
+        final byte type;
+        final int recordOffset;
+        final int recordLength;
+        final int valueOffset;
+
+        /**
+         * 解码后的字符串,第一次读取时缓存
+         */
+        String string;
+
+        Entry(byte type, int recordOffset, int recordLength, int valueOffset) {
+            this.type = type;
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.valueOffset = valueOffset;
+        }
+    }
+
+    private MmapStore(File file) {
+        this.mFile = file;
+    }
+
+    /**
+     * 打开文件对应的存储,同一个文件在进程中只会打开一次
+     */
+    public static MmapStore open(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        synchronized (sStores) {
+            MmapStore store = sStores.get(path);
+            if (store == null) {
+                File dir = file.getParentFile();
+                if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Unable to create " + dir);
+                }
+                store = new MmapStore(file);
+                store.load();
+                sStores.put(path, store);
+            }
+            return store;
+        }
+    }
+
+    private void load() throws IOException {
+        File temp = new File(mFile.getPath() + TEMP_SUFFIX);
+        if (temp.exists() && !temp.delete()) {
+            Log.w(TAG, "Unable to delete " + temp);
+        }
+        map(mFile.exists() ? mFile.length() : 0);
+        if (mBuffer.getInt(0) != MAGIC) {
+            reset();
+            return;
+        }
+        int length = mBuffer.getInt(OFFSET_LENGTH);
+        if (length < HEADER_SIZE || length > mCapacity) {
+            Log.w(TAG, "Invalid length " + length + " in " + mFile + ", discarding all entries");
+            reset();
+            return;
+        }
+        mEntries.clear();
+        mLiveBytes = 0;
+        int position = HEADER_SIZE;
+        while (position < length) {
+            int end = readRecord(position, length);
+            if (end < 0) {
+                Log.w(TAG, "Corrupted record at " + position + " in " + mFile);
+                mBuffer.putInt(OFFSET_LENGTH, position);
+                break;
+            }
+            position = end;
+        }
+        mLength = position;
+    }
+
+    /**
+     * 解析一条记录并更新索引
+     *
+     * @return 下一条记录的位置,记录不完整时返回 -1
+     */
+    private int readRecord(int position, int limit) {
+        if (position + 3 > limit) {
+            return -1;
+        }
+        byte type = mBuffer.get(position);
+        int keyLength = mBuffer.getShort(position + 1) & 0xffff;
+        int valueOffset = position + 3 + keyLength;
+        if (valueOffset > limit) {
+            return -1;
+        }
+        int valueLength;
+        switch (type) {
+            case TYPE_REMOVED:
+                valueLength = 0;
+                break;
+            case TYPE_BOOLEAN:
+                valueLength = 1;
+                break;
+            case TYPE_INT:
+            case TYPE_FLOAT:
+                valueLength = 4;
+                break;
+            case TYPE_LONG:
+            case TYPE_DOUBLE:
+                valueLength = 8;
+                break;
+            case TYPE_STRING:
+            case TYPE_BYTES:
+                if (valueOffset + 4 > limit) {
+                    return -1;
+                }
+                valueLength = 4 + mBuffer.getInt(valueOffset);
+                if (valueLength < 4) {
+                    return -1;
+                }
+                break;
+            default:
+                return -1;
+        }
+        int end = valueOffset + valueLength;
+        if (end > limit || end < valueOffset) {
+            return -1;
+        }
+        String key = new String(readBytes(position + 3, keyLength), UTF_8);
+        index(key, new Entry(type, position, end - position, valueOffset));
+        return end;
+    }
+
+    private void index(String key, Entry entry) {
+        Entry old = entry.type == TYPE_REMOVED ? mEntries.remove(key) : mEntries.put(key, entry);
+        if (old != null) {
+            mLiveBytes -= old.recordLength;
+        }
+        if (entry.type != TYPE_REMOVED) {
+            mLiveBytes += entry.recordLength;
+        }
+    }
+
+    private void map(long size) throws IOException {
+        if (mRaf != null) {
+            IoUtils.close(mRaf);
+        }
+        int capacity = (int) Math.max(PAGE_SIZE, (size + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE);
+        mRaf = new RandomAccessFile(mFile, "rw");
+        FileLock lock = mRaf.getChannel().tryLock();
+        if (lock == null) {
+            IoUtils.close(mRaf);
+            mRaf = null;
+            throw new IOException(mFile + " is opened by another process");
+        }
+        if (mRaf.length() != capacity) {
+            mRaf.setLength(capacity);
+        }
+        mBuffer = mRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        mCapacity = capacity;
+    }
+
+    private void reset() {
+        mBuffer.putInt(0, MAGIC);
+        mBuffer.putInt(OFFSET_LENGTH, HEADER_SIZE);
+        mLength = HEADER_SIZE;
+        mLiveBytes = 0;
+        mEntries.clear();
+    }
+
+    private byte[] readBytes(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(offset);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private ByteBuffer newRecord(String key, byte type, int valueLength) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        if (keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key is too long: " + key);
+        }
+        ByteBuffer record = ByteBuffer.allocate(3 + keyBytes.length + valueLength);
+        record.put(type);
+        record.putShort((short) keyBytes.length);
+        record.put(keyBytes);
+        return record;
+    }
+
+    /**
+     * 追加一条记录,先写记录再更新文件头中的长度
+     */
+    private boolean append(String key, ByteBuffer record) {
+        byte[] bytes = record.array();
+        try {
+            ensureCapacity(bytes.length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        int offset = mLength;
+        mBuffer.position(offset);
+        mBuffer.put(bytes);
+        mLength = offset + bytes.length;
+        mBuffer.putInt(OFFSET_LENGTH, mLength);
+        index(key, new Entry(bytes[0], offset, bytes.length,
+                offset + 3 + (mBuffer.getShort(offset + 1) & 0xffff)));
+        return true;
+    }
+
+    private void ensureCapacity(int size) throws IOException {
+        if (mLength + size <= mCapacity) {
+            return;
+        }
+        int required = HEADER_SIZE + mLiveBytes + size;
+        int capacity = mCapacity;
+        // 压缩后仍然超过一半就扩容,避免之后频繁压缩
+        while (required > capacity / 2) {
+            capacity *= 2;
+        }
+        compact(capacity);
+    }
+
+    /**
+     * 把有效的记录写入临时文件并替换原文件
+     */
+    private void compact(int capacity) throws IOException {
+        File temp = new File(mFile.getPath() + TEMP_SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            raf.setLength(capacity);
+            ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + mLiveBytes);
+            data.putInt(MAGIC);
+            data.putInt(HEADER_SIZE + mLiveBytes);
+            List<Entry> entries = new ArrayList<>(mEntries.values());
+            for (Entry entry : entries) {
+                data.put(readBytes(entry.recordOffset, entry.recordLength));
+            }
+            raf.write(data.array());
+            raf.getFD().sync();
+        } finally {
+            IoUtils.close(raf);
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Unable to rename " + temp + " to " + mFile);
+        }
+        load();
+    }
+
+    public synchronized boolean contains(String key) {
+        return mEntries.containsKey(key);
+    }
+
+    public synchronized Set<String> keySet() {
+        return new HashSet<>(mEntries.keySet());
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.type != TYPE_BOOLEAN) {
+            return defValue;
+        }
+        return mBuffer.get(entry.valueOffset) != 0;
+    }
+
+    public synchronized int getInt(String key, int defValue) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.type != TYPE_INT) {
+            return defValue;
+        }
+        return mBuffer.getInt(entry.valueOffset);
+    }
+
+    public synchronized long getLong(String key, long defValue) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.type != TYPE_LONG) {
+            return defValue;
+        }
+        return mBuffer.getLong(entry.valueOffset);
+    }
+
+    public synchronized float getFloat(String key, float defValue) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.type != TYPE_FLOAT) {
+            return defValue;
+        }
+        return mBuffer.getFloat(entry.valueOffset);
+    }
+
+    public synchronized double getDouble(String key, double defValue) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.type != TYPE_DOUBLE) {
+            return defValue;
+        }
+        return mBuffer.getDouble(entry.valueOffset);
+    }
+
+    public synchronized String getString(String key, String defValue) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.type != TYPE_STRING) {
+            return defValue;
+        }
+        if (entry.string == null) {
+            entry.string = new String(readBytes(entry.valueOffset + 4,
+                    mBuffer.getInt(entry.valueOffset)), UTF_8);
+        }
+        return entry.string;
+    }
+
+    public synchronized byte[] getBytes(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null || entry.type != TYPE_BYTES) {
+            return null;
+        }
+        return readBytes(entry.valueOffset + 4, mBuffer.getInt(entry.valueOffset));
+    }
+
+    public synchronized boolean putBoolean(String key, boolean value) {
+        ByteBuffer record = newRecord(key, TYPE_BOOLEAN, 1);
+        record.put((byte) (value ? 1 : 0));
+        return append(key, record);
+    }
+
+    public synchronized boolean putInt(String key, int value) {
+        ByteBuffer record = newRecord(key, TYPE_INT, 4);
+        record.putInt(value);
+        return append(key, record);
+    }
+
+    public synchronized boolean putLong(String key, long value) {
+        ByteBuffer record = newRecord(key, TYPE_LONG, 8);
+        record.putLong(value);
+        return append(key, record);
+    }
+
+    public synchronized boolean putFloat(String key, float value) {
+        ByteBuffer record = newRecord(key, TYPE_FLOAT, 4);
+        record.putFloat(value);
+        return append(key, record);
+    }
+
+    public synchronized boolean putDouble(String key, double value) {
+        ByteBuffer record = newRecord(key, TYPE_DOUBLE, 8);
+        record.putDouble(value);
+        return append(key, record);
+    }
+
+    /**
+     * @param value 为 null 时等同于 {@link #remove(String)}
+     */
+    public synchronized boolean putString(String key, String value) {
+        if (value == null) {
+            return remove(key);
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        ByteBuffer record = newRecord(key, TYPE_STRING, 4 + bytes.length);
+        record.putInt(bytes.length);
+        record.put(bytes);
+        return append(key, record);
+    }
+
+    /**
+     * @param value 为 null 时等同于 {@link #remove(String)}
+     */
+    public synchronized boolean putBytes(String key, byte[] value) {
+        if (value == null) {
+            return remove(key);
+        }
+        ByteBuffer record = newRecord(key, TYPE_BYTES, 4 + value.length);
+        record.putInt(value.length);
+        record.put(value);
+        return append(key, record);
+    }
+
+    public synchronized boolean remove(String key) {
+        if (!mEntries.containsKey(key)) {
+            return true;
+        }
+        return append(key, newRecord(key, TYPE_REMOVED, 0));
+    }
+
+    /**
+     * 清空所有条目,文件大小不变
+     */
+    public synchronized void clear() {
+        reset();
+    }
+
+    /**
+     * 把映射的内存刷到磁盘,只有在需要防止系统掉电丢失数据时才需要调用,进程被杀死时数据不会丢失
+     */
+    public synchronized void sync() {
+        mBuffer.force();
+    }
+
+    /**
+     * 导入 {@link SharedPreferences} 中的所有条目,已经存在的 key 会被覆盖,不支持的类型会被跳过
+     *
+     * @return 导入的条目数
+     */
+    public synchronized int importFrom(SharedPreferences preferences) {
+        int count = 0;
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            boolean imported;
+            if (value instanceof String) {
+                imported = putString(key, (String) value);
+            } else if (value instanceof Integer) {
+                imported = putInt(key, (Integer) value);
+            } else if (value instanceof Long) {
+                imported = putLong(key, (Long) value);
+            } else if (value instanceof Float) {
+                imported = putFloat(key, (Float) value);
+            } else if (value instanceof Boolean) {
+                imported = putBoolean(key, (Boolean) value);
+            } else {
+                Log.w(TAG, "Unsupported type of " + key + ": " + value);
+                imported = false;
+            }
+            if (imported) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
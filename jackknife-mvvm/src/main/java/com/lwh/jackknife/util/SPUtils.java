@@ -17,29 +17,63 @@
 package com.lwh.jackknife.util;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.util.Base64;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
+/**
+ * 数据保存在 {@link MmapStore} 中,第一次使用时会导入默认 SharedPreferences 中的数据。
+ * {@link MmapStore} 不能被多个进程同时写入,所以主进程之外的进程(比如 :dora)使用各自的文件,
+ * 进程之间不共享数据。
+ */
 public final class SPUtils {
 
     private SPUtils() {
     }
 
-    private static SharedPreferences sPreferences;
+    private static final String STORE_DIR = "jackknife";
+    private static final String STORE_NAME = "preferences";
+    private static final String STORE_SUFFIX = ".kv";
+
+    /**
+     * 标记默认 SharedPreferences 中的数据已经导入
+     */
+    private static final String KEY_MIGRATED = "__jknf_sp_migrated";
+
+    private static MmapStore sStore;
     private static SPUtils sInstance;
 
-    private SharedPreferences.Editor getEditor() {
-        return sPreferences.edit();
+    private SPUtils(Context context) {
+        String fileName = getStoreFileName(context);
+        try {
+            sStore = MmapStore.open(new File(new File(context.getFilesDir(), STORE_DIR), fileName));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open " + fileName, e);
+        }
+        if (!sStore.contains(KEY_MIGRATED)) {
+            sStore.importFrom(PreferenceManager.getDefaultSharedPreferences(context));
+            sStore.putBoolean(KEY_MIGRATED, true);
+        }
     }
 
-    private SPUtils(Context context) {
-        sPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+    /**
+     * 主进程使用 preferences.kv,其他进程在文件名后加上进程名的后缀,比如 preferences_dora.kv
+     */
+    private static String getStoreFileName(Context context) {
+        String packageName = context.getPackageName();
+        String processName = AppProcessUtils.getProcessName(context);
+        if (processName == null || processName.equals(packageName)) {
+            return STORE_NAME + STORE_SUFFIX;
+        }
+        String suffix = processName.startsWith(packageName)
+                ? processName.substring(packageName.length()) : processName;
+        return STORE_NAME + suffix.replaceAll("[^A-Za-z0-9]+", "_") + STORE_SUFFIX;
     }
 
     private static SPUtils getInstance(Context context) {
@@ -52,7 +86,7 @@ public final class SPUtils {
     }
 
     private void _putString(String key, String value) {
-        getEditor().putString(key, value).apply();
+        sStore.putString(key, value);
     }
 
     public static void putString(Context context, String key, String value) {
@@ -60,7 +94,7 @@ public final class SPUtils {
     }
 
     private String _obtainString(String key) {
-        return sPreferences.getString(key, null);
+        return sStore.getString(key, null);
     }
 
     public static String obtainString(Context context, String key) {
@@ -68,7 +102,7 @@ public final class SPUtils {
     }
 
     private void _putInteger(String key, int value) {
-        getEditor().putInt(key, value).apply();
+        sStore.putInt(key, value);
     }
 
     public static void putInteger(Context context, String key, int value) {
@@ -76,7 +110,7 @@ public final class SPUtils {
     }
 
     private int _obtainInteger(String key) {
-        return sPreferences.getInt(key, 0);
+        return sStore.getInt(key, 0);
     }
 
     public static int obtainInteger(Context context, String key) {
@@ -84,7 +118,7 @@ public final class SPUtils {
     }
 
     private void _putBoolean(String key, boolean value) {
-        getEditor().putBoolean(key, value).apply();
+        sStore.putBoolean(key, value);
     }
 
     public static void putBoolean(Context context, String key, boolean value) {
@@ -92,7 +126,7 @@ public final class SPUtils {
     }
 
     private boolean _obtainBoolean(String key, boolean defValue) {
-        return sPreferences.getBoolean(key, defValue);
+        return sStore.getBoolean(key, defValue);
     }
 
     public static boolean obtainBoolean(Context context, String key, boolean defValue) {
@@ -105,11 +139,8 @@ public final class SPUtils {
         try {
             oos = new ObjectOutputStream(baos);
             oos.writeObject(value);
-            // 将字节流编码成base64的字符串
-            String base64 = new String(Base64.encode(baos
-                    .toByteArray(), Base64.DEFAULT));
-            getEditor().putString(key, base64).apply();
-            return true;
+            oos.flush();
+            return sStore.putBytes(key, baos.toByteArray());
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -125,14 +156,17 @@ public final class SPUtils {
 
     private <T> T _obtainObject(String key) {
         T value = null;
-        String base64Val = sPreferences.getString(key, null);
-        if (base64Val == null) {
-            return null;
+        byte[] bytes = sStore.getBytes(key);
+        if (bytes == null) {
+            // 从 SharedPreferences 导入的对象仍然是 base64 的字符串
+            String base64Val = sStore.getString(key, null);
+            if (base64Val == null) {
+                return null;
+            }
+            bytes = Base64.decode(base64Val.getBytes(), Base64.DEFAULT);
         }
-        // 读取字节
-        byte[] base64 = Base64.decode(base64Val.getBytes(), Base64.DEFAULT);
         // 封装到字节流
-        ByteArrayInputStream bais = new ByteArrayInputStream(base64);
+        ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
         ObjectInputStream bis;
         try {
             bis = new ObjectInputStream(bais);
@@ -151,7 +185,7 @@ public final class SPUtils {
     }
 
     private void _remove(String key) {
-        getEditor().remove(key).apply();
+        sStore.remove(key);
     }
 
     public static void remove(Context context, String key) {
@@ -159,7 +193,8 @@ public final class SPUtils {
     }
 
     private void _clear() {
-        getEditor().clear().apply();
+        sStore.clear();
+        sStore.putBoolean(KEY_MIGRATED, true);
     }
 
     public static void clear(Context context) {
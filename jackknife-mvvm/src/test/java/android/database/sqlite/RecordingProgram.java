@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package android.database.sqlite;
+
+import java.util.Arrays;
+
+/**
+ * A compiled statement that only records the values bound to it, so that the binding of rows can
+ * be measured on the JVM. It is declared in this package because {@link SQLiteProgram} has no
+ * public constructor; the mockable android.jar of the unit tests keeps the constructors callable.
+ */
+public class RecordingProgram extends SQLiteProgram {
+
+    private final Object[] mObjects;
+    private final long[] mLongs;
+    private final double[] mDoubles;
+
+    public RecordingProgram(int size) {
+        this.mObjects = new Object[size];
+        this.mLongs = new long[size];
+        this.mDoubles = new double[size];
+    }
+
+    @Override
+    public void bindNull(int index) {
+        mObjects[index - 1] = null;
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        mObjects[index - 1] = long.class;
+        mLongs[index - 1] = value;
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        mObjects[index - 1] = double.class;
+        mDoubles[index - 1] = value;
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        mObjects[index - 1] = value;
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        mObjects[index - 1] = value;
+    }
+
+    @Override
+    public void clearBindings() {
+        Arrays.fill(mObjects, null);
+    }
+
+    /**
+     * @return The value bound at the index starting from 1, boxed, or null if none.
+     */
+    public Object getBindArg(int index) {
+        Object value = mObjects[index - 1];
+        if (value == long.class) {
+            return mLongs[index - 1];
+        } else if (value == double.class) {
+            return mDoubles[index - 1];
+        }
+        return value;
+    }
+}
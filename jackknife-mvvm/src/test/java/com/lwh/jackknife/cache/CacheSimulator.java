@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lwh.jackknife.cache;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * ================================================
+ * 回放记录下来的 {@code key} 序列,比较 {@link LruCache} 和 {@link TinyLfuCache} 的命中率,
+ * 不依赖 Android,放在单元测试的源码集中,不会打包进库,可以从单元测试的 classpath 直接在 JVM 上运行
+ * <p>
+ * 用法: {@code CacheSimulator <trace 文件> <缓存大小>...},trace 文件每行一个 {@code key},
+ * 只取每行第一个空白之前的部分;用 {@code --synthetic} 代替文件时回放一个热点访问中夹杂顺序扫描的序列
+ */
+public final class CacheSimulator {
+
+    private static final Object PRESENT = new Object();
+
+    private CacheSimulator() {
+    }
+
+    /**
+     * 回放 {@code trace},未命中时把 {@code key} 放入缓存
+     *
+     * @return 命中率
+     */
+    public static double replay(Cache<String, Object> cache, List<String> trace) {
+        long hits = 0;
+        for (String key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, PRESENT);
+            }
+        }
+        return trace.isEmpty() ? 0 : (double) hits / trace.size();
+    }
+
+    public static List<String> readTrace(String path) throws IOException {
+        List<String> trace = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(path), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                trace.add(space > 0 ? line.substring(0, space) : line);
+            }
+        } finally {
+            reader.close();
+        }
+        return trace;
+    }
+
+    /**
+     * 生成一个 Zipf 分布的热点访问序列,每隔一段插入一次不重复 {@code key} 的顺序扫描
+     */
+    public static List<String> syntheticTrace(int length, int hotKeys, int scanLength, long seed) {
+        Random random = new Random(seed);
+        double[] cumulative = new double[hotKeys];
+        double sum = 0;
+        for (int i = 0; i < hotKeys; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        List<String> trace = new ArrayList<>(length);
+        int scanned = 0;
+        while (trace.size() < length) {
+            if (trace.size() % (scanLength * 4) == 0) {
+                for (int i = 0; i < scanLength && trace.size() < length; i++) {
+                    trace.add("scan-" + scanned++);
+                }
+                continue;
+            }
+            double target = random.nextDouble() * sum;
+            int low = 0;
+            int high = hotKeys - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            trace.add("hot-" + low);
+        }
+        return trace;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CacheSimulator <trace file|--synthetic> <cache size>...");
+            return;
+        }
+        List<String> trace = "--synthetic".equals(args[0])
+                ? syntheticTrace(1000000, 10000, 5000, 42) : readTrace(args[0]);
+        System.out.println(String.format(Locale.ENGLISH, "%d requests", trace.size()));
+        System.out.println(String.format(Locale.ENGLISH, "%10s %10s %10s", "size", "LRU",
+                "W-TinyLFU"));
+        for (int i = 1; i < args.length; i++) {
+            int size = Integer.parseInt(args[i]);
+            double lru = replay(new LruCache<String, Object>(size), trace);
+            double tinyLfu = replay(new TinyLfuCache<String, Object>(size), trace);
+            System.out.println(String.format(Locale.ENGLISH, "%10d %9.2f%% %9.2f%%", size,
+                    lru * 100, tinyLfu * 100));
+        }
+    }
+}
@@ -0,0 +1,606 @@
+/*
+ * Copyright (C) 2020 The JackKnife Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.lwh.jackknife.db.table;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.database.sqlite.RecordingProgram;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.lwh.jackknife.db.OrmTable;
+import com.lwh.jackknife.db.PrimaryKeyEntity;
+import com.lwh.jackknife.db.TableManager;
+import com.lwh.jackknife.db.constraint.AssignType;
+import com.lwh.jackknife.db.constraint.PrimaryKey;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the rows per second of {@link TableInfo} against the per-row reflection that the dao
+ * used before. It runs on the JVM from the unit test classpath, which has the mockable
+ * android.jar.
+ * <p>
+ * Usage: {@code TableInfoBenchmark [rows] [rounds]}. The write path binds each row to a
+ * {@link RecordingProgram} through {@link TableInfo#bind}, as the dao does for its compiled
+ * statements; the read path fills the rows from an in-memory {@link Cursor} through
+ * {@link TableInfo#fromCursor}. Both results are compared with the reflection path before timing.
+ */
+public final class TableInfoBenchmark {
+
+    private static final int DEFAULT_ROWS = 100000;
+    private static final int DEFAULT_ROUNDS = 5;
+
+    private TableInfoBenchmark() {
+    }
+
+    private static class User implements OrmTable {
+
+        @PrimaryKey(AssignType.AUTO_INCREMENT)
+        private long id;
+        private String name;
+        private int age;
+        private short level;
+        private long createTime;
+        private float ratio;
+        private double score;
+        private boolean vip;
+
+        @Override
+        public PrimaryKeyEntity getPrimaryKey() {
+            return new PrimaryKeyEntity("id", id);
+        }
+
+        @Override
+        public boolean isUpgradeRecreated() {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        TableInfo<User> tableInfo = TableInfo.create(User.class);
+        User[] users = createUsers(rows);
+        ArrayCursor cursor = createCursor(tableInfo, users);
+        verify(tableInfo, users, cursor);
+        for (int round = 1; round <= rounds; round++) {
+            long reflectionWrite = time(new WriteByReflection(users,
+                    tableInfo.getInsertableColumns().size()));
+            long tableInfoWrite = time(new WriteByTableInfo(tableInfo, users));
+            long reflectionRead = time(new ReadByReflection(cursor));
+            long tableInfoRead = time(new ReadByTableInfo(tableInfo, cursor));
+            System.out.println(String.format(Locale.ENGLISH,
+                    "round %d, %d rows: write %,.0f -> %,.0f rows/s, read %,.0f -> %,.0f rows/s",
+                    round, rows, perSecond(rows, reflectionWrite),
+                    perSecond(rows, tableInfoWrite), perSecond(rows, reflectionRead),
+                    perSecond(rows, tableInfoRead)));
+        }
+    }
+
+    private static User[] createUsers(int rows) {
+        User[] users = new User[rows];
+        for (int i = 0; i < rows; i++) {
+            User user = new User();
+            user.id = i + 1;
+            user.name = "user" + i;
+            user.age = i % 100;
+            user.level = (short) (i % 10);
+            user.createTime = 1577836800000L + i;
+            user.ratio = i / 3f;
+            user.score = i / 7d;
+            user.vip = (i & 1) == 0;
+            users[i] = user;
+        }
+        return users;
+    }
+
+    private static ArrayCursor createCursor(TableInfo<User> tableInfo, User[] users)
+            throws IllegalAccessException {
+        List<ColumnInfo> columns = tableInfo.getColumns();
+        String[] names = new String[columns.size()];
+        Object[][] values = new Object[users.length][names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = columns.get(i).getName();
+            for (int j = 0; j < users.length; j++) {
+                Object value = columns.get(i).getValue(users[j]);
+                values[j][i] = value instanceof Boolean ? (((Boolean) value) ? 1 : 0) : value;
+            }
+        }
+        return new ArrayCursor(names, values);
+    }
+
+    /**
+     * Checks that both paths bind and read the same values, so that the timings compare equal
+     * work.
+     */
+    private static void verify(TableInfo<User> tableInfo, User[] users, ArrayCursor cursor)
+            throws Exception {
+        int size = tableInfo.getInsertableColumns().size();
+        RecordingProgram reflection = new RecordingProgram(size);
+        RecordingProgram bound = new RecordingProgram(size);
+        WriteByReflection.bind(reflection, users[users.length - 1]);
+        tableInfo.bind(bound, users[users.length - 1]);
+        for (int i = 1; i <= size; i++) {
+            Object expected = reflection.getBindArg(i);
+            Object actual = bound.getBindArg(i);
+            if (expected == null ? actual != null : !expected.equals(actual)) {
+                throw new IllegalStateException("Bind arg " + i + ": " + expected + " != "
+                        + actual);
+            }
+        }
+        cursor.moveToPosition(users.length - 1);
+        User expected = ReadByReflection.createResult(cursor);
+        User actual = tableInfo.fromCursor(cursor, tableInfo.getColumnIndexes(cursor));
+        for (ColumnInfo column : tableInfo.getColumns()) {
+            Object value = column.getValue(expected);
+            if (!value.equals(column.getValue(actual))) {
+                throw new IllegalStateException("Column " + column.getName() + ": " + value
+                        + " != " + column.getValue(actual));
+            }
+        }
+    }
+
+    private static long time(Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        return System.nanoTime() - start;
+    }
+
+    private static double perSecond(int rows, long nanos) {
+        return rows * 1e9 / Math.max(nanos, 1);
+    }
+
+    /**
+     * The per-row column mapping of the dao before {@link TableInfo}.
+     */
+    private static String getColumnName(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        if (column != null) {
+            return column.value();
+        }
+        return TableManager.getInstance().generateColumnName(field.getName());
+    }
+
+    private static class WriteByReflection implements Runnable {
+
+        private final User[] mUsers;
+        private final RecordingProgram mProgram;
+
+        WriteByReflection(User[] users, int size) {
+            this.mUsers = users;
+            this.mProgram = new RecordingProgram(size);
+        }
+
+        @Override
+        public void run() {
+            for (User user : mUsers) {
+                try {
+                    bind(mProgram, user);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        /**
+         * Resolves the columns of the row again like getContentValues() of the dao did, and binds
+         * them in the order of the fields.
+         */
+        static void bind(RecordingProgram program, User user) throws IllegalAccessException {
+            int index = 1;
+            for (Field field : User.class.getDeclaredFields()) {
+                field.setAccessible(true);
+                Ignore ignore = field.getAnnotation(Ignore.class);
+                PrimaryKey primaryKey = field.getAnnotation(PrimaryKey.class);
+                if (ignore != null || (field.getModifiers() & Modifier.STATIC) != 0) {
+                    continue;
+                }
+                if (primaryKey != null && primaryKey.value() == AssignType.AUTO_INCREMENT) {
+                    continue;
+                }
+                getColumnName(field);
+                Class<?> fieldType = field.getType();
+                if (CharSequence.class.isAssignableFrom(fieldType)) {
+                    program.bindString(index++, String.valueOf(field.get(user)));
+                } else if (fieldType == boolean.class) {
+                    program.bindLong(index++, field.getBoolean(user) ? 1 : 0);
+                } else if (fieldType == short.class) {
+                    program.bindLong(index++, field.getShort(user));
+                } else if (fieldType == int.class) {
+                    program.bindLong(index++, field.getInt(user));
+                } else if (fieldType == long.class) {
+                    program.bindLong(index++, field.getLong(user));
+                } else if (fieldType == float.class) {
+                    program.bindDouble(index++, field.getFloat(user));
+                } else if (fieldType == double.class) {
+                    program.bindDouble(index++, field.getDouble(user));
+                }
+            }
+        }
+    }
+
+    private static class WriteByTableInfo implements Runnable {
+
+        private final TableInfo<User> mTableInfo;
+        private final User[] mUsers;
+        private final RecordingProgram mProgram;
+
+        WriteByTableInfo(TableInfo<User> tableInfo, User[] users) {
+            this.mTableInfo = tableInfo;
+            this.mUsers = users;
+            this.mProgram = new RecordingProgram(tableInfo.getInsertableColumns().size());
+        }
+
+        @Override
+        public void run() {
+            for (User user : mUsers) {
+                mTableInfo.bind(mProgram, user);
+            }
+        }
+    }
+
+    private static class ReadByReflection implements Runnable {
+
+        private final Cursor mCursor;
+
+        ReadByReflection(Cursor cursor) {
+            this.mCursor = cursor;
+        }
+
+        @Override
+        public void run() {
+            mCursor.moveToPosition(-1);
+            try {
+                while (mCursor.moveToNext()) {
+                    createResult(mCursor);
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InstantiationException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        static User createResult(Cursor cursor) throws IllegalAccessException,
+                InstantiationException, InvocationTargetException {
+            User bean = null;
+            for (Constructor<?> c : User.class.getDeclaredConstructors()) {
+                c.setAccessible(true);
+                if (c.getParameterTypes().length == 0) {
+                    bean = (User) c.newInstance();
+                    break;
+                }
+            }
+            for (Field field : User.class.getDeclaredFields()) {
+                field.setAccessible(true);
+                int columnIndex = cursor.getColumnIndex(getColumnName(field));
+                if (columnIndex != -1) {
+                    Class<?> fieldType = field.getType();
+                    if (CharSequence.class.isAssignableFrom(fieldType)) {
+                        field.set(bean, cursor.getString(columnIndex));
+                    } else if (fieldType == boolean.class) {
+                        field.set(bean, cursor.getInt(columnIndex) == 1);
+                    } else if (fieldType == long.class) {
+                        field.set(bean, cursor.getLong(columnIndex));
+                    } else if (fieldType == int.class) {
+                        field.set(bean, cursor.getInt(columnIndex));
+                    } else if (fieldType == short.class) {
+                        field.set(bean, cursor.getShort(columnIndex));
+                    } else if (fieldType == double.class) {
+                        field.set(bean, cursor.getDouble(columnIndex));
+                    } else if (fieldType == float.class) {
+                        field.set(bean, cursor.getFloat(columnIndex));
+                    }
+                }
+            }
+            return bean;
+        }
+    }
+
+    private static class ReadByTableInfo implements Runnable {
+
+        private final TableInfo<User> mTableInfo;
+        private final Cursor mCursor;
+
+        ReadByTableInfo(TableInfo<User> tableInfo, Cursor cursor) {
+            this.mTableInfo = tableInfo;
+            this.mCursor = cursor;
+        }
+
+        @Override
+        public void run() {
+            mCursor.moveToPosition(-1);
+            int[] columnIndexes = mTableInfo.getColumnIndexes(mCursor);
+            try {
+                while (mCursor.moveToNext()) {
+                    mTableInfo.fromCursor(mCursor, columnIndexes);
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InstantiationException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * A read-only cursor over rows kept in memory, the values are stored as they are returned by
+     * SQLite: integers, floating points, strings and blobs.
+     */
+    private static class ArrayCursor implements Cursor {
+
+        private final String[] mColumnNames;
+        private final Object[][] mRows;
+        private int mPosition = -1;
+        private boolean mClosed;
+
+        ArrayCursor(String[] columnNames, Object[][] rows) {
+            this.mColumnNames = columnNames;
+            this.mRows = rows;
+        }
+
+        private Object get(int columnIndex) {
+            if (mPosition < 0 || mPosition >= mRows.length) {
+                throw new IndexOutOfBoundsException("Position " + mPosition);
+            }
+            return mRows[mPosition][columnIndex];
+        }
+
+        @Override
+        public int getCount() {
+            return mRows.length;
+        }
+
+        @Override
+        public int getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public boolean move(int offset) {
+            return moveToPosition(mPosition + offset);
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            if (position < -1) {
+                position = -1;
+            } else if (position > mRows.length) {
+                position = mRows.length;
+            }
+            mPosition = position;
+            return position >= 0 && position < mRows.length;
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            return moveToPosition(0);
+        }
+
+        @Override
+        public boolean moveToLast() {
+            return moveToPosition(mRows.length - 1);
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return moveToPosition(mPosition + 1);
+        }
+
+        @Override
+        public boolean moveToPrevious() {
+            return moveToPosition(mPosition - 1);
+        }
+
+        @Override
+        public boolean isFirst() {
+            return mPosition == 0 && mRows.length != 0;
+        }
+
+        @Override
+        public boolean isLast() {
+            return mPosition == mRows.length - 1 && mRows.length != 0;
+        }
+
+        @Override
+        public boolean isBeforeFirst() {
+            return mRows.length == 0 || mPosition == -1;
+        }
+
+        @Override
+        public boolean isAfterLast() {
+            return mRows.length == 0 || mPosition == mRows.length;
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            for (int i = 0; i < mColumnNames.length; i++) {
+                if (mColumnNames[i].equalsIgnoreCase(columnName)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int getColumnIndexOrThrow(String columnName) {
+            int index = getColumnIndex(columnName);
+            if (index == -1) {
+                throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+            }
+            return index;
+        }
+
+        @Override
+        public String getColumnName(int columnIndex) {
+            return mColumnNames[columnIndex];
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mColumnNames.clone();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return mColumnNames.length;
+        }
+
+        @Override
+        public byte[] getBlob(int columnIndex) {
+            return (byte[]) get(columnIndex);
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            Object value = get(columnIndex);
+            return value == null ? null : value.toString();
+        }
+
+        @Override
+        public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+            String value = getString(columnIndex);
+            char[] chars = value == null ? new char[0] : value.toCharArray();
+            buffer.data = chars;
+            buffer.sizeCopied = chars.length;
+        }
+
+        @Override
+        public short getShort(int columnIndex) {
+            return (short) getLong(columnIndex);
+        }
+
+        @Override
+        public int getInt(int columnIndex) {
+            return (int) getLong(columnIndex);
+        }
+
+        @Override
+        public long getLong(int columnIndex) {
+            Object value = get(columnIndex);
+            return value == null ? 0 : ((Number) value).longValue();
+        }
+
+        @Override
+        public float getFloat(int columnIndex) {
+            return (float) getDouble(columnIndex);
+        }
+
+        @Override
+        public double getDouble(int columnIndex) {
+            Object value = get(columnIndex);
+            return value == null ? 0 : ((Number) value).doubleValue();
+        }
+
+        @Override
+        public int getType(int columnIndex) {
+            Object value = get(columnIndex);
+            if (value == null) {
+                return FIELD_TYPE_NULL;
+            } else if (value instanceof Float || value instanceof Double) {
+                return FIELD_TYPE_FLOAT;
+            } else if (value instanceof Number) {
+                return FIELD_TYPE_INTEGER;
+            } else if (value instanceof byte[]) {
+                return FIELD_TYPE_BLOB;
+            }
+            return FIELD_TYPE_STRING;
+        }
+
+        @Override
+        public boolean isNull(int columnIndex) {
+            return get(columnIndex) == null;
+        }
+
+        @Override
+        public void deactivate() {
+        }
+
+        @Override
+        public boolean requery() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return mClosed;
+        }
+
+        @Override
+        public void registerContentObserver(ContentObserver observer) {
+        }
+
+        @Override
+        public void unregisterContentObserver(ContentObserver observer) {
+        }
+
+        @Override
+        public void registerDataSetObserver(DataSetObserver observer) {
+        }
+
+        @Override
+        public void unregisterDataSetObserver(DataSetObserver observer) {
+        }
+
+        @Override
+        public void setNotificationUri(ContentResolver resolver, Uri uri) {
+        }
+
+        @Override
+        public Uri getNotificationUri() {
+            return null;
+        }
+
+        @Override
+        public boolean getWantsAllOnMoveCalls() {
+            return false;
+        }
+
+        @Override
+        public void setExtras(Bundle extras) {
+        }
+
+        @Override
+        public Bundle getExtras() {
+            return Bundle.EMPTY;
+        }
+
+        @Override
+        public Bundle respond(Bundle extras) {
+            return Bundle.EMPTY;
+        }
+    }
+}